@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions;
+
+/**
+ * Represents a {@link RelaxedSubscriber} that can receive multiple items with a single
+ * {@link #onNextBatch(Object[], int)} call, saving the per-item call overhead
+ * of {@link #onNext(Object)}.
+ * <p>
+ * Publishers supporting this feature detect it via an {@code instanceof} check
+ * and may deliver items via {@code onNextBatch()}, {@code onNext()} or both, but
+ * never concurrently.
+ * <p>
+ * The publisher owns the array and may reuse it for subsequent batches, therefore,
+ * implementations should not retain the array or modify its contents beyond the
+ * duration of the {@code onNextBatch()} call.
+ * <p>
+ * Similar to {@link ConditionalSubscriber#tryOnNext(Object)}, the return value indicates
+ * how many of the items were consumed; the items not consumed (dropped) don't count towards the
+ * outstanding request amount and the upstream is allowed to send more items in their place
+ * without a {@code request()} call.
+ *
+ * @param <T> the value type
+ */
+public interface BatchSubscriber<T> extends RelaxedSubscriber<T> {
+
+    /**
+     * Process/consume the first {@code count} items of the array.
+     * @param items the array holding the items, not null, the first {@code count} of them not null
+     * @param count the number of items, positive, never more than the outstanding request amount
+     * @return the number of items consumed, between 0 and {@code count} inclusive
+     */
+    int onNextBatch(T[] items, int count);
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions;
+
+/**
+ * A {@link FusedQueue} that supports moving multiple elements in and out
+ * of the queue with a single call, saving the per-element interface call,
+ * null check and index update of the {@link #offer(Object)} and {@link #poll()} methods.
+ * <p>
+ * Consumers of a plain {@code FusedQueue} can detect this feature via an {@code instanceof} check
+ * (helper methods falling back to element-by-element processing are available in
+ * {@code hu.akarnokd.reactivestreams.extensions.tools.FusedQueueTools}).
+ * <p>
+ * The same threading rules apply to these methods as to their single-element counterparts:
+ * {@link #offerAll(Object[], int, int)} runs on the {@code offer()} side and
+ * {@link #drain(Object[], int)} runs on the {@code poll()} side.
+ *
+ * @param <T> the value type
+ */
+public interface BulkFusedQueue<T> extends FusedQueue<T> {
+
+    /**
+     * Polls up to the given number of elements into the array, starting at index zero.
+     * <p>
+     * Returning zero has the same meaning as {@link #poll()} returning null: in
+     * a synchronous-fused setup, the source is exhausted; in an asynchronous-fused
+     * setup, there are no elements available at the moment. If the dequeue logic
+     * drops elements, implementations should keep polling instead of returning zero.
+     * @param into the array to fill in, not null, at least {@code max} long
+     * @param max the maximum number of elements to poll, positive
+     * @return the number of elements actually polled
+     * @throws Throwable the exception thrown by the dequeueing logic or the fused chain;
+     * the elements polled before the failure are lost
+     */
+    int drain(T[] into, int max) throws Throwable;
+
+    /**
+     * Try to offer a range of elements from an array into the queue in order and
+     * return the number of elements actually offered.
+     * @param from the source array, not null
+     * @param offset the index of the first element to offer
+     * @param length the number of elements to offer, each of them not null
+     * @return the number of elements offered, less than {@code length} if the queue became full
+     * @throws NullPointerException if one of the elements is null; the elements before it remain in the queue
+     */
+    int offerAll(T[] from, int offset, int length);
+}
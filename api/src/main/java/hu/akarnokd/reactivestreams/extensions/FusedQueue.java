@@ -78,7 +78,10 @@ public interface FusedQueue<T> {
      * there was no concurrent {@link #offer(Object)} between the two. 
      * <p>
      * It is not required this method call is thread safe as it is expected to be called from
-     * the {@code poll()} side only.
+     * the {@code poll()} side only. Queues that allow multiple threads to call {@code poll()}
+     * concurrently should allow calling this method concurrently as well; in that case, the result
+     * is only a snapshot and <code>{@link #isEmpty()} == false</code> may be followed by
+     * <code>{@link #poll()} == null</code> because another consumer took the element.
      * @return true if this queue is empty.
      */
     boolean isEmpty();
@@ -89,7 +92,9 @@ public interface FusedQueue<T> {
      * In case {@link #poll()} throws, calling {@code clear()} should be safe.
      * <p>
      * It is not required this method call is thread safe as it is expected to be called from
-     * the {@code poll()} side only.
+     * the {@code poll()} side only. Queues that allow multiple threads to call {@code poll()}
+     * concurrently should allow calling this method concurrently as well; in that case, elements
+     * polled by other consumers during the call are not affected.
      */
     void clear();
 }
@@ -169,6 +169,18 @@ public interface FusedQueueSubscription<T> extends FusedQueue<T>, Subscription {
      */
     int BOUNDARY = 4;
 
+    /**
+     * Binary or-ed with {@link #SYNC}, {@link #ASYNC} or {@link #ANY} and offered to {@link #requestFusion(int)}
+     * to indicate the downstream would like to consume primitive values via
+     * {@link IntFusedQueue#pollInt()} or {@link LongFusedQueue#pollLong()} without boxing.
+     * <p>
+     * Only upstreams implementing {@link IntFusedQueueSubscription} or {@link LongFusedQueueSubscription}
+     * may return this flag, binary or-ed with the established {@link #SYNC} or {@link #ASYNC} mode
+     * and only if the flag was requested. If the flag is not returned, the downstream should
+     * consume via {@link #poll()}.
+     */
+    int PRIMITIVE = 8;
+
     /**
      * Requests the upstream to enter the specified fusion mode.
      * <p>
@@ -191,7 +203,9 @@ public interface FusedQueueSubscription<T> extends FusedQueue<T>, Subscription {
      * <li>{@link #ANY}</li>
      * <li>{@link #ANY} | {@link #BOUNDARY}</li>
      * </ul>
-     * @return the established fusion mode, possible values are: {@link #NONE}, {@link #SYNC} or {@link #ASYNC} 
+     * The modes above may be additionally binary or-ed with {@link #PRIMITIVE}.
+     * @return the established fusion mode, possible values are: {@link #NONE}, {@link #SYNC} or {@link #ASYNC},
+     * the latter two optionally binary or-ed with {@link #PRIMITIVE} if it was requested
      */
     int requestFusion(int mode);
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions;
+
+/**
+ * A {@link FusedQueue} specialized for primitive {@code int} values to avoid boxing
+ * on both the enqueueing and dequeueing side.
+ * <p>
+ * Since a primitive can't be null, emptiness is indicated via {@link #isEmpty()} instead:
+ * {@link #pollInt()} should be called only after {@code isEmpty()} returned false.
+ * Unlike {@link FusedQueue#poll()}, implementations of this interface must guarantee
+ * that <code>{@link #isEmpty()} == false</code> leads to a successful {@code pollInt()},
+ * i.e., any dropping of items has to happen inside {@code isEmpty()}.
+ * <p>
+ * The boxed {@link #offer(Object)} and {@link #poll()} methods should still work and
+ * be equivalent to their primitive counterparts.
+ * @see IntFusedQueueSubscription
+ */
+public interface IntFusedQueue extends FusedQueue<Integer> {
+
+    /**
+     * Try to offer a primitive element into the queue and return true for success.
+     * @param element the element to offer
+     * @return true if successful, false if the queue is full
+     */
+    boolean offerInt(int element);
+
+    /**
+     * Poll the next primitive element from the queue or throw an exception
+     * if the poll failed.
+     * <p>
+     * Should be called only if {@link #isEmpty()} returned false.
+     * @return the value polled
+     * @throws java.util.NoSuchElementException if the queue is empty
+     * @throws Throwable the exception thrown by the dequeueing logic or the fused chain
+     */
+    int pollInt() throws Throwable;
+}
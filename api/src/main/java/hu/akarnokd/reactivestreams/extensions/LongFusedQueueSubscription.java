@@ -0,0 +1,31 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions;
+
+/**
+ * Combination of a {@link FusedQueueSubscription} and an {@link LongFusedQueue} that
+ * allows consuming primitive {@code long} values without boxing.
+ * <p>
+ * The downstream requests the primitive consumption by binary-or'ing
+ * {@link FusedQueueSubscription#PRIMITIVE} into the mode given to {@link #requestFusion(int)}
+ * and, if the upstream returns the established mode together with {@code PRIMITIVE}, consumes
+ * the items via {@link #isEmpty()} and {@link #pollLong()} instead of {@link #poll()}.
+ * @see FusedQueueSubscription#PRIMITIVE
+ */
+public interface LongFusedQueueSubscription extends LongFusedQueue, FusedQueueSubscription<Long> {
+
+}
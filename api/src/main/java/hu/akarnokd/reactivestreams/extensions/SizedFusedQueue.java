@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions;
+
+/**
+ * A {@link FusedQueue} that can report its approximate size and its capacity,
+ * allowing consumers to adapt their batch and replenishment sizes to the actual
+ * occupancy of the queue and monitoring tools to sample the queue depth
+ * without polling it.
+ * <p>
+ * Consumers of a plain {@code FusedQueue} can detect this feature via an {@code instanceof} check
+ * (helper methods returning {@link #UNKNOWN} otherwise are available in
+ * {@code hu.akarnokd.reactivestreams.extensions.tools.FusedQueueTools}).
+ * <p>
+ * Unlike {@link #isEmpty()}, both methods may be called from any thread.
+ *
+ * @param <T> the value type
+ */
+public interface SizedFusedQueue<T> extends FusedQueue<T> {
+
+    /**
+     * Indicates the size or capacity can't be determined (cheaply).
+     */
+    long UNKNOWN = -1L;
+
+    /**
+     * Indicates the capacity of the queue is not limited.
+     */
+    long UNBOUNDED = Long.MAX_VALUE;
+
+    /**
+     * Returns the approximate number of elements in the queue.
+     * <p>
+     * With concurrent {@code offer()} and {@code poll()} calls, the value may be
+     * outdated by the time it is returned but it is never negative and never
+     * exceeds the {@link #capacity()}.
+     * @return the approximate number of elements or {@link #UNKNOWN}
+     */
+    long estimatedSize();
+
+    /**
+     * Returns the maximum number of elements the queue can hold.
+     * @return the capacity, {@link #UNBOUNDED} or {@link #UNKNOWN}
+     */
+    long capacity();
+}
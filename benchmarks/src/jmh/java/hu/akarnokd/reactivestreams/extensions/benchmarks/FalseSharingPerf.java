@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.akarnokd.reactivestreams.extensions.tools.*;
+
+/**
+ * Measures the effect of false sharing between a requesting and an emitting thread
+ * working on the same object: {@link StrictVolatileSubscriber} versus {@link StrictPaddedSubscriber}
+ * (request(1) versus onNext) and a range-like subscription extending {@link AtomicLong}
+ * versus {@link PaddedAtomicLong} (adding to the requested amount versus checking the
+ * cancelled flag and advancing the index).
+ * <p>
+ * gradlew :reactive-streams-extensions-benchmarks:jmh -Pjmh=FalseSharingPerf
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Group)
+public class FalseSharingPerf {
+
+    static final Object ITEM = 1;
+
+    StrictVolatileSubscriber<Object> strict;
+
+    StrictPaddedSubscriber<Object> strictPadded;
+
+    Range range;
+
+    PaddedRange paddedRange;
+
+    @Setup
+    public void setup(Blackhole bh) {
+        strict = new StrictVolatileSubscriber<Object>(new PerfSubscriber(bh).standard());
+        strict.onSubscribe(EmptySubscription.INSTANCE);
+
+        strictPadded = new StrictPaddedSubscriber<Object>(new PerfSubscriber(bh).standard());
+        strictPadded.onSubscribe(EmptySubscription.INSTANCE);
+
+        range = new Range();
+        paddedRange = new PaddedRange();
+    }
+
+    static final class Range extends AtomicLong {
+        private static final long serialVersionUID = -3164722862939446372L;
+
+        int index;
+
+        volatile boolean cancelled;
+    }
+
+    static final class PaddedRange extends PaddedAtomicLong {
+        private static final long serialVersionUID = 6380437916937683312L;
+
+        int index;
+
+        volatile boolean cancelled;
+    }
+
+    @Benchmark
+    @Group("strict")
+    @GroupThreads(1)
+    public void strictOnNext() {
+        strict.onNext(ITEM);
+    }
+
+    @Benchmark
+    @Group("strict")
+    @GroupThreads(1)
+    public void strictRequest() {
+        strict.request(1);
+    }
+
+    @Benchmark
+    @Group("strictPadded")
+    @GroupThreads(1)
+    public void strictPaddedOnNext() {
+        strictPadded.onNext(ITEM);
+    }
+
+    @Benchmark
+    @Group("strictPadded")
+    @GroupThreads(1)
+    public void strictPaddedRequest() {
+        strictPadded.request(1);
+    }
+
+    @Benchmark
+    @Group("range")
+    @GroupThreads(1)
+    public void rangeEmit() {
+        Range r = range;
+        if (!r.cancelled) {
+            r.index++;
+        }
+    }
+
+    @Benchmark
+    @Group("range")
+    @GroupThreads(1)
+    public long rangeRequest() {
+        return SubscriptionTools.getAndAddRequested(range, 1);
+    }
+
+    @Benchmark
+    @Group("paddedRange")
+    @GroupThreads(1)
+    public void paddedRangeEmit() {
+        PaddedRange r = paddedRange;
+        if (!r.cancelled) {
+            r.index++;
+        }
+    }
+
+    @Benchmark
+    @Group("paddedRange")
+    @GroupThreads(1)
+    public long paddedRangeRequest() {
+        return SubscriptionTools.getAndAddRequested(paddedRange, 1);
+    }
+}
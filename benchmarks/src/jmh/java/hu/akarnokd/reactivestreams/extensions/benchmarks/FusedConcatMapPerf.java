@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.DynamicValuePublisher;
+import hu.akarnokd.reactivestreams.extensions.examples.*;
+
+/**
+ * Measures concatMap over range inners of 1, 10 and 1000 elements, compared with
+ * dynamic scalar inners read via {@code value()}, with unbounded and bounded requests.
+ * <p>
+ * gradlew :reactive-streams-extensions-benchmarks:jmh -Pjmh=FusedConcatMapPerf
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class FusedConcatMapPerf {
+
+    @Param({ "1", "10", "1000" })
+    public int innerCount;
+
+    @Param({ "1000000" })
+    public int count;
+
+    Publisher<Integer> range;
+
+    Publisher<Integer> scalar;
+
+    @Setup
+    public void setup() {
+        final int n = innerCount;
+        FusedRangePublisher outer = new FusedRangePublisher(0, count / n);
+
+        range = new FusedConcatMapPublisher<Integer, Integer>(outer, new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer t) {
+                return new FusedRangePublisher(t, n);
+            }
+        }, 32);
+
+        scalar = new FusedConcatMapPublisher<Integer, Integer>(outer, new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(final Integer t) {
+                return new DynamicValuePublisher<Integer>() {
+                    @Override
+                    public Integer value() {
+                        return t;
+                    }
+
+                    @Override
+                    public void subscribe(Subscriber<? super Integer> s) {
+                        new JustPublisher<Integer>(t).subscribe(s);
+                    }
+                };
+            }
+        }, 32);
+    }
+
+    @Benchmark
+    public void range(Blackhole bh) {
+        range.subscribe(new PerfSubscriber(bh));
+    }
+
+    @Benchmark
+    public void rangeBounded(Blackhole bh) {
+        range.subscribe(new FusedRangePublisherPerf.BoundedPerfSubscriber(bh));
+    }
+
+    /** Emits one value per outer item, compare with {@code innerCount == 1}. */
+    @Benchmark
+    public void scalar(Blackhole bh) {
+        scalar.subscribe(new PerfSubscriber(bh));
+    }
+
+    /** Emits one value per outer item through the arbiter, compare with {@code innerCount == 1}. */
+    @Benchmark
+    public void scalarBounded(Blackhole bh) {
+        scalar.subscribe(new FusedRangePublisherPerf.BoundedPerfSubscriber(bh));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.examples.*;
+
+/**
+ * Measures flatMap over 1, 10 and 1000 element inner sources: SYNC-fused inners drained
+ * through their queue, non-fused inners and constant inners emitted without subscribing.
+ * <p>
+ * gradlew :reactive-streams-extensions-benchmarks:jmh -Pjmh=FusedFlatMapPerf
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class FusedFlatMapPerf {
+
+    @Param({ "1", "10", "1000" })
+    public int innerCount;
+
+    @Param({ "1000000" })
+    public int count;
+
+    @Param({ "32" })
+    public int maxConcurrency;
+
+    Publisher<Integer> fused;
+
+    Publisher<Integer> nonFused;
+
+    Publisher<Integer> constant;
+
+    @Setup
+    public void setup() {
+        final int n = innerCount;
+        FusedRangePublisher outer = new FusedRangePublisher(0, count / n);
+
+        fused = new FusedFlatMapPublisher<Integer, Integer>(outer, new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer t) {
+                return new FusedRangePublisher(t, n);
+            }
+        }, maxConcurrency, 128);
+
+        nonFused = new FusedFlatMapPublisher<Integer, Integer>(outer, new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer t) {
+                return new HidePublisher<Integer>(new FusedRangePublisher(t, n));
+            }
+        }, maxConcurrency, 128);
+
+        constant = new FusedFlatMapPublisher<Integer, Integer>(outer, new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer t) {
+                return new JustPublisher<Integer>(t);
+            }
+        }, maxConcurrency, 128);
+    }
+
+    @Benchmark
+    public void fused(Blackhole bh) {
+        fused.subscribe(new PerfSubscriber(bh));
+    }
+
+    @Benchmark
+    public void nonFused(Blackhole bh) {
+        nonFused.subscribe(new PerfSubscriber(bh));
+    }
+
+    /** Emits one constant value per outer item, compare with {@code innerCount == 1}. */
+    @Benchmark
+    public void constant(Blackhole bh) {
+        constant.subscribe(new PerfSubscriber(bh));
+    }
+
+    /**
+     * Hides the identity and fusion capability of the source.
+     * @param <T> the value type
+     */
+    static final class HidePublisher<T> implements Publisher<T> {
+
+        final Publisher<T> source;
+
+        HidePublisher(Publisher<T> source) {
+            this.source = source;
+        }
+
+        @Override
+        public void subscribe(final Subscriber<? super T> s) {
+            source.subscribe(new Subscriber<T>() {
+                @Override
+                public void onSubscribe(final Subscription upstream) {
+                    s.onSubscribe(new Subscription() {
+                        @Override
+                        public void request(long n) {
+                            upstream.request(n);
+                        }
+
+                        @Override
+                        public void cancel() {
+                            upstream.cancel();
+                        }
+                    });
+                }
+
+                @Override
+                public void onNext(T t) {
+                    s.onNext(t);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    s.onError(t);
+                }
+
+                @Override
+                public void onComplete() {
+                    s.onComplete();
+                }
+            });
+        }
+    }
+}
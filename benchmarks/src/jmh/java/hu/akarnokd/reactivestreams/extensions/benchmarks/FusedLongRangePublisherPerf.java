@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.akarnokd.reactivestreams.extensions.FusedQueueSubscription;
+import hu.akarnokd.reactivestreams.extensions.examples.FusedLongRangePublisher;
+
+/**
+ * Measures the emission of {@link FusedLongRangePublisher} in the
+ * various consumption modes.
+ * <p>
+ * gradlew :reactive-streams-extensions-benchmarks:jmh -Pjmh=FusedLongRangePublisherPerf
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class FusedLongRangePublisherPerf {
+
+    @Param({ "1", "1000", "1000000" })
+    public int count;
+
+    FusedLongRangePublisher source;
+
+    @Setup
+    public void setup() {
+        source = new FusedLongRangePublisher(1L, count);
+    }
+
+    @Benchmark
+    public void standard(Blackhole bh) {
+        source.subscribe(new PerfSubscriber(bh).standard());
+    }
+
+    @Benchmark
+    public void relaxed(Blackhole bh) {
+        source.subscribe(new PerfSubscriber(bh));
+    }
+
+    @Benchmark
+    public void relaxedBounded(Blackhole bh) {
+        source.subscribe(new FusedRangePublisherPerf.BoundedPerfSubscriber(bh));
+    }
+
+    @Benchmark
+    public void conditional(Blackhole bh) {
+        source.subscribe(new PerfConditionalSubscriber(bh));
+    }
+
+    @Benchmark
+    public void syncFused(Blackhole bh) {
+        source.subscribe(new PerfSubscriber(bh, FusedQueueSubscription.SYNC));
+    }
+
+    @Benchmark
+    public void syncFusedPrimitive(Blackhole bh) {
+        source.subscribe(new PerfSubscriber(bh, FusedQueueSubscription.SYNC | FusedQueueSubscription.PRIMITIVE));
+    }
+}
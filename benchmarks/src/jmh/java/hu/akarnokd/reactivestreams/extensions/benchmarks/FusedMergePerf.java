@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.examples.*;
+
+/**
+ * Measures the throughput of merging 2, 8 and 64 sources that are SYNC-fused, non-fused
+ * or emitting concurrently from executor threads, and the fairness of a bounded window
+ * over the SYNC-fused and non-fused sources.
+ * <p>
+ * The fairness benchmarks request {@code 8 * sources} items and count the sources
+ * that didn't get any of them (starved) per window; the ideal is zero.
+ * <p>
+ * gradlew :reactive-streams-extensions-benchmarks:jmh -Pjmh=FusedMergePerf
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class FusedMergePerf {
+
+    @Param({ "2", "8", "64" })
+    public int sources;
+
+    @Param({ "1000000" })
+    public int count;
+
+    @Param({ "16" })
+    public int prefetch;
+
+    ExecutorService executor;
+
+    Publisher<Integer> syncFused;
+
+    Publisher<Integer> nonFused;
+
+    Publisher<Integer> concurrent;
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Setup
+    public void setup() {
+        executor = Executors.newFixedThreadPool(4);
+
+        int n = sources;
+        int per = count / n;
+        Publisher<Integer>[] a = new Publisher[n];
+        Publisher<Integer>[] b = new Publisher[n];
+        Publisher<Integer>[] c = new Publisher[n];
+        for (int i = 0; i < n; i++) {
+            FusedRangePublisher range = new FusedRangePublisher(i * per, per);
+            a[i] = range;
+            b[i] = new FusedFlatMapPerf.HidePublisher<Integer>(range);
+            c[i] = new FusedFlatMapPerf.HidePublisher<Integer>(new FusedObserveOnPublisher<Integer>(range, executor, prefetch));
+        }
+        syncFused = new FusedMergePublisher<Integer>(prefetch, a);
+        nonFused = new FusedMergePublisher<Integer>(prefetch, b);
+        concurrent = new FusedMergePublisher<Integer>(prefetch, c);
+    }
+
+    @TearDown
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class FairnessCounters {
+        public long starved;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            starved = 0L;
+        }
+    }
+
+    @Benchmark
+    public void syncFused(Blackhole bh) {
+        syncFused.subscribe(new PerfSubscriber(bh));
+    }
+
+    @Benchmark
+    public void nonFused(Blackhole bh) {
+        nonFused.subscribe(new PerfSubscriber(bh));
+    }
+
+    @Benchmark
+    public void concurrent(Blackhole bh) throws InterruptedException {
+        PerfAsyncSubscriber s = new PerfAsyncSubscriber(bh);
+        concurrent.subscribe(s);
+        s.await();
+    }
+
+    @Benchmark
+    public void fairnessSyncFused(FairnessCounters counters) {
+        WindowSubscriber s = new WindowSubscriber(sources, count / sources);
+        syncFused.subscribe(s);
+        counters.starved += s.starved();
+    }
+
+    @Benchmark
+    public void fairnessNonFused(FairnessCounters counters) {
+        WindowSubscriber s = new WindowSubscriber(sources, count / sources);
+        nonFused.subscribe(s);
+        counters.starved += s.starved();
+    }
+
+    /**
+     * Requests a window of {@code 8 * sources} items, counts them per source
+     * and cancels once the window has been received.
+     */
+    static final class WindowSubscriber implements Subscriber<Integer> {
+
+        final int[] counts;
+
+        final int per;
+
+        int remaining;
+
+        Subscription upstream;
+
+        WindowSubscriber(int sources, int per) {
+            this.counts = new int[sources];
+            this.per = per;
+            this.remaining = 8 * sources;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            upstream = s;
+            s.request(remaining);
+        }
+
+        @Override
+        public void onNext(Integer t) {
+            counts[t / per]++;
+            if (--remaining == 0) {
+                upstream.cancel();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            // not expected
+        }
+
+        @Override
+        public void onComplete() {
+            // not expected
+        }
+
+        int starved() {
+            int s = 0;
+            for (int c : counts) {
+                if (c == 0) {
+                    s++;
+                }
+            }
+            return s;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Publisher;
+
+import hu.akarnokd.reactivestreams.extensions.FusedQueueSubscription;
+import hu.akarnokd.reactivestreams.extensions.examples.*;
+
+/**
+ * Measures the observeOn operator with a SYNC-fused upstream, a non-fused upstream
+ * buffered in an SPSC queue and an ASYNC-fused upstream (a second observeOn),
+ * optionally consumed via ASYNC fusion.
+ * <p>
+ * gradlew :reactive-streams-extensions-benchmarks:jmh -Pjmh=FusedObserveOnPerf
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class FusedObserveOnPerf {
+
+    @Param({ "1", "1000", "1000000" })
+    public int count;
+
+    @Param({ "16", "128" })
+    public int prefetch;
+
+    ExecutorService executor1;
+
+    ExecutorService executor2;
+
+    Publisher<Integer> syncFused;
+
+    Publisher<Integer> nonFused;
+
+    Publisher<Integer> asyncFused;
+
+    @Setup
+    public void setup() {
+        executor1 = Executors.newSingleThreadExecutor();
+        executor2 = Executors.newSingleThreadExecutor();
+
+        FusedRangePublisher range = new FusedRangePublisher(1, count);
+        syncFused = new FusedObserveOnPublisher<Integer>(range, executor1, prefetch);
+
+        Publisher<Integer> filtered = new FusedFilterPublisher<Integer>(range, new Predicate<Integer>() {
+            @Override
+            public boolean test(Integer t) {
+                return true;
+            }
+        });
+        nonFused = new FusedObserveOnPublisher<Integer>(filtered, executor1, prefetch);
+
+        asyncFused = new FusedObserveOnPublisher<Integer>(syncFused, executor2, prefetch);
+    }
+
+    @TearDown
+    public void teardown() {
+        executor1.shutdownNow();
+        executor2.shutdownNow();
+    }
+
+    @Benchmark
+    public void syncFused(Blackhole bh) throws InterruptedException {
+        PerfAsyncSubscriber s = new PerfAsyncSubscriber(bh);
+        syncFused.subscribe(s);
+        s.await();
+    }
+
+    @Benchmark
+    public void syncFusedOutputFused(Blackhole bh) throws InterruptedException {
+        PerfAsyncSubscriber s = new PerfAsyncSubscriber(bh, FusedQueueSubscription.ANY);
+        syncFused.subscribe(s);
+        s.await();
+    }
+
+    @Benchmark
+    public void nonFused(Blackhole bh) throws InterruptedException {
+        PerfAsyncSubscriber s = new PerfAsyncSubscriber(bh);
+        nonFused.subscribe(s);
+        s.await();
+    }
+
+    @Benchmark
+    public void nonFusedOutputFused(Blackhole bh) throws InterruptedException {
+        PerfAsyncSubscriber s = new PerfAsyncSubscriber(bh, FusedQueueSubscription.ANY);
+        nonFused.subscribe(s);
+        s.await();
+    }
+
+    @Benchmark
+    public void asyncFused(Blackhole bh) throws InterruptedException {
+        PerfAsyncSubscriber s = new PerfAsyncSubscriber(bh);
+        asyncFused.subscribe(s);
+        s.await();
+    }
+}
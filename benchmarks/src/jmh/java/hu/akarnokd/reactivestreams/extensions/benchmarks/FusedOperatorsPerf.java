@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.akarnokd.reactivestreams.extensions.FusedQueueSubscription;
+import hu.akarnokd.reactivestreams.extensions.examples.*;
+
+/**
+ * Measures the map and filter operators over a range source, comparing the standard
+ * path, the conditional path and SYNC fusion through {@code poll()}.
+ * <p>
+ * gradlew :reactive-streams-extensions-benchmarks:jmh -Pjmh=FusedOperatorsPerf
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class FusedOperatorsPerf {
+
+    @Param({ "1", "1000", "1000000" })
+    public int count;
+
+    FusedMapPublisher<Integer, Integer> map;
+
+    FusedFilterPublisher<Integer> filter;
+
+    @Setup
+    public void setup() {
+        FusedRangePublisher range = new FusedRangePublisher(1, count);
+        map = new FusedMapPublisher<Integer, Integer>(range, new Function<Integer, Integer>() {
+            @Override
+            public Integer apply(Integer t) {
+                return t + 1;
+            }
+        });
+        filter = new FusedFilterPublisher<Integer>(range, new Predicate<Integer>() {
+            @Override
+            public boolean test(Integer t) {
+                return (t & 1) == 0;
+            }
+        });
+    }
+
+    @Benchmark
+    public void map(Blackhole bh) {
+        map.subscribe(new PerfSubscriber(bh));
+    }
+
+    @Benchmark
+    public void mapConditional(Blackhole bh) {
+        map.subscribe(new PerfConditionalSubscriber(bh));
+    }
+
+    @Benchmark
+    public void mapSyncFused(Blackhole bh) {
+        map.subscribe(new PerfSubscriber(bh, FusedQueueSubscription.SYNC));
+    }
+
+    @Benchmark
+    public void filter(Blackhole bh) {
+        filter.subscribe(new PerfSubscriber(bh));
+    }
+
+    @Benchmark
+    public void filterBounded(Blackhole bh) {
+        filter.subscribe(new FusedRangePublisherPerf.BoundedPerfSubscriber(bh));
+    }
+
+    @Benchmark
+    public void filterConditional(Blackhole bh) {
+        filter.subscribe(new PerfConditionalSubscriber(bh));
+    }
+
+    @Benchmark
+    public void filterSyncFused(Blackhole bh) {
+        filter.subscribe(new PerfSubscriber(bh, FusedQueueSubscription.SYNC));
+    }
+}
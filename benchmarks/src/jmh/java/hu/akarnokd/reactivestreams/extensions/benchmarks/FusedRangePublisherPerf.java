@@ -0,0 +1,167 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Subscription;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+import hu.akarnokd.reactivestreams.extensions.examples.FusedRangePublisher;
+import hu.akarnokd.reactivestreams.extensions.tools.FusedQueueTools;
+
+/**
+ * Measures the emission of {@link FusedRangePublisher} in the
+ * various consumption modes.
+ * <p>
+ * gradlew :reactive-streams-extensions-benchmarks:jmh -Pjmh=FusedRangePublisherPerf
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class FusedRangePublisherPerf {
+
+    @Param({ "1", "1000", "1000000" })
+    public int count;
+
+    FusedRangePublisher source;
+
+    @Setup
+    public void setup() {
+        source = new FusedRangePublisher(1, count);
+    }
+
+    @Benchmark
+    public void standard(Blackhole bh) {
+        source.subscribe(new PerfSubscriber(bh).standard());
+    }
+
+    @Benchmark
+    public void relaxed(Blackhole bh) {
+        source.subscribe(new PerfSubscriber(bh));
+    }
+
+    /**
+     * Requests {@code Long.MAX_VALUE - 1} so that the emission goes through the
+     * accounting loop instead of the unbounded fast path.
+     */
+    @Benchmark
+    public void relaxedBounded(Blackhole bh) {
+        source.subscribe(new BoundedPerfSubscriber(bh));
+    }
+
+    @Benchmark
+    public void conditional(Blackhole bh) {
+        source.subscribe(new PerfConditionalSubscriber(bh));
+    }
+
+    @Benchmark
+    public void batch(Blackhole bh) {
+        source.subscribe(new PerfBatchSubscriber(bh));
+    }
+
+    @Benchmark
+    public void syncFused(Blackhole bh) {
+        source.subscribe(new PerfSubscriber(bh, FusedQueueSubscription.SYNC));
+    }
+
+    @Benchmark
+    public void syncFusedPrimitive(Blackhole bh) {
+        source.subscribe(new PerfSubscriber(bh, FusedQueueSubscription.SYNC | FusedQueueSubscription.PRIMITIVE));
+    }
+
+    @Benchmark
+    public void syncFusedBulk(Blackhole bh) {
+        source.subscribe(new BulkPerfSubscriber(bh, 128));
+    }
+
+    /** Requests {@code Long.MAX_VALUE - 1} instead of an unbounded amount. */
+    static final class BoundedPerfSubscriber extends PerfSubscriber {
+
+        BoundedPerfSubscriber(Blackhole bh) {
+            super(bh);
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            s.request(Long.MAX_VALUE - 1);
+        }
+    }
+
+    /**
+     * Establishes SYNC fusion and drains the upstream in batches
+     * via {@link FusedQueueTools#drain(FusedQueue, Object[], int)}.
+     */
+    static final class BulkPerfSubscriber implements RelaxedSubscriber<Integer> {
+
+        final Blackhole bh;
+
+        final Integer[] batch;
+
+        BulkPerfSubscriber(Blackhole bh, int batchSize) {
+            this.bh = bh;
+            this.batch = new Integer[batchSize];
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (s instanceof FusedQueueSubscription) {
+                @SuppressWarnings("unchecked")
+                FusedQueueSubscription<Integer> qs = (FusedQueueSubscription<Integer>)s;
+                if (qs.requestFusion(FusedQueueSubscription.SYNC) == FusedQueueSubscription.SYNC) {
+                    Blackhole bh = this.bh;
+                    Integer[] b = batch;
+                    try {
+                        int n;
+                        while ((n = FusedQueueTools.drain(qs, b, b.length)) != 0) {
+                            for (int i = 0; i < n; i++) {
+                                bh.consume(b[i]);
+                            }
+                        }
+                    } catch (Throwable ex) {
+                        qs.clear();
+                        bh.consume(ex);
+                        return;
+                    }
+                    bh.consume(true);
+                    return;
+                }
+            }
+            s.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(Integer t) {
+            bh.consume(t);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            bh.consume(t);
+        }
+
+        @Override
+        public void onComplete() {
+            bh.consume(true);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.akarnokd.reactivestreams.extensions.FusedQueueSubscription;
+import hu.akarnokd.reactivestreams.extensions.examples.*;
+
+/**
+ * Measures the emission of the array, Iterable and Spliterator sources, comparing the
+ * unbounded fast path ({@code forEachRemaining} for the Spliterator) with the bounded
+ * accounting loop ({@code tryAdvance}) and SYNC fusion.
+ * <p>
+ * gradlew :reactive-streams-extensions-benchmarks:jmh -Pjmh=FusedSourcesPerf
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class FusedSourcesPerf {
+
+    @Param({ "1", "1000", "1000000" })
+    public int count;
+
+    FusedArrayPublisher<Integer> array;
+
+    FusedIterablePublisher<Integer> iterable;
+
+    FusedSpliteratorPublisher<Integer> spliterator;
+
+    @Setup
+    public void setup() {
+        Integer[] items = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            items[i] = i;
+        }
+        List<Integer> list = Arrays.asList(items);
+        array = new FusedArrayPublisher<Integer>(items);
+        iterable = new FusedIterablePublisher<Integer>(list);
+        spliterator = new FusedSpliteratorPublisher<Integer>(list::spliterator);
+    }
+
+    @Benchmark
+    public void array(Blackhole bh) {
+        array.subscribe(new PerfSubscriber(bh));
+    }
+
+    @Benchmark
+    public void arrayBounded(Blackhole bh) {
+        array.subscribe(new FusedRangePublisherPerf.BoundedPerfSubscriber(bh));
+    }
+
+    @Benchmark
+    public void arraySyncFused(Blackhole bh) {
+        array.subscribe(new PerfSubscriber(bh, FusedQueueSubscription.SYNC));
+    }
+
+    @Benchmark
+    public void iterable(Blackhole bh) {
+        iterable.subscribe(new PerfSubscriber(bh));
+    }
+
+    @Benchmark
+    public void iterableBounded(Blackhole bh) {
+        iterable.subscribe(new FusedRangePublisherPerf.BoundedPerfSubscriber(bh));
+    }
+
+    @Benchmark
+    public void iterableSyncFused(Blackhole bh) {
+        iterable.subscribe(new PerfSubscriber(bh, FusedQueueSubscription.SYNC));
+    }
+
+    @Benchmark
+    public void spliterator(Blackhole bh) {
+        spliterator.subscribe(new PerfSubscriber(bh));
+    }
+
+    @Benchmark
+    public void spliteratorBounded(Blackhole bh) {
+        spliterator.subscribe(new FusedRangePublisherPerf.BoundedPerfSubscriber(bh));
+    }
+
+    @Benchmark
+    public void spliteratorSyncFused(Blackhole bh) {
+        spliterator.subscribe(new PerfSubscriber(bh, FusedQueueSubscription.SYNC));
+    }
+}
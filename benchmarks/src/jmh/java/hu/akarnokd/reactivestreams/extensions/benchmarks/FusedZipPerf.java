@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Publisher;
+
+import hu.akarnokd.reactivestreams.extensions.examples.*;
+
+/**
+ * Measures zipping 2 and 8 SYNC-fused or non-fused range sources, handing the
+ * zipper a new or a reused row array.
+ * <p>
+ * gradlew :reactive-streams-extensions-benchmarks:jmh -Pjmh=FusedZipPerf
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class FusedZipPerf {
+
+    @Param({ "2", "8" })
+    public int sources;
+
+    @Param({ "1000000" })
+    public int count;
+
+    @Param({ "true", "false" })
+    public boolean reuseRow;
+
+    Publisher<Integer> syncFused;
+
+    Publisher<Integer> nonFused;
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Setup
+    public void setup() {
+        Function<Object[], Integer> zipper = new Function<Object[], Integer>() {
+            @Override
+            public Integer apply(Object[] t) throws Throwable {
+                return (Integer)t[0];
+            }
+        };
+
+        int n = sources;
+        Publisher<Integer>[] a = new Publisher[n];
+        Publisher<Integer>[] b = new Publisher[n];
+        for (int i = 0; i < n; i++) {
+            FusedRangePublisher range = new FusedRangePublisher(1, count);
+            a[i] = range;
+            b[i] = new FusedFlatMapPerf.HidePublisher<Integer>(range);
+        }
+        syncFused = new FusedZipPublisher<Integer>(zipper, 128, reuseRow, a);
+        nonFused = new FusedZipPublisher<Integer>(zipper, 128, reuseRow, b);
+    }
+
+    @Benchmark
+    public void syncFused(Blackhole bh) {
+        syncFused.subscribe(new PerfSubscriber(bh));
+    }
+
+    @Benchmark
+    public void nonFused(Blackhole bh) {
+        nonFused.subscribe(new PerfSubscriber(bh));
+    }
+}
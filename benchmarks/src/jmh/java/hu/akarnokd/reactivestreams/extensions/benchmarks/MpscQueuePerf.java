@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.akarnokd.reactivestreams.extensions.FusedQueue;
+import hu.akarnokd.reactivestreams.extensions.tools.*;
+
+/**
+ * Measures the throughput of the multi-producer single-consumer queues with
+ * a varying number of producer threads and a single consumer thread, compared
+ * to a {@link ConcurrentLinkedQueue}.
+ * <p>
+ * gradlew :reactive-streams-extensions-benchmarks:jmh -Pjmh=MpscQueuePerf
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class MpscQueuePerf {
+
+    /** The total number of items transferred per invocation, divisible by the number of producers. */
+    static final int COUNT = 1 << 20;
+
+    static final Object ITEM = 1;
+
+    @Param({ "1", "2", "4", "8", "16" })
+    public int producers;
+
+    @Param({ "MpscArrayQueue", "MpscLinkedArrayQueue", "ConcurrentLinkedQueue" })
+    public String queueType;
+
+    @Param({ "1024" })
+    public int capacity;
+
+    ExecutorService executor;
+
+    FusedQueue<Object> queue;
+
+    @Setup
+    public void setup() {
+        executor = Executors.newFixedThreadPool(producers);
+        if ("MpscArrayQueue".equals(queueType)) {
+            queue = new MpscArrayQueue<Object>(capacity);
+        } else if ("MpscLinkedArrayQueue".equals(queueType)) {
+            queue = new MpscLinkedArrayQueue<Object>(capacity);
+        } else {
+            queue = new ConcurrentLinkedFusedQueue();
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void offerPoll(Blackhole bh) throws Throwable {
+        final FusedQueue<Object> q = queue;
+        final int n = COUNT / producers;
+
+        for (int p = 0; p < producers; p++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < n; i++) {
+                        while (!q.offer(ITEM)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+        }
+
+        for (int i = 0; i < COUNT; i++) {
+            Object v;
+            while ((v = q.poll()) == null) { }
+            bh.consume(v);
+        }
+    }
+
+    /**
+     * Adapts a {@link ConcurrentLinkedQueue} to the {@link FusedQueue} interface.
+     */
+    static final class ConcurrentLinkedFusedQueue implements FusedQueue<Object> {
+
+        final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<Object>();
+
+        @Override
+        public boolean offer(Object element) {
+            return queue.offer(element);
+        }
+
+        @Override
+        public Object poll() {
+            return queue.poll();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return queue.isEmpty();
+        }
+
+        @Override
+        public void clear() {
+            queue.clear();
+        }
+    }
+}
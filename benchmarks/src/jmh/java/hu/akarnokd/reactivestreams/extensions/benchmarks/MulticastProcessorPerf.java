@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Publisher;
+
+import hu.akarnokd.reactivestreams.extensions.examples.*;
+
+/**
+ * Measures multicasting a SYNC-fused and a non-fused range to 1, 4 and 16
+ * subscribers through a {@link MulticastProcessor} with various prefetch amounts.
+ * <p>
+ * gradlew :reactive-streams-extensions-benchmarks:jmh -Pjmh=MulticastProcessorPerf
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class MulticastProcessorPerf {
+
+    @Param({ "1", "4", "16" })
+    public int subscribers;
+
+    @Param({ "16", "128" })
+    public int prefetch;
+
+    @Param({ "1000000" })
+    public int count;
+
+    Publisher<Integer> syncFused;
+
+    Publisher<Integer> nonFused;
+
+    @Setup
+    public void setup() {
+        syncFused = new FusedRangePublisher(1, count);
+        nonFused = new FusedFlatMapPerf.HidePublisher<Integer>(new FusedRangePublisher(1, count));
+    }
+
+    void run(Publisher<Integer> source, Blackhole bh) {
+        MulticastProcessor<Integer> mp = new MulticastProcessor<Integer>(prefetch);
+        for (int i = 0; i < subscribers; i++) {
+            mp.subscribe(new PerfSubscriber(bh));
+        }
+        source.subscribe(mp);
+    }
+
+    @Benchmark
+    public void syncFused(Blackhole bh) {
+        run(syncFused, bh);
+    }
+
+    @Benchmark
+    public void nonFused(Blackhole bh) {
+        run(nonFused, bh);
+    }
+}
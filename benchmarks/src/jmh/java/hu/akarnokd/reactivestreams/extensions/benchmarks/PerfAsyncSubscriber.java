@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+
+/**
+ * Consumes all signals of an asynchronous source into a {@link Blackhole}, requesting
+ * an unbounded amount or polling an ASYNC-fused upstream, and lets the benchmark
+ * thread wait for the terminal signal.
+ */
+public final class PerfAsyncSubscriber implements RelaxedSubscriber<Object> {
+
+    final Blackhole bh;
+
+    final int fusionMode;
+
+    final CountDownLatch latch;
+
+    FusedQueueSubscription<Object> qs;
+
+    public PerfAsyncSubscriber(Blackhole bh) {
+        this(bh, FusedQueueSubscription.NONE);
+    }
+
+    public PerfAsyncSubscriber(Blackhole bh, int fusionMode) {
+        this.bh = bh;
+        this.fusionMode = fusionMode;
+        this.latch = new CountDownLatch(1);
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (fusionMode != FusedQueueSubscription.NONE && s instanceof FusedQueueSubscription) {
+            @SuppressWarnings("unchecked")
+            FusedQueueSubscription<Object> qs = (FusedQueueSubscription<Object>)s;
+            if (qs.requestFusion(fusionMode) == FusedQueueSubscription.ASYNC) {
+                this.qs = qs;
+            }
+        }
+        s.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(Object t) {
+        FusedQueueSubscription<Object> q = qs;
+        if (q != null) {
+            drain(q);
+        } else {
+            bh.consume(t);
+        }
+    }
+
+    void drain(FusedQueueSubscription<Object> q) {
+        Blackhole bh = this.bh;
+        try {
+            Object v;
+            while ((v = q.poll()) != null) {
+                bh.consume(v);
+            }
+        } catch (Throwable ex) {
+            q.cancel();
+            q.clear();
+            bh.consume(ex);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        bh.consume(t);
+        latch.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+        FusedQueueSubscription<Object> q = qs;
+        if (q != null) {
+            drain(q);
+        }
+        bh.consume(true);
+        latch.countDown();
+    }
+
+    /**
+     * Waits for the terminal signal.
+     * @throws InterruptedException if the wait was interrupted
+     * @throws IllegalStateException if the source didn't terminate in time
+     */
+    public void await() throws InterruptedException {
+        if (!latch.await(30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("The source didn't terminate in time");
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.akarnokd.reactivestreams.extensions.BatchSubscriber;
+
+/**
+ * Consumes all signals into a {@link Blackhole} via the
+ * {@link #onNextBatch(Object[], int)} path, requesting an unbounded amount.
+ */
+public final class PerfBatchSubscriber extends PerfSubscriber implements BatchSubscriber<Object> {
+
+    public PerfBatchSubscriber(Blackhole bh) {
+        super(bh);
+    }
+
+    @Override
+    public int onNextBatch(Object[] items, int count) {
+        Blackhole bh = this.bh;
+        for (int i = 0; i < count; i++) {
+            bh.consume(items[i]);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.akarnokd.reactivestreams.extensions.ConditionalSubscriber;
+
+/**
+ * Consumes all signals into a {@link Blackhole} via the conditional
+ * {@link #tryOnNext(Object)} path, requesting an unbounded amount.
+ */
+public final class PerfConditionalSubscriber extends PerfSubscriber implements ConditionalSubscriber<Object> {
+
+    public PerfConditionalSubscriber(Blackhole bh) {
+        super(bh);
+    }
+
+    @Override
+    public boolean tryOnNext(Object t) {
+        bh.consume(t);
+        return true;
+    }
+}
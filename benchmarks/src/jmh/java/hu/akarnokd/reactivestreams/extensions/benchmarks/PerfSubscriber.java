@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+
+/**
+ * Consumes all signals into a {@link Blackhole}, requesting an unbounded amount
+ * or establishing the given fusion mode with a {@link FusedQueueSubscription} upstream
+ * (consuming primitive values without boxing if {@code PRIMITIVE} fusion is established).
+ */
+public class PerfSubscriber implements RelaxedSubscriber<Object> {
+
+    final Blackhole bh;
+
+    final int fusionMode;
+
+    public PerfSubscriber(Blackhole bh) {
+        this(bh, FusedQueueSubscription.NONE);
+    }
+
+    public PerfSubscriber(Blackhole bh, int fusionMode) {
+        this.bh = bh;
+        this.fusionMode = fusionMode;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (fusionMode != FusedQueueSubscription.NONE && s instanceof FusedQueueSubscription) {
+            @SuppressWarnings("unchecked")
+            FusedQueueSubscription<Object> qs = (FusedQueueSubscription<Object>)s;
+            int m = qs.requestFusion(fusionMode);
+            if (m == (FusedQueueSubscription.SYNC | FusedQueueSubscription.PRIMITIVE)) {
+                Blackhole bh = this.bh;
+                try {
+                    if (s instanceof IntFusedQueue) {
+                        IntFusedQueue iq = (IntFusedQueue)s;
+                        while (!iq.isEmpty()) {
+                            bh.consume(iq.pollInt());
+                        }
+                    } else {
+                        LongFusedQueue lq = (LongFusedQueue)s;
+                        while (!lq.isEmpty()) {
+                            bh.consume(lq.pollLong());
+                        }
+                    }
+                } catch (Throwable ex) {
+                    qs.clear();
+                    bh.consume(ex);
+                    return;
+                }
+                bh.consume(true);
+                return;
+            }
+            if (m == FusedQueueSubscription.SYNC) {
+                Blackhole bh = this.bh;
+                try {
+                    Object v;
+                    while ((v = qs.poll()) != null) {
+                        bh.consume(v);
+                    }
+                } catch (Throwable ex) {
+                    qs.clear();
+                    bh.consume(ex);
+                    return;
+                }
+                bh.consume(true);
+                return;
+            }
+        }
+        s.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(Object t) {
+        bh.consume(t);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        bh.consume(t);
+    }
+
+    @Override
+    public void onComplete() {
+        bh.consume(true);
+    }
+
+    /**
+     * Returns a plain {@link Subscriber} view of this consumer so that
+     * sources have to treat it as a standard, non-relaxed {@code Subscriber}.
+     * @return the standard Subscriber view
+     */
+    public final Subscriber<Object> standard() {
+        return new Subscriber<Object>() {
+
+            @Override
+            public void onSubscribe(Subscription s) {
+                PerfSubscriber.this.onSubscribe(s);
+            }
+
+            @Override
+            public void onNext(Object t) {
+                PerfSubscriber.this.onNext(t);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                PerfSubscriber.this.onError(t);
+            }
+
+            @Override
+            public void onComplete() {
+                PerfSubscriber.this.onComplete();
+            }
+        };
+    }
+}
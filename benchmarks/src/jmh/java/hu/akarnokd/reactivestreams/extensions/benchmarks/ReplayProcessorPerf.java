@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.akarnokd.reactivestreams.extensions.examples.*;
+
+/**
+ * Measures relaying items live to 1 and 4 subscribers of a size- or time-bounded
+ * {@link ReplayProcessor}, and replaying the retained items to a late subscriber.
+ * <p>
+ * gradlew :reactive-streams-extensions-benchmarks:jmh -Pjmh=ReplayProcessorPerf
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class ReplayProcessorPerf {
+
+    @Param({ "1", "4" })
+    public int subscribers;
+
+    @Param({ "1000000" })
+    public int count;
+
+    @Param({ "1000" })
+    public int maxSize;
+
+    FusedRangePublisher source;
+
+    ReplayProcessor<Integer> sizeReplay;
+
+    ReplayProcessor<Integer> timeReplay;
+
+    @Setup
+    public void setup() {
+        source = new FusedRangePublisher(1, count);
+
+        sizeReplay = new ReplayProcessor<Integer>(maxSize);
+        source.subscribe(sizeReplay);
+
+        timeReplay = new ReplayProcessor<Integer>(1, TimeUnit.HOURS);
+        source.subscribe(timeReplay);
+    }
+
+    void live(ReplayProcessor<Integer> rp, Blackhole bh) {
+        for (int i = 0; i < subscribers; i++) {
+            rp.subscribe(new PerfSubscriber(bh));
+        }
+        source.subscribe(rp);
+    }
+
+    @Benchmark
+    public void liveSize(Blackhole bh) {
+        live(new ReplayProcessor<Integer>(maxSize), bh);
+    }
+
+    @Benchmark
+    public void liveTime(Blackhole bh) {
+        live(new ReplayProcessor<Integer>(1, TimeUnit.HOURS), bh);
+    }
+
+    @Benchmark
+    public void replaySize(Blackhole bh) {
+        sizeReplay.subscribe(new PerfSubscriber(bh));
+    }
+
+    @Benchmark
+    public void replayTime(Blackhole bh) {
+        timeReplay.subscribe(new PerfSubscriber(bh));
+    }
+}
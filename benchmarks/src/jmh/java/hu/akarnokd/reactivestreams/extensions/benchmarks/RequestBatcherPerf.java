@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Subscription;
+
+import hu.akarnokd.reactivestreams.extensions.tools.*;
+
+/**
+ * Transfers items between a producer and a consumer thread through a queue where the
+ * consumer replenishes the producer's requested counter either per item or via
+ * {@link RequestBatcher}; the {@code items} and {@code requests} counters show the
+ * throughput and the number of contended updates of the shared counter.
+ * <p>
+ * gradlew :reactive-streams-extensions-benchmarks:jmh -Pjmh=RequestBatcherPerf
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Group)
+public class RequestBatcherPerf {
+
+    static final Integer ITEM = 1;
+
+    @Param({ "perItem", "batched" })
+    public String mode;
+
+    @Param({ "16", "128" })
+    public int prefetch;
+
+    SpscArrayQueue<Integer> queue;
+
+    AtomicLong requested;
+
+    Subscription upstream;
+
+    RequestBatcher batcher;
+
+    boolean batched;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long items;
+
+        public long requests;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            items = 0L;
+            requests = 0L;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        queue = new SpscArrayQueue<Integer>(prefetch);
+        requested = new AtomicLong(prefetch);
+        final AtomicLong r = requested;
+        upstream = new Subscription() {
+            @Override
+            public void request(long n) {
+                SubscriptionTools.getAndAddRequested(r, n);
+            }
+
+            @Override
+            public void cancel() {
+                // not used
+            }
+        };
+        batcher = new RequestBatcher(prefetch);
+        batched = "batched".equals(mode);
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(1)
+    public void producer() {
+        AtomicLong r = requested;
+        long n = r.get();
+        if (n != 0L) {
+            SpscArrayQueue<Integer> q = queue;
+            long e = 0L;
+            while (e != n && q.offer(ITEM)) {
+                e++;
+            }
+            if (e != 0L) {
+                r.addAndGet(-e);
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(1)
+    public void consumer(Counters counters, Blackhole bh) {
+        SpscArrayQueue<Integer> q = queue;
+        Subscription s = upstream;
+        Integer v;
+        while ((v = q.poll()) != null) {
+            bh.consume(v);
+            counters.items++;
+            if (batched) {
+                if (batcher.produced(s)) {
+                    counters.requests++;
+                }
+            } else {
+                s.request(1);
+                counters.requests++;
+            }
+        }
+    }
+}
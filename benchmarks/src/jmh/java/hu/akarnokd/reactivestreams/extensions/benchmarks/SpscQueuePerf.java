@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.akarnokd.reactivestreams.extensions.BulkFusedQueue;
+import hu.akarnokd.reactivestreams.extensions.tools.*;
+
+/**
+ * Compares the element-by-element and the bulk ({@link BulkFusedQueue}) transfer
+ * of items through the single-producer single-consumer queues on a single thread.
+ * <p>
+ * gradlew :reactive-streams-extensions-benchmarks:jmh -Pjmh=SpscQueuePerf
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class SpscQueuePerf {
+
+    @Param({ "SpscArrayQueue", "SpscLinkedArrayQueue" })
+    public String queueType;
+
+    @Param({ "16", "256" })
+    public int batch;
+
+    BulkFusedQueue<Integer> queue;
+
+    Integer[] items;
+
+    Integer[] into;
+
+    @Setup
+    public void setup() {
+        if ("SpscArrayQueue".equals(queueType)) {
+            queue = new SpscArrayQueue<Integer>(1024);
+        } else {
+            queue = new SpscLinkedArrayQueue<Integer>(1024);
+        }
+        items = new Integer[batch];
+        for (int i = 0; i < batch; i++) {
+            items[i] = i;
+        }
+        into = new Integer[batch];
+    }
+
+    @Benchmark
+    public void offerPoll(Blackhole bh) throws Throwable {
+        BulkFusedQueue<Integer> q = queue;
+        Integer[] a = items;
+        int n = a.length;
+        for (int i = 0; i < n; i++) {
+            q.offer(a[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            bh.consume(q.poll());
+        }
+    }
+
+    @Benchmark
+    public void offerAllDrain(Blackhole bh) throws Throwable {
+        BulkFusedQueue<Integer> q = queue;
+        Integer[] b = into;
+        q.offerAll(items, 0, items.length);
+        int n = q.drain(b, b.length);
+        for (int i = 0; i < n; i++) {
+            bh.consume(b[i]);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import org.openjdk.jmh.annotations.Fork;
+
+/**
+ * Runs the {@link StrictSubscriberPerf} benchmarks with the multi-release jar
+ * support turned off so that the Java 6 versions of the strict subscribers are
+ * measured instead of the Java 9+ {@code VarHandle} versions.
+ * <p>
+ * gradlew :reactive-streams-extensions-benchmarks:jmh -Pjmh=StrictSubscriber
+ */
+@Fork(value = 1, jvmArgsAppend = "-Djdk.util.jar.enableMultiRelease=false")
+public class StrictSubscriberJava6Perf extends StrictSubscriberPerf {
+
+}
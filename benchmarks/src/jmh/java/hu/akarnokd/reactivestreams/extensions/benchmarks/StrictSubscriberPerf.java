@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Subscriber;
+
+import hu.akarnokd.reactivestreams.extensions.tools.*;
+
+/**
+ * Measures the cost of a full onSubscribe, onNext* and onComplete
+ * sequence through the strict subscriber wrappers as well as the
+ * cost of just creating them.
+ * <p>
+ * On Java 9+, the volatile and compact wrappers are the {@code VarHandle} versions from
+ * the multi-release jar; see {@link StrictSubscriberJava6Perf} for the Java 6 versions.
+ * <p>
+ * gradlew :reactive-streams-extensions-benchmarks:jmh -Pjmh=StrictSubscriberPerf -PjmhProfilers=gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class StrictSubscriberPerf {
+
+    @Param({ "1", "1000", "1000000" })
+    public int count;
+
+    Subscriber<Object> consumer;
+
+    @Setup
+    public void setup(Blackhole bh) {
+        consumer = new PerfSubscriber(bh).standard();
+    }
+
+    /** Emitted repeatedly so that boxing doesn't show up in the allocation rate. */
+    static final Object ITEM = 1;
+
+    static void run(Subscriber<Object> s, int count) {
+        s.onSubscribe(EmptySubscription.INSTANCE);
+        for (int i = 0; i < count; i++) {
+            s.onNext(ITEM);
+        }
+        s.onComplete();
+    }
+
+    @Benchmark
+    public void strictAtomic() {
+        run(new StrictAtomicSubscriber<Object>(consumer), count);
+    }
+
+    @Benchmark
+    public void strictVolatile() {
+        run(new StrictVolatileSubscriber<Object>(consumer), count);
+    }
+
+    @Benchmark
+    public void strictCompact() {
+        run(new StrictCompactSubscriber<Object>(consumer), count);
+    }
+
+    @Benchmark
+    public Object createStrictAtomic() {
+        return new StrictAtomicSubscriber<Object>(consumer);
+    }
+
+    @Benchmark
+    public Object createStrictVolatile() {
+        return new StrictVolatileSubscriber<Object>(consumer);
+    }
+
+    @Benchmark
+    public Object createStrictCompact() {
+        return new StrictCompactSubscriber<Object>(consumer);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Subscription;
+
+import hu.akarnokd.reactivestreams.extensions.tools.*;
+
+/**
+ * Measures the per-call cost of the {@link SubscriptionTools} primitives,
+ * both the Atomic classes and the field updater variants.
+ * <p>
+ * gradlew :reactive-streams-extensions-benchmarks:jmh -Pjmh=SubscriptionToolsPerf
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class SubscriptionToolsPerf {
+
+    AtomicReference<Subscription> upstreamAtomic;
+
+    AtomicReference<Subscription> emptyUpstreamAtomic;
+
+    AtomicLong requestedAtomic;
+
+    AtomicLong wipAtomic;
+
+    AtomicReference<Throwable> errorAtomic;
+
+    volatile Subscription upstream;
+    static final AtomicReferenceFieldUpdater<SubscriptionToolsPerf, Subscription> UPSTREAM =
+            AtomicReferenceFieldUpdater.newUpdater(SubscriptionToolsPerf.class, Subscription.class, "upstream");
+
+    volatile Subscription emptyUpstream;
+    static final AtomicReferenceFieldUpdater<SubscriptionToolsPerf, Subscription> EMPTY_UPSTREAM =
+            AtomicReferenceFieldUpdater.newUpdater(SubscriptionToolsPerf.class, Subscription.class, "emptyUpstream");
+
+    volatile long requested;
+    static final AtomicLongFieldUpdater<SubscriptionToolsPerf> REQUESTED =
+            AtomicLongFieldUpdater.newUpdater(SubscriptionToolsPerf.class, "requested");
+
+    volatile long wip;
+    static final AtomicLongFieldUpdater<SubscriptionToolsPerf> WIP =
+            AtomicLongFieldUpdater.newUpdater(SubscriptionToolsPerf.class, "wip");
+
+    volatile Throwable error;
+    static final AtomicReferenceFieldUpdater<SubscriptionToolsPerf, Throwable> ERROR =
+            AtomicReferenceFieldUpdater.newUpdater(SubscriptionToolsPerf.class, Throwable.class, "error");
+
+    PerfConditionalSubscriber consumer;
+
+    @Setup
+    public void setup(Blackhole bh) {
+        consumer = new PerfConditionalSubscriber(bh);
+
+        upstreamAtomic = new AtomicReference<Subscription>(EmptySubscription.INSTANCE);
+        emptyUpstreamAtomic = new AtomicReference<Subscription>();
+        requestedAtomic = new AtomicLong();
+        wipAtomic = new AtomicLong();
+        errorAtomic = new AtomicReference<Throwable>();
+
+        upstream = EmptySubscription.INSTANCE;
+    }
+
+    @Setup(Level.Iteration)
+    public void setupIteration() {
+        // start from the middle so that neither the Long.MAX_VALUE shortcut
+        // nor the negative-amount check is hit during an iteration
+        requestedAtomic.set(Long.MAX_VALUE / 2);
+        requested = Long.MAX_VALUE / 2;
+    }
+
+    // ------------------------------------------------------------
+    // Atomic instances
+    // ------------------------------------------------------------
+
+    @Benchmark
+    public boolean serializedOnNextAtomic() {
+        return SubscriptionTools.serializedOnNext(consumer, wipAtomic, errorAtomic, 1);
+    }
+
+    @Benchmark
+    public boolean serializedTryOnNextAtomic() {
+        return SubscriptionTools.serializedTryOnNext(consumer, wipAtomic, errorAtomic, 1);
+    }
+
+    @Benchmark
+    public boolean deferredRequestAtomic() {
+        return SubscriptionTools.deferredRequest(upstreamAtomic, requestedAtomic, 1L);
+    }
+
+    @Benchmark
+    public boolean deferredRequestNoUpstreamAtomic() {
+        return SubscriptionTools.deferredRequest(emptyUpstreamAtomic, requestedAtomic, 1L);
+    }
+
+    @Benchmark
+    public long getAndAddRequestedAtomic() {
+        return SubscriptionTools.getAndAddRequested(requestedAtomic, 1L);
+    }
+
+    @Benchmark
+    public long subtractAndGetRequestedAtomic() {
+        return SubscriptionTools.subtractAndGetRequested(requestedAtomic, 1L);
+    }
+
+    // ------------------------------------------------------------
+    // Field updaters
+    // ------------------------------------------------------------
+
+    @Benchmark
+    public boolean serializedOnNextFieldUpdater() {
+        return SubscriptionTools.serializedOnNext(consumer, this, WIP, ERROR, 1);
+    }
+
+    @Benchmark
+    public boolean serializedTryOnNextFieldUpdater() {
+        return SubscriptionTools.serializedTryOnNext(consumer, this, WIP, ERROR, 1);
+    }
+
+    @Benchmark
+    public boolean deferredRequestFieldUpdater() {
+        return SubscriptionTools.deferredRequest(this, UPSTREAM, REQUESTED, 1L);
+    }
+
+    @Benchmark
+    public boolean deferredRequestNoUpstreamFieldUpdater() {
+        return SubscriptionTools.deferredRequest(this, EMPTY_UPSTREAM, REQUESTED, 1L);
+    }
+
+    @Benchmark
+    public long getAndAddRequestedFieldUpdater() {
+        return SubscriptionTools.getAndAddRequested(this, REQUESTED, 1L);
+    }
+
+    @Benchmark
+    public long subtractAndGetRequestedFieldUpdater() {
+        return SubscriptionTools.subtractAndGetRequested(this, REQUESTED, 1L);
+    }
+}
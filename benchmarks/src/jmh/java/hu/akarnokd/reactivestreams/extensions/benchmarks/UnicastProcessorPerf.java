@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.benchmarks;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Publisher;
+
+import hu.akarnokd.reactivestreams.extensions.FusedQueueSubscription;
+import hu.akarnokd.reactivestreams.extensions.examples.*;
+
+/**
+ * Measures pushing items into a {@link UnicastProcessor} with an SPSC or MPSC queue
+ * and consuming them directly or through an observeOn, with and without ASYNC fusion.
+ * <p>
+ * gradlew :reactive-streams-extensions-benchmarks:jmh -Pjmh=UnicastProcessorPerf
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class UnicastProcessorPerf {
+
+    @Param({ "1000", "1000000" })
+    public int count;
+
+    @Param({ "false", "true" })
+    public boolean multiProducer;
+
+    ExecutorService executor;
+
+    Integer[] items;
+
+    @Setup
+    public void setup() {
+        executor = Executors.newSingleThreadExecutor();
+        items = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            items[i] = i;
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+    void run(UnicastProcessor<Integer> up, Publisher<Integer> consumed, PerfAsyncSubscriber s) throws InterruptedException {
+        consumed.subscribe(s);
+        for (Integer v : items) {
+            up.onNext(v);
+        }
+        up.onComplete();
+        s.await();
+    }
+
+    @Benchmark
+    public void direct(Blackhole bh) throws InterruptedException {
+        UnicastProcessor<Integer> up = new UnicastProcessor<Integer>(128, multiProducer);
+        run(up, up, new PerfAsyncSubscriber(bh));
+    }
+
+    @Benchmark
+    public void directFused(Blackhole bh) throws InterruptedException {
+        UnicastProcessor<Integer> up = new UnicastProcessor<Integer>(128, multiProducer);
+        run(up, up, new PerfAsyncSubscriber(bh, FusedQueueSubscription.ASYNC));
+    }
+
+    @Benchmark
+    public void observeOn(Blackhole bh) throws InterruptedException {
+        UnicastProcessor<Integer> up = new UnicastProcessor<Integer>(128, multiProducer);
+        Publisher<Integer> p = new FusedObserveOnPublisher<Integer>(new FusedFlatMapPerf.HidePublisher<Integer>(up), executor, 128);
+        run(up, p, new PerfAsyncSubscriber(bh));
+    }
+
+    @Benchmark
+    public void observeOnFused(Blackhole bh) throws InterruptedException {
+        UnicastProcessor<Integer> up = new UnicastProcessor<Integer>(128, multiProducer);
+        Publisher<Integer> p = new FusedObserveOnPublisher<Integer>(up, executor, 128);
+        run(up, p, new PerfAsyncSubscriber(bh));
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+import hu.akarnokd.reactivestreams.extensions.tools.*;
+
+/**
+ * Emits the elements of an array, supporting SYNC fusion, conditional subscribers and
+ * a fast path for unbounded requests.
+ * <p>
+ * The array is not copied; null elements are signalled as {@link NullPointerException}s.
+ *
+ * @param <T> the element type
+ */
+public final class FusedArrayPublisher<T> implements Publisher<T> {
+
+    final T[] array;
+
+    @SuppressWarnings("unchecked")
+    public FusedArrayPublisher(T... array) {
+        if (array == null) {
+            throw new NullPointerException("array is null");
+        }
+        this.array = array;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void subscribe(Subscriber<? super T> s) {
+        if (array.length == 0) {
+            EmptySubscription.complete(s);
+            return;
+        }
+        if (s instanceof ConditionalSubscriber) {
+            s.onSubscribe(new FusedArrayConditionalSubscription<T>((ConditionalSubscriber<? super T>)s, array));
+        } else {
+            s = StrictCompactSubscriber.wrap(s);
+            s.onSubscribe(new FusedArraySubscription<T>(s, array));
+        }
+    }
+
+    static NullPointerException nullElement(int index) {
+        return new NullPointerException("The element at index " + index + " is null");
+    }
+
+    abstract static class AbstractFusedArraySubscription<T> extends PaddedAtomicLong implements FusedQueueSubscription<T>,
+            BulkFusedQueue<T>, SizedFusedQueue<T> {
+
+        private static final long serialVersionUID = -3588468473536412390L;
+
+        final T[] array;
+
+        int index;
+
+        volatile boolean cancelled;
+
+        AbstractFusedArraySubscription(T[] array) {
+            this.array = array;
+        }
+
+        @Override
+        public final boolean offer(T element) {
+            throw new UnsupportedOperationException("Should not be called");
+        }
+
+        @Override
+        public final T poll() throws Throwable {
+            int idx = index;
+            T[] a = array;
+            if (idx != a.length) {
+                T v = a[idx];
+                if (v == null) {
+                    throw nullElement(idx);
+                }
+                index = idx + 1;
+                return v;
+            }
+            return null;
+        }
+
+        @Override
+        public final int offerAll(T[] from, int offset, int length) {
+            throw new UnsupportedOperationException("Should not be called");
+        }
+
+        @Override
+        public final int drain(T[] into, int max) {
+            int idx = index;
+            T[] a = array;
+            int n = Math.min(max, a.length - idx);
+            System.arraycopy(a, idx, into, 0, n);
+            for (int i = 0; i < n; i++) {
+                if (into[i] == null) {
+                    index = idx + i;
+                    throw nullElement(idx + i);
+                }
+            }
+            index = idx + n;
+            return n;
+        }
+
+        @Override
+        public final long estimatedSize() {
+            return array.length - index;
+        }
+
+        @Override
+        public final long capacity() {
+            return UNKNOWN;
+        }
+
+        @Override
+        public final boolean isEmpty() {
+            return index == array.length;
+        }
+
+        @Override
+        public final void clear() {
+            index = array.length;
+        }
+
+        @Override
+        public final void request(long n) {
+            if (n <= 0L) {
+                UndeliverableErrors.onError(new IllegalArgumentException("n > 0L required but it was " + n));
+                return;
+            }
+            if (SubscriptionTools.getAndAddRequested(this, n) == 0L) {
+                if (n == Long.MAX_VALUE) {
+                    fastPath();
+                } else {
+                    slowPath(n);
+                }
+            }
+        }
+
+        abstract void fastPath();
+
+        abstract void slowPath(long n);
+
+        @Override
+        public final void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public final int requestFusion(int mode) {
+            return mode & SYNC;
+        }
+    }
+
+    static final class FusedArraySubscription<T> extends AbstractFusedArraySubscription<T> {
+
+        private static final long serialVersionUID = 2835564232066598349L;
+
+        final Subscriber<? super T> actual;
+
+        FusedArraySubscription(Subscriber<? super T> actual, T[] array) {
+            super(array);
+            this.actual = actual;
+        }
+
+        @Override
+        void fastPath() {
+            Subscriber<? super T> a = actual;
+            T[] arr = array;
+            int f = arr.length;
+
+            for (int idx = index; idx != f; idx++) {
+                if (cancelled) {
+                    return;
+                }
+
+                T v = arr[idx];
+                if (v == null) {
+                    a.onError(nullElement(idx));
+                    return;
+                }
+
+                a.onNext(v);
+            }
+
+            if (!cancelled) {
+                a.onComplete();
+            }
+        }
+
+        @Override
+        void slowPath(long n) {
+            Subscriber<? super T> a = actual;
+            T[] arr = array;
+            int idx = index;
+            long e = 0L;
+            int f = arr.length;
+
+            for (;;) {
+
+                while (e != n && idx != f) {
+                    if (cancelled) {
+                        return;
+                    }
+
+                    T v = arr[idx];
+                    if (v == null) {
+                        a.onError(nullElement(idx));
+                        return;
+                    }
+
+                    a.onNext(v);
+
+                    e++;
+                    idx++;
+                }
+
+                if (idx == f) {
+                    if (!cancelled) {
+                        a.onComplete();
+                    }
+                    return;
+                }
+
+                n = get();
+                if (n == e) {
+                    index = idx;
+                    n = addAndGet(-e);
+                    if (n == 0L) {
+                        break;
+                    }
+                    e = 0L;
+                }
+            }
+        }
+    }
+
+    static final class FusedArrayConditionalSubscription<T> extends AbstractFusedArraySubscription<T> {
+
+        private static final long serialVersionUID = -5627396624683441584L;
+
+        final ConditionalSubscriber<? super T> actual;
+
+        FusedArrayConditionalSubscription(ConditionalSubscriber<? super T> actual, T[] array) {
+            super(array);
+            this.actual = actual;
+        }
+
+        @Override
+        void fastPath() {
+            ConditionalSubscriber<? super T> a = actual;
+            T[] arr = array;
+            int f = arr.length;
+
+            for (int idx = index; idx != f; idx++) {
+                if (cancelled) {
+                    return;
+                }
+
+                T v = arr[idx];
+                if (v == null) {
+                    a.onError(nullElement(idx));
+                    return;
+                }
+
+                a.tryOnNext(v);
+            }
+
+            if (!cancelled) {
+                a.onComplete();
+            }
+        }
+
+        @Override
+        void slowPath(long n) {
+            ConditionalSubscriber<? super T> a = actual;
+            T[] arr = array;
+            int idx = index;
+            long e = 0L;
+            int f = arr.length;
+
+            for (;;) {
+
+                while (e != n && idx != f) {
+                    if (cancelled) {
+                        return;
+                    }
+
+                    T v = arr[idx];
+                    if (v == null) {
+                        a.onError(nullElement(idx));
+                        return;
+                    }
+
+                    if (a.tryOnNext(v)) {
+                        e++;
+                    }
+                    idx++;
+                }
+
+                if (idx == f) {
+                    if (!cancelled) {
+                        a.onComplete();
+                    }
+                    return;
+                }
+
+                n = get();
+                if (n == e) {
+                    index = idx;
+                    n = addAndGet(-e);
+                    if (n == 0L) {
+                        break;
+                    }
+                    e = 0L;
+                }
+            }
+        }
+    }
+}
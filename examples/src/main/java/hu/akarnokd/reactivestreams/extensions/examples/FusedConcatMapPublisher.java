@@ -0,0 +1,392 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import java.util.concurrent.atomic.*;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+import hu.akarnokd.reactivestreams.extensions.tools.*;
+
+/**
+ * Maps the upstream values into Publishers and relays their items one after the other.
+ * <p>
+ * The values of inner {@link DynamicValuePublisher}s are read synchronously: null counts
+ * as an empty inner and an exception terminates the sequence. The downstream requests
+ * are tracked by a {@link SubscriptionArbiter} across the inner sources so that switching
+ * to the next inner doesn't need a new request.
+ * <p>
+ * The prefetched upstream values are kept in an SPSC queue or, if the upstream offers SYNC
+ * or ASYNC fusion, in the upstream itself. An upstream error is relayed once the current
+ * inner source has completed.
+ *
+ * @param <T> the upstream value type
+ * @param <R> the result type
+ */
+public final class FusedConcatMapPublisher<T, R> implements Publisher<R> {
+
+    final Publisher<T> source;
+
+    final Function<? super T, ? extends Publisher<? extends R>> mapper;
+
+    final int prefetch;
+
+    public FusedConcatMapPublisher(Publisher<T> source, Function<? super T, ? extends Publisher<? extends R>> mapper,
+            int prefetch) {
+        if (source == null) {
+            throw new NullPointerException("source is null");
+        }
+        if (mapper == null) {
+            throw new NullPointerException("mapper is null");
+        }
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("prefetch > 0 required but it was " + prefetch);
+        }
+        this.source = source;
+        this.mapper = mapper;
+        this.prefetch = prefetch;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super R> s) {
+        source.subscribe(new ConcatMapSubscriber<T, R>(StrictCompactSubscriber.wrap(s), mapper, prefetch));
+    }
+
+    static final class ConcatMapSubscriber<T, R> implements RelaxedSubscriber<T>, Subscription {
+
+        final Subscriber<? super R> actual;
+
+        final Function<? super T, ? extends Publisher<? extends R>> mapper;
+
+        final RequestBatcher batcher;
+
+        final ConcatMapInner<R> inner;
+
+        Subscription upstream;
+
+        FusedQueue<T> queue;
+
+        int sourceMode;
+
+        volatile boolean done;
+        Throwable error;
+
+        volatile boolean cancelled;
+
+        /** Set while an inner source is running, cleared by the inner upon completion. */
+        volatile boolean active;
+
+        volatile int wip;
+        @SuppressWarnings("rawtypes")
+        static final AtomicIntegerFieldUpdater<ConcatMapSubscriber> WIP =
+                AtomicIntegerFieldUpdater.newUpdater(ConcatMapSubscriber.class, "wip");
+
+        ConcatMapSubscriber(Subscriber<? super R> actual, Function<? super T, ? extends Publisher<? extends R>> mapper,
+                int prefetch) {
+            this.actual = actual;
+            this.mapper = mapper;
+            this.batcher = new RequestBatcher(prefetch);
+            this.inner = new ConcatMapInner<R>(this);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (upstream != null) {
+                s.cancel();
+                UndeliverableErrors.onError(new IllegalStateException("Subscription already set!"));
+                return;
+            }
+            upstream = s;
+            if (s instanceof FusedQueueSubscription) {
+                FusedQueueSubscription<T> qs = (FusedQueueSubscription<T>)s;
+                int m = qs.requestFusion(FusedQueueSubscription.ANY);
+                if (m == FusedQueueSubscription.SYNC) {
+                    sourceMode = m;
+                    queue = qs;
+                    done = true;
+                    actual.onSubscribe(this);
+                    drain();
+                    return;
+                }
+                if (m == FusedQueueSubscription.ASYNC) {
+                    sourceMode = m;
+                    queue = qs;
+                    actual.onSubscribe(this);
+                    batcher.requestInitial(s);
+                    return;
+                }
+            }
+            int p = batcher.prefetch();
+            if (p == Integer.MAX_VALUE) {
+                queue = new SpscLinkedArrayQueue<T>(128);
+            } else {
+                queue = new SpscArrayQueue<T>(p);
+            }
+            actual.onSubscribe(this);
+            batcher.requestInitial(s);
+        }
+
+        @Override
+        public void onNext(T t) {
+            if (done) {
+                return;
+            }
+            if (sourceMode != FusedQueueSubscription.ASYNC && !queue.offer(t)) {
+                upstream.cancel();
+                onError(new IllegalStateException("The queue is full, the upstream ignored backpressure"));
+                return;
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (done) {
+                UndeliverableErrors.onError(t);
+                return;
+            }
+            error = t;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            if (done) {
+                return;
+            }
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0L) {
+                UndeliverableErrors.onError(new IllegalArgumentException("n > 0L required but it was " + n));
+                return;
+            }
+            inner.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            inner.cancel();
+            upstream.cancel();
+            if (WIP.getAndIncrement(this) == 0) {
+                queue.clear();
+            }
+        }
+
+        void innerNext(R value) {
+            actual.onNext(value);
+        }
+
+        void innerError(Throwable t) {
+            if (cancelled) {
+                UndeliverableErrors.onError(t);
+                return;
+            }
+            cancelled = true;
+            upstream.cancel();
+            actual.onError(t);
+            if (WIP.getAndIncrement(this) == 0) {
+                queue.clear();
+            }
+        }
+
+        void innerComplete() {
+            active = false;
+            drain();
+        }
+
+        /** Called from the drain loop after a failure in the mapper or the upstream queue. */
+        void fail(Throwable ex) {
+            cancelled = true;
+            upstream.cancel();
+            queue.clear();
+            actual.onError(ex);
+        }
+
+        @SuppressWarnings("unchecked")
+        void drain() {
+            if (WIP.getAndIncrement(this) != 0) {
+                return;
+            }
+            int missed = 1;
+            FusedQueue<T> q = queue;
+
+            for (;;) {
+                while (!active) {
+                    if (cancelled) {
+                        q.clear();
+                        return;
+                    }
+
+                    boolean d = done;
+                    if (d && error != null) {
+                        cancelled = true;
+                        q.clear();
+                        actual.onError(error);
+                        return;
+                    }
+
+                    T t;
+                    try {
+                        t = q.poll();
+                    } catch (Throwable ex) {
+                        fail(ex);
+                        return;
+                    }
+                    boolean empty = t == null;
+
+                    if (d && empty) {
+                        cancelled = true;
+                        actual.onComplete();
+                        return;
+                    }
+
+                    if (empty) {
+                        break;
+                    }
+
+                    Publisher<? extends R> p;
+                    try {
+                        p = mapper.apply(t);
+                        if (p == null) {
+                            throw new NullPointerException("The mapper returned a null Publisher");
+                        }
+                    } catch (Throwable ex) {
+                        fail(ex);
+                        return;
+                    }
+
+                    if (sourceMode != FusedQueueSubscription.SYNC) {
+                        batcher.produced(upstream);
+                    }
+
+                    if (p instanceof DynamicValuePublisher) {
+                        R v;
+                        try {
+                            v = ((DynamicValuePublisher<? extends R>)p).value();
+                        } catch (Throwable ex) {
+                            fail(ex);
+                            return;
+                        }
+                        if (v == null) {
+                            continue;
+                        }
+                        if (inner.isUnbounded()) {
+                            actual.onNext(v);
+                            continue;
+                        }
+                        active = true;
+                        inner.setSubscription(new ScalarSubscription<R>(inner, v));
+                    } else {
+                        active = true;
+                        p.subscribe(inner);
+                    }
+                }
+
+                if (cancelled) {
+                    q.clear();
+                    return;
+                }
+
+                missed = WIP.addAndGet(this, -missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+    }
+
+    static final class ConcatMapInner<R> extends SubscriptionArbiter implements RelaxedSubscriber<R> {
+
+        final ConcatMapSubscriber<?, R> parent;
+
+        /** The number of items received from the current inner source. */
+        long produced;
+
+        ConcatMapInner(ConcatMapSubscriber<?, R> parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            setSubscription(s);
+        }
+
+        @Override
+        public void onNext(R t) {
+            produced++;
+            parent.innerNext(t);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            parent.innerError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            long p = produced;
+            if (p != 0L) {
+                produced = 0L;
+                produced(p);
+            }
+            parent.innerComplete();
+        }
+    }
+
+    /**
+     * Emits a single value upon the first request, used when the downstream
+     * is not ready to receive a scalar value right away.
+     * @param <R> the value type
+     */
+    static final class ScalarSubscription<R> extends AtomicBoolean implements Subscription {
+
+        private static final long serialVersionUID = -2447467269651402358L;
+
+        final Subscriber<? super R> actual;
+
+        final R value;
+
+        ScalarSubscription(Subscriber<? super R> actual, R value) {
+            this.actual = actual;
+            this.value = value;
+        }
+
+        @Override
+        public void request(long n) {
+            if (!get() && compareAndSet(false, true)) {
+                actual.onNext(value);
+                actual.onComplete();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            lazySet(true);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.ConditionalSubscriber;
+import hu.akarnokd.reactivestreams.extensions.tools.StrictCompactSubscriber;
+
+/**
+ * Relays the upstream values passing a predicate, taking part in SYNC and ASYNC fusion
+ * by testing the values inside {@code poll()}.
+ * <p>
+ * The operator is a {@link ConditionalSubscriber} towards the upstream so that a dropped item
+ * doesn't cost a {@code request(1)} round trip with conditional-aware sources.
+ *
+ * @param <T> the value type
+ */
+public final class FusedFilterPublisher<T> implements Publisher<T> {
+
+    final Publisher<T> source;
+
+    final Predicate<? super T> predicate;
+
+    public FusedFilterPublisher(Publisher<T> source, Predicate<? super T> predicate) {
+        if (source == null) {
+            throw new NullPointerException("source is null");
+        }
+        if (predicate == null) {
+            throw new NullPointerException("predicate is null");
+        }
+        this.source = source;
+        this.predicate = predicate;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void subscribe(Subscriber<? super T> s) {
+        if (s instanceof ConditionalSubscriber) {
+            source.subscribe(new FilterConditionalSubscriber<T>((ConditionalSubscriber<? super T>)s, predicate));
+        } else {
+            s = StrictCompactSubscriber.wrap(s);
+            source.subscribe(new FilterSubscriber<T>(s, predicate));
+        }
+    }
+
+    static final class FilterSubscriber<T> extends FusedOperatorSubscriber<T, T> {
+
+        final Predicate<? super T> predicate;
+
+        FilterSubscriber(Subscriber<? super T> actual, Predicate<? super T> predicate) {
+            super(actual);
+            this.predicate = predicate;
+        }
+
+        @Override
+        public boolean tryOnNext(T t) {
+            if (done) {
+                return false;
+            }
+            if (sourceMode == ASYNC) {
+                actual.onNext(null);
+                return true;
+            }
+            boolean b;
+            try {
+                b = predicate.test(t);
+            } catch (Throwable ex) {
+                fail(ex);
+                return false;
+            }
+            if (b) {
+                actual.onNext(t);
+            }
+            return b;
+        }
+
+        @Override
+        public T poll() throws Throwable {
+            for (;;) {
+                T v = qs.poll();
+                if (v == null || predicate.test(v)) {
+                    return v;
+                }
+                if (sourceMode == ASYNC) {
+                    qs.request(1);
+                }
+            }
+        }
+    }
+
+    static final class FilterConditionalSubscriber<T> extends FusedOperatorSubscriber<T, T> {
+
+        final ConditionalSubscriber<? super T> conditional;
+
+        final Predicate<? super T> predicate;
+
+        FilterConditionalSubscriber(ConditionalSubscriber<? super T> actual, Predicate<? super T> predicate) {
+            super(actual);
+            this.conditional = actual;
+            this.predicate = predicate;
+        }
+
+        @Override
+        public boolean tryOnNext(T t) {
+            if (done) {
+                return false;
+            }
+            if (sourceMode == ASYNC) {
+                actual.onNext(null);
+                return true;
+            }
+            boolean b;
+            try {
+                b = predicate.test(t);
+            } catch (Throwable ex) {
+                fail(ex);
+                return false;
+            }
+            return b && conditional.tryOnNext(t);
+        }
+
+        @Override
+        public T poll() throws Throwable {
+            for (;;) {
+                T v = qs.poll();
+                if (v == null || predicate.test(v)) {
+                    return v;
+                }
+                if (sourceMode == ASYNC) {
+                    qs.request(1);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,609 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import java.util.concurrent.atomic.*;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+import hu.akarnokd.reactivestreams.extensions.tools.*;
+
+/**
+ * Maps the upstream values into Publishers and merges their items, running at most
+ * {@code maxConcurrency} inner Publishers at once and prefetching {@code prefetch}
+ * items from each.
+ * <p>
+ * Inner {@link DynamicValuePublisher}s (such as {@link ConstantValuePublisher}s) are not subscribed
+ * to; their value is emitted directly, or queued if the downstream is not ready.
+ * Inners offering SYNC or ASYNC fusion are drained through their own queue.
+ *
+ * @param <T> the upstream value type
+ * @param <R> the result type
+ */
+public final class FusedFlatMapPublisher<T, R> implements Publisher<R> {
+
+    final Publisher<T> source;
+
+    final Function<? super T, ? extends Publisher<? extends R>> mapper;
+
+    final int maxConcurrency;
+
+    final int prefetch;
+
+    public FusedFlatMapPublisher(Publisher<T> source, Function<? super T, ? extends Publisher<? extends R>> mapper,
+            int maxConcurrency, int prefetch) {
+        if (source == null) {
+            throw new NullPointerException("source is null");
+        }
+        if (mapper == null) {
+            throw new NullPointerException("mapper is null");
+        }
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency > 0 required but it was " + maxConcurrency);
+        }
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("prefetch > 0 required but it was " + prefetch);
+        }
+        this.source = source;
+        this.mapper = mapper;
+        this.maxConcurrency = maxConcurrency;
+        this.prefetch = prefetch;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super R> s) {
+        source.subscribe(new MergeSubscriber<T, R>(StrictCompactSubscriber.wrap(s), mapper, maxConcurrency, prefetch));
+    }
+
+    static <T> FusedQueue<T> newQueue(int capacity) {
+        if (capacity == Integer.MAX_VALUE) {
+            return new SpscLinkedArrayQueue<T>(128);
+        }
+        return new SpscArrayQueue<T>(capacity);
+    }
+
+    static final class MergeSubscriber<T, R> extends PaddedAtomicLong implements RelaxedSubscriber<T>, Subscription {
+
+        private static final long serialVersionUID = -5397036025232284461L;
+
+        @SuppressWarnings("rawtypes")
+        static final InnerSubscriber[] EMPTY = new InnerSubscriber[0];
+
+        @SuppressWarnings("rawtypes")
+        static final InnerSubscriber[] TERMINATED = new InnerSubscriber[0];
+
+        final Subscriber<? super R> actual;
+
+        final Function<? super T, ? extends Publisher<? extends R>> mapper;
+
+        final int maxConcurrency;
+
+        final int prefetch;
+
+        /** Holds the scalar values that couldn't be emitted directly, written by onNext only. */
+        final FusedQueue<R> scalarQueue;
+
+        /** Replenishes the upstream after consumed scalar values, accessed while holding wip. */
+        final RequestBatcher scalarBatcher;
+
+        Subscription upstream;
+
+        /** Round-robin start index into the inner array, accessed while holding wip. */
+        int lastIndex;
+
+        /** Accessed while holding wip. */
+        long emitted;
+
+        volatile InnerSubscriber<R>[] subscribers;
+        @SuppressWarnings("rawtypes")
+        static final AtomicReferenceFieldUpdater<MergeSubscriber, InnerSubscriber[]> SUBSCRIBERS =
+                AtomicReferenceFieldUpdater.newUpdater(MergeSubscriber.class, InnerSubscriber[].class, "subscribers");
+
+        volatile Throwable error;
+        @SuppressWarnings("rawtypes")
+        static final AtomicReferenceFieldUpdater<MergeSubscriber, Throwable> ERROR =
+                AtomicReferenceFieldUpdater.newUpdater(MergeSubscriber.class, Throwable.class, "error");
+
+        volatile boolean done;
+
+        volatile boolean cancelled;
+
+        volatile int wip;
+        @SuppressWarnings("rawtypes")
+        static final AtomicIntegerFieldUpdater<MergeSubscriber> WIP =
+                AtomicIntegerFieldUpdater.newUpdater(MergeSubscriber.class, "wip");
+
+        @SuppressWarnings("unchecked")
+        MergeSubscriber(Subscriber<? super R> actual, Function<? super T, ? extends Publisher<? extends R>> mapper,
+                int maxConcurrency, int prefetch) {
+            this.actual = actual;
+            this.mapper = mapper;
+            this.maxConcurrency = maxConcurrency;
+            this.prefetch = prefetch;
+            this.scalarQueue = newQueue(maxConcurrency);
+            this.scalarBatcher = new RequestBatcher(maxConcurrency);
+            this.subscribers = EMPTY;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (upstream != null) {
+                s.cancel();
+                UndeliverableErrors.onError(new IllegalStateException("Subscription already set!"));
+                return;
+            }
+            upstream = s;
+            actual.onSubscribe(this);
+            scalarBatcher.requestInitial(s);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void onNext(T t) {
+            if (done) {
+                return;
+            }
+            Publisher<? extends R> p;
+            try {
+                p = mapper.apply(t);
+                if (p == null) {
+                    throw new NullPointerException("The mapper returned a null Publisher");
+                }
+            } catch (Throwable ex) {
+                upstream.cancel();
+                onError(ex);
+                return;
+            }
+
+            if (p instanceof DynamicValuePublisher) {
+                R v;
+                try {
+                    v = ((DynamicValuePublisher<? extends R>)p).value();
+                } catch (Throwable ex) {
+                    upstream.cancel();
+                    onError(ex);
+                    return;
+                }
+                if (v == null) {
+                    if (maxConcurrency != Integer.MAX_VALUE && !cancelled) {
+                        upstream.request(1);
+                    }
+                } else {
+                    tryEmitScalar(v);
+                }
+                return;
+            }
+
+            InnerSubscriber<R> inner = new InnerSubscriber<R>(this, prefetch);
+            if (add(inner)) {
+                p.subscribe(inner);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (done) {
+                UndeliverableErrors.onError(t);
+                return;
+            }
+            if (ERROR.compareAndSet(this, null, t)) {
+                done = true;
+                drain();
+            } else {
+                done = true;
+                UndeliverableErrors.onError(t);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (done) {
+                return;
+            }
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0L) {
+                UndeliverableErrors.onError(new IllegalArgumentException("n > 0L required but it was " + n));
+                return;
+            }
+            SubscriptionTools.getAndAddRequested(this, n);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            upstream.cancel();
+            for (InnerSubscriber<R> inner : subscribers) {
+                inner.cancel();
+            }
+            if (WIP.getAndIncrement(this) == 0) {
+                cleanup();
+            }
+        }
+
+        boolean add(InnerSubscriber<R> inner) {
+            for (;;) {
+                InnerSubscriber<R>[] a = subscribers;
+                if (a == TERMINATED) {
+                    return false;
+                }
+                int n = a.length;
+                @SuppressWarnings({ "rawtypes", "unchecked" })
+                InnerSubscriber<R>[] b = new InnerSubscriber[n + 1];
+                System.arraycopy(a, 0, b, 0, n);
+                b[n] = inner;
+                if (SUBSCRIBERS.compareAndSet(this, a, b)) {
+                    return true;
+                }
+            }
+        }
+
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        void remove(InnerSubscriber<R> inner) {
+            for (;;) {
+                InnerSubscriber<R>[] a = subscribers;
+                int n = a.length;
+                int j = -1;
+                for (int i = 0; i < n; i++) {
+                    if (a[i] == inner) {
+                        j = i;
+                        break;
+                    }
+                }
+                if (j < 0) {
+                    return;
+                }
+                InnerSubscriber<R>[] b;
+                if (n == 1) {
+                    b = EMPTY;
+                } else {
+                    b = new InnerSubscriber[n - 1];
+                    System.arraycopy(a, 0, b, 0, j);
+                    System.arraycopy(a, j + 1, b, j, n - j - 1);
+                }
+                if (SUBSCRIBERS.compareAndSet(this, a, b)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Terminates the subscribers array, cancels the inner subscribers and clears their queues.
+         * Called while holding wip as the queues are consumed by the drain loop.
+         */
+        @SuppressWarnings("unchecked")
+        void cancelAll() {
+            InnerSubscriber<R>[] a = SUBSCRIBERS.getAndSet(this, TERMINATED);
+            for (InnerSubscriber<R> inner : a) {
+                inner.cancel();
+                FusedQueue<R> q = inner.queue;
+                if (q != null) {
+                    q.clear();
+                }
+            }
+        }
+
+        void tryEmitScalar(R v) {
+            FusedQueue<R> q = scalarQueue;
+            if (wip == 0 && WIP.compareAndSet(this, 0, 1)) {
+                if (emitted != get() && q.isEmpty()) {
+                    actual.onNext(v);
+                    emitted++;
+                    if (!cancelled) {
+                        scalarBatcher.produced(upstream);
+                    }
+                } else if (!q.offer(v)) {
+                    overflow();
+                }
+                if (WIP.decrementAndGet(this) == 0) {
+                    return;
+                }
+            } else {
+                if (!q.offer(v)) {
+                    overflow();
+                }
+                if (WIP.getAndIncrement(this) != 0) {
+                    return;
+                }
+            }
+            drainLoop();
+        }
+
+        void tryEmit(R v, InnerSubscriber<R> inner) {
+            if (wip == 0 && WIP.compareAndSet(this, 0, 1)) {
+                FusedQueue<R> q = inner.queue;
+                if (emitted != get() && (q == null || q.isEmpty())) {
+                    actual.onNext(v);
+                    emitted++;
+                    inner.produced();
+                } else {
+                    if (q == null) {
+                        q = inner.createQueue();
+                    }
+                    if (!q.offer(v)) {
+                        inner.overflow();
+                    }
+                }
+                if (WIP.decrementAndGet(this) == 0) {
+                    return;
+                }
+            } else {
+                FusedQueue<R> q = inner.queue;
+                if (q == null) {
+                    q = inner.createQueue();
+                }
+                if (!q.offer(v)) {
+                    inner.overflow();
+                }
+                if (WIP.getAndIncrement(this) != 0) {
+                    return;
+                }
+            }
+            drainLoop();
+        }
+
+        void overflow() {
+            upstream.cancel();
+            onError(new IllegalStateException("The scalar queue is full, the upstream ignored backpressure"));
+        }
+
+        void innerError(InnerSubscriber<R> inner, Throwable t) {
+            if (ERROR.compareAndSet(this, null, t)) {
+                inner.done = true;
+                drain();
+            } else {
+                UndeliverableErrors.onError(t);
+            }
+        }
+
+        void drain() {
+            if (WIP.getAndIncrement(this) == 0) {
+                drainLoop();
+            }
+        }
+
+        void drainLoop() {
+            int missed = 1;
+            Subscriber<? super R> a = actual;
+            FusedQueue<R> sq = scalarQueue;
+            long e = emitted;
+
+            for (;;) {
+                if (checkTerminated()) {
+                    return;
+                }
+
+                long r = get();
+
+                while (e != r) {
+                    R v;
+                    try {
+                        v = sq.poll();
+                    } catch (Throwable ex) {
+                        // the scalar queue doesn't throw
+                        v = null;
+                    }
+                    if (v == null) {
+                        break;
+                    }
+                    a.onNext(v);
+                    e++;
+                    if (checkTerminated()) {
+                        return;
+                    }
+                    scalarBatcher.produced(upstream);
+                }
+
+                boolean d = done;
+                InnerSubscriber<R>[] inners = subscribers;
+                int n = inners.length;
+
+                if (d && n == 0 && sq.isEmpty()) {
+                    cancelled = true;
+                    a.onComplete();
+                    return;
+                }
+
+                long replenishMain = 0L;
+
+                if (n != 0) {
+                    int j = lastIndex;
+                    if (j >= n) {
+                        j = 0;
+                    }
+                    // keep going after the demand ran out to find the completed inners
+                    int next = -1;
+                    for (int i = 0; i < n; i++) {
+                        InnerSubscriber<R> inner = inners[j];
+
+                        FusedQueue<R> q = inner.queue;
+                        if (q != null) {
+                            while (e != r) {
+                                R v;
+                                try {
+                                    v = q.poll();
+                                } catch (Throwable ex) {
+                                    inner.cancel();
+                                    q.clear();
+                                    if (!ERROR.compareAndSet(this, null, ex)) {
+                                        UndeliverableErrors.onError(ex);
+                                    }
+                                    v = null;
+                                }
+                                if (checkTerminated()) {
+                                    return;
+                                }
+                                if (v == null) {
+                                    break;
+                                }
+                                a.onNext(v);
+                                e++;
+                                inner.produced();
+                            }
+                        }
+
+                        if (inner.done) {
+                            q = inner.queue;
+                            if (q == null || q.isEmpty()) {
+                                remove(inner);
+                                replenishMain++;
+                            }
+                        }
+
+                        if (e == r && next < 0) {
+                            next = j;
+                        }
+                        if (++j == n) {
+                            j = 0;
+                        }
+                    }
+                    lastIndex = next < 0 ? j : next;
+                }
+
+                emitted = e;
+
+                if (replenishMain != 0L) {
+                    if (maxConcurrency != Integer.MAX_VALUE && !cancelled) {
+                        upstream.request(replenishMain);
+                    }
+                    continue;
+                }
+
+                missed = WIP.addAndGet(this, -missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        boolean checkTerminated() {
+            if (cancelled) {
+                cleanup();
+                return true;
+            }
+            Throwable ex = error;
+            if (ex != null) {
+                cancelled = true;
+                upstream.cancel();
+                cleanup();
+                actual.onError(ex);
+                return true;
+            }
+            return false;
+        }
+
+        void cleanup() {
+            scalarQueue.clear();
+            cancelAll();
+        }
+    }
+
+    static final class InnerSubscriber<R> extends AtomicReference<Subscription> implements RelaxedSubscriber<R> {
+
+        private static final long serialVersionUID = -4856440418657584449L;
+
+        final MergeSubscriber<?, R> parent;
+
+        final RequestBatcher batcher;
+
+        int sourceMode;
+
+        volatile FusedQueue<R> queue;
+
+        volatile boolean done;
+
+        InnerSubscriber(MergeSubscriber<?, R> parent, int prefetch) {
+            this.parent = parent;
+            this.batcher = new RequestBatcher(prefetch);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (SubscriptionTools.setOnce(this, s) != SubscriptionTools.SetOnceResult.SUCCESS) {
+                return;
+            }
+            if (s instanceof FusedQueueSubscription) {
+                FusedQueueSubscription<R> qs = (FusedQueueSubscription<R>)s;
+                int m = qs.requestFusion(FusedQueueSubscription.ANY);
+                if (m == FusedQueueSubscription.SYNC) {
+                    sourceMode = m;
+                    queue = qs;
+                    done = true;
+                    parent.drain();
+                    return;
+                }
+                if (m == FusedQueueSubscription.ASYNC) {
+                    sourceMode = m;
+                    queue = qs;
+                }
+            }
+            batcher.requestInitial(s);
+        }
+
+        @Override
+        public void onNext(R t) {
+            if (sourceMode == FusedQueueSubscription.ASYNC) {
+                parent.drain();
+            } else {
+                parent.tryEmit(t, this);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            parent.innerError(this, t);
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            parent.drain();
+        }
+
+        void cancel() {
+            SubscriptionTools.cancel(this);
+        }
+
+        FusedQueue<R> createQueue() {
+            FusedQueue<R> q = newQueue(batcher.prefetch());
+            queue = q;
+            return q;
+        }
+
+        /** Called by the parent while holding wip after an item of this inner has been emitted. */
+        void produced() {
+            if (sourceMode != FusedQueueSubscription.SYNC) {
+                batcher.produced(get());
+            }
+        }
+
+        void overflow() {
+            cancel();
+            parent.innerError(this, new IllegalStateException("The inner queue is full, the inner Publisher ignored backpressure"));
+        }
+    }
+}
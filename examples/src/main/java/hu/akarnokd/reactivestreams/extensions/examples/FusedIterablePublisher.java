@@ -0,0 +1,406 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import java.util.Iterator;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+import hu.akarnokd.reactivestreams.extensions.tools.*;
+
+/**
+ * Emits the elements of an {@link Iterable}, supporting SYNC fusion, conditional subscribers and
+ * a fast path for unbounded requests.
+ * <p>
+ * Each subscriber gets its own {@link Iterator}; exceptions thrown by the Iterator
+ * and null elements are signalled via {@code onError}.
+ *
+ * @param <T> the element type
+ */
+public final class FusedIterablePublisher<T> implements Publisher<T> {
+
+    final Iterable<? extends T> iterable;
+
+    public FusedIterablePublisher(Iterable<? extends T> iterable) {
+        if (iterable == null) {
+            throw new NullPointerException("iterable is null");
+        }
+        this.iterable = iterable;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void subscribe(Subscriber<? super T> s) {
+        Iterator<? extends T> it;
+        boolean hasNext;
+        try {
+            it = iterable.iterator();
+            hasNext = it.hasNext();
+        } catch (Throwable ex) {
+            EmptySubscription.error(s, ex);
+            return;
+        }
+        if (!hasNext) {
+            EmptySubscription.complete(s);
+            return;
+        }
+        if (s instanceof ConditionalSubscriber) {
+            s.onSubscribe(new FusedIterableConditionalSubscription<T>((ConditionalSubscriber<? super T>)s, it));
+        } else {
+            s = StrictCompactSubscriber.wrap(s);
+            s.onSubscribe(new FusedIterableSubscription<T>(s, it));
+        }
+    }
+
+    static NullPointerException nullElement() {
+        return new NullPointerException("The iterator returned a null element");
+    }
+
+    abstract static class AbstractFusedIterableSubscription<T> extends PaddedAtomicLong implements FusedQueueSubscription<T> {
+
+        private static final long serialVersionUID = 7316573524796209452L;
+
+        /** Set to null once the Iterator is known to be exhausted. */
+        Iterator<? extends T> iterator;
+
+        /** Set while hasNext() is known to be true, starting with the check done by subscribe(). */
+        boolean available;
+
+        /** The failure of hasNext() caught by {@link #isEmpty()}, rethrown by {@link #poll()}. */
+        Throwable error;
+
+        volatile boolean cancelled;
+
+        AbstractFusedIterableSubscription(Iterator<? extends T> iterator) {
+            this.iterator = iterator;
+            this.available = true;
+        }
+
+        @Override
+        public final boolean offer(T element) {
+            throw new UnsupportedOperationException("Should not be called");
+        }
+
+        @Override
+        public final T poll() throws Throwable {
+            Iterator<? extends T> it = iterator;
+            if (it == null) {
+                return null;
+            }
+            Throwable ex = error;
+            if (ex != null) {
+                error = null;
+                iterator = null;
+                throw ex;
+            }
+            if (available) {
+                available = false;
+            } else if (!it.hasNext()) {
+                iterator = null;
+                return null;
+            }
+            T v = it.next();
+            if (v == null) {
+                throw nullElement();
+            }
+            return v;
+        }
+
+        @Override
+        public final boolean isEmpty() {
+            Iterator<? extends T> it = iterator;
+            if (it == null) {
+                return true;
+            }
+            if (available || error != null) {
+                return false;
+            }
+            try {
+                if (!it.hasNext()) {
+                    iterator = null;
+                    return true;
+                }
+            } catch (Throwable ex) {
+                // reported by the next poll()
+                error = ex;
+                return false;
+            }
+            available = true;
+            return false;
+        }
+
+        @Override
+        public final void clear() {
+            iterator = null;
+            error = null;
+        }
+
+        @Override
+        public final void request(long n) {
+            if (n <= 0L) {
+                UndeliverableErrors.onError(new IllegalArgumentException("n > 0L required but it was " + n));
+                return;
+            }
+            if (SubscriptionTools.getAndAddRequested(this, n) == 0L) {
+                if (n == Long.MAX_VALUE) {
+                    fastPath();
+                } else {
+                    slowPath(n);
+                }
+            }
+        }
+
+        abstract void fastPath();
+
+        abstract void slowPath(long n);
+
+        @Override
+        public final void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public final int requestFusion(int mode) {
+            return mode & SYNC;
+        }
+    }
+
+    static final class FusedIterableSubscription<T> extends AbstractFusedIterableSubscription<T> {
+
+        private static final long serialVersionUID = 3212436316357474449L;
+
+        final Subscriber<? super T> actual;
+
+        FusedIterableSubscription(Subscriber<? super T> actual, Iterator<? extends T> iterator) {
+            super(iterator);
+            this.actual = actual;
+        }
+
+        @Override
+        void fastPath() {
+            Subscriber<? super T> a = actual;
+            Iterator<? extends T> it = iterator;
+
+            for (;;) {
+                if (cancelled) {
+                    return;
+                }
+
+                T v;
+                boolean hasNext;
+                try {
+                    v = it.next();
+                    if (v == null) {
+                        throw nullElement();
+                    }
+                } catch (Throwable ex) {
+                    a.onError(ex);
+                    return;
+                }
+
+                a.onNext(v);
+
+                if (cancelled) {
+                    return;
+                }
+
+                try {
+                    hasNext = it.hasNext();
+                } catch (Throwable ex) {
+                    a.onError(ex);
+                    return;
+                }
+
+                if (!hasNext) {
+                    a.onComplete();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        void slowPath(long n) {
+            Subscriber<? super T> a = actual;
+            Iterator<? extends T> it = iterator;
+            long e = 0L;
+
+            for (;;) {
+
+                while (e != n) {
+                    if (cancelled) {
+                        return;
+                    }
+
+                    T v;
+                    boolean hasNext;
+                    try {
+                        v = it.next();
+                        if (v == null) {
+                            throw nullElement();
+                        }
+                    } catch (Throwable ex) {
+                        a.onError(ex);
+                        return;
+                    }
+
+                    a.onNext(v);
+
+                    if (cancelled) {
+                        return;
+                    }
+
+                    try {
+                        hasNext = it.hasNext();
+                    } catch (Throwable ex) {
+                        a.onError(ex);
+                        return;
+                    }
+
+                    if (!hasNext) {
+                        a.onComplete();
+                        return;
+                    }
+
+                    e++;
+                }
+
+                n = get();
+                if (n == e) {
+                    n = addAndGet(-e);
+                    if (n == 0L) {
+                        break;
+                    }
+                    e = 0L;
+                }
+            }
+        }
+    }
+
+    static final class FusedIterableConditionalSubscription<T> extends AbstractFusedIterableSubscription<T> {
+
+        private static final long serialVersionUID = -1765587430787394283L;
+
+        final ConditionalSubscriber<? super T> actual;
+
+        FusedIterableConditionalSubscription(ConditionalSubscriber<? super T> actual, Iterator<? extends T> iterator) {
+            super(iterator);
+            this.actual = actual;
+        }
+
+        @Override
+        void fastPath() {
+            ConditionalSubscriber<? super T> a = actual;
+            Iterator<? extends T> it = iterator;
+
+            for (;;) {
+                if (cancelled) {
+                    return;
+                }
+
+                T v;
+                boolean hasNext;
+                try {
+                    v = it.next();
+                    if (v == null) {
+                        throw nullElement();
+                    }
+                } catch (Throwable ex) {
+                    a.onError(ex);
+                    return;
+                }
+
+                a.tryOnNext(v);
+
+                if (cancelled) {
+                    return;
+                }
+
+                try {
+                    hasNext = it.hasNext();
+                } catch (Throwable ex) {
+                    a.onError(ex);
+                    return;
+                }
+
+                if (!hasNext) {
+                    a.onComplete();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        void slowPath(long n) {
+            ConditionalSubscriber<? super T> a = actual;
+            Iterator<? extends T> it = iterator;
+            long e = 0L;
+
+            for (;;) {
+
+                while (e != n) {
+                    if (cancelled) {
+                        return;
+                    }
+
+                    T v;
+                    boolean hasNext;
+                    try {
+                        v = it.next();
+                        if (v == null) {
+                            throw nullElement();
+                        }
+                    } catch (Throwable ex) {
+                        a.onError(ex);
+                        return;
+                    }
+
+                    boolean consumed = a.tryOnNext(v);
+
+                    if (cancelled) {
+                        return;
+                    }
+
+                    try {
+                        hasNext = it.hasNext();
+                    } catch (Throwable ex) {
+                        a.onError(ex);
+                        return;
+                    }
+
+                    if (!hasNext) {
+                        a.onComplete();
+                        return;
+                    }
+
+                    if (consumed) {
+                        e++;
+                    }
+                }
+
+                n = get();
+                if (n == e) {
+                    n = addAndGet(-e);
+                    if (n == 0L) {
+                        break;
+                    }
+                    e = 0L;
+                }
+            }
+        }
+    }
+}
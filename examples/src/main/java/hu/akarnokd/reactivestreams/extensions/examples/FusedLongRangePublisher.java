@@ -0,0 +1,316 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+import hu.akarnokd.reactivestreams.extensions.tools.*;
+
+public final class FusedLongRangePublisher implements Publisher<Long> {
+
+    final long start;
+
+    final long count;
+
+    public FusedLongRangePublisher(long start, long count) {
+        if (count < 0L) {
+            throw new IllegalArgumentException("count >= 0L required but it was " + count);
+        }
+        this.start = start;
+        this.count = count;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super Long> s) {
+        if (count == 0L) {
+            EmptySubscription.complete(s);
+            return;
+        }
+        if (s instanceof ConditionalSubscriber) {
+            s.onSubscribe(new FusedLongRangeConditionalSubscription((ConditionalSubscriber<? super Long>)s, start, count));
+        } else {
+            s = StrictCompactSubscriber.wrap(s);
+            s.onSubscribe(new FusedLongRangeSubscription(s, start, count));
+        }
+    }
+
+    static final class FusedLongRangeSubscription extends PaddedQueueDrain implements LongFusedQueueSubscription, BulkFusedQueue<Long>,
+            SizedFusedQueue<Long> {
+
+        final Subscriber<? super Long> actual;
+
+        final long end;
+
+        /** Written with ordered stores so that {@link #estimatedSize()} can read it from any thread. */
+        volatile long index;
+        static final AtomicLongFieldUpdater<FusedLongRangeSubscription> INDEX =
+                AtomicLongFieldUpdater.newUpdater(FusedLongRangeSubscription.class, "index");
+
+        FusedLongRangeSubscription(Subscriber<? super Long> actual, long start, long count) {
+            this.actual = actual;
+            this.index = start;
+            this.end = start + count;
+        }
+
+        @Override
+        public boolean offer(Long element) {
+            throw new UnsupportedOperationException("Should not be called");
+        }
+
+        @Override
+        public Long poll() throws Throwable {
+            long idx = index;
+            if (idx != end) {
+                INDEX.lazySet(this, idx + 1);
+                return idx;
+            }
+            return null;
+        }
+
+        @Override
+        public boolean offerLong(long element) {
+            throw new UnsupportedOperationException("Should not be called");
+        }
+
+        @Override
+        public long pollLong() throws Throwable {
+            long idx = index;
+            if (idx != end) {
+                INDEX.lazySet(this, idx + 1);
+                return idx;
+            }
+            throw new NoSuchElementException();
+        }
+
+        @Override
+        public int offerAll(Long[] from, int offset, int length) {
+            throw new UnsupportedOperationException("Should not be called");
+        }
+
+        @Override
+        public int drain(Long[] into, int max) {
+            long idx = index;
+            int n = (int)Math.min(max, end - idx);
+            for (int i = 0; i < n; i++) {
+                into[i] = idx + i;
+            }
+            INDEX.lazySet(this, idx + n);
+            return n;
+        }
+
+        @Override
+        public long estimatedSize() {
+            return end - index;
+        }
+
+        @Override
+        public long capacity() {
+            return UNKNOWN;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return index == end;
+        }
+
+        @Override
+        public void clear() {
+            INDEX.lazySet(this, end);
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0L) {
+                UndeliverableErrors.onError(new IllegalArgumentException("n > 0L required but it was " + n));
+                return;
+            }
+            SubscriptionTools.getAndAddRequested(this, REQUESTED, n);
+            if (WIP.getAndIncrement(this) == 0L) {
+                if (REQUESTED.get(this) == Long.MAX_VALUE) {
+                    fastPath();
+                } else {
+                    SubscriptionTools.drainSyncQueue(this, actual, this, REQUESTED, WIP, UPSTREAM);
+                }
+            }
+        }
+
+        void fastPath() {
+            Subscriber<? super Long> a = actual;
+            long f = end;
+
+            for (long idx = index; idx != f; idx++) {
+                if (SubscriptionTools.isCancelled(this, UPSTREAM)) {
+                    return;
+                }
+
+                a.onNext(idx);
+            }
+
+            if (!SubscriptionTools.isCancelled(this, UPSTREAM)) {
+                a.onComplete();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            SubscriptionTools.cancel(this, UPSTREAM);
+        }
+
+        @Override
+        public int requestFusion(int mode) {
+            if ((mode & SYNC) != 0) {
+                return SYNC | (mode & PRIMITIVE);
+            }
+            return NONE;
+        }
+    }
+
+    static final class FusedLongRangeConditionalSubscription extends PaddedQueueDrain implements LongFusedQueueSubscription, BulkFusedQueue<Long>,
+            SizedFusedQueue<Long> {
+
+        final ConditionalSubscriber<? super Long> actual;
+
+        final long end;
+
+        /** Written with ordered stores so that {@link #estimatedSize()} can read it from any thread. */
+        volatile long index;
+        static final AtomicLongFieldUpdater<FusedLongRangeConditionalSubscription> INDEX =
+                AtomicLongFieldUpdater.newUpdater(FusedLongRangeConditionalSubscription.class, "index");
+
+        FusedLongRangeConditionalSubscription(ConditionalSubscriber<? super Long> actual, long start, long count) {
+            this.actual = actual;
+            this.index = start;
+            this.end = start + count;
+        }
+
+        @Override
+        public boolean offer(Long element) {
+            throw new UnsupportedOperationException("Should not be called");
+        }
+
+        @Override
+        public Long poll() throws Throwable {
+            long idx = index;
+            if (idx != end) {
+                INDEX.lazySet(this, idx + 1);
+                return idx;
+            }
+            return null;
+        }
+
+        @Override
+        public boolean offerLong(long element) {
+            throw new UnsupportedOperationException("Should not be called");
+        }
+
+        @Override
+        public long pollLong() throws Throwable {
+            long idx = index;
+            if (idx != end) {
+                INDEX.lazySet(this, idx + 1);
+                return idx;
+            }
+            throw new NoSuchElementException();
+        }
+
+        @Override
+        public int offerAll(Long[] from, int offset, int length) {
+            throw new UnsupportedOperationException("Should not be called");
+        }
+
+        @Override
+        public int drain(Long[] into, int max) {
+            long idx = index;
+            int n = (int)Math.min(max, end - idx);
+            for (int i = 0; i < n; i++) {
+                into[i] = idx + i;
+            }
+            INDEX.lazySet(this, idx + n);
+            return n;
+        }
+
+        @Override
+        public long estimatedSize() {
+            return end - index;
+        }
+
+        @Override
+        public long capacity() {
+            return UNKNOWN;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return index == end;
+        }
+
+        @Override
+        public void clear() {
+            INDEX.lazySet(this, end);
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0L) {
+                UndeliverableErrors.onError(new IllegalArgumentException("n > 0L required but it was " + n));
+                return;
+            }
+            SubscriptionTools.getAndAddRequested(this, REQUESTED, n);
+            if (WIP.getAndIncrement(this) == 0L) {
+                if (REQUESTED.get(this) == Long.MAX_VALUE) {
+                    fastPath();
+                } else {
+                    SubscriptionTools.drainSyncQueue(this, actual, this, REQUESTED, WIP, UPSTREAM);
+                }
+            }
+        }
+
+        void fastPath() {
+            ConditionalSubscriber<? super Long> a = actual;
+            long f = end;
+
+            for (long idx = index; idx != f; idx++) {
+                if (SubscriptionTools.isCancelled(this, UPSTREAM)) {
+                    return;
+                }
+
+                a.tryOnNext(idx);
+            }
+
+            if (!SubscriptionTools.isCancelled(this, UPSTREAM)) {
+                a.onComplete();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            SubscriptionTools.cancel(this, UPSTREAM);
+        }
+
+        @Override
+        public int requestFusion(int mode) {
+            if ((mode & SYNC) != 0) {
+                return SYNC | (mode & PRIMITIVE);
+            }
+            return NONE;
+        }
+    }
+}
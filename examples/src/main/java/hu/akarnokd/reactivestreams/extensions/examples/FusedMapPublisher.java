@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.ConditionalSubscriber;
+import hu.akarnokd.reactivestreams.extensions.tools.StrictCompactSubscriber;
+
+/**
+ * Maps the upstream values via a function, taking part in SYNC and ASYNC fusion
+ * by applying the function inside {@code poll()}.
+ * <p>
+ * Conditional subscribers are served via {@code tryOnNext} so that items dropped
+ * further downstream don't cost a {@code request(1)}.
+ *
+ * @param <T> the upstream value type
+ * @param <R> the result type
+ */
+public final class FusedMapPublisher<T, R> implements Publisher<R> {
+
+    final Publisher<T> source;
+
+    final Function<? super T, ? extends R> mapper;
+
+    public FusedMapPublisher(Publisher<T> source, Function<? super T, ? extends R> mapper) {
+        if (source == null) {
+            throw new NullPointerException("source is null");
+        }
+        if (mapper == null) {
+            throw new NullPointerException("mapper is null");
+        }
+        this.source = source;
+        this.mapper = mapper;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void subscribe(Subscriber<? super R> s) {
+        if (s instanceof ConditionalSubscriber) {
+            source.subscribe(new MapConditionalSubscriber<T, R>((ConditionalSubscriber<? super R>)s, mapper));
+        } else {
+            s = StrictCompactSubscriber.wrap(s);
+            source.subscribe(new MapSubscriber<T, R>(s, mapper));
+        }
+    }
+
+    static <R> R requireNonNull(R value) {
+        if (value == null) {
+            throw new NullPointerException("The mapper returned a null value");
+        }
+        return value;
+    }
+
+    static final class MapSubscriber<T, R> extends FusedOperatorSubscriber<T, R> {
+
+        final Function<? super T, ? extends R> mapper;
+
+        MapSubscriber(Subscriber<? super R> actual, Function<? super T, ? extends R> mapper) {
+            super(actual);
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean tryOnNext(T t) {
+            if (done) {
+                return false;
+            }
+            if (sourceMode == ASYNC) {
+                actual.onNext(null);
+                return true;
+            }
+            R v;
+            try {
+                v = requireNonNull(mapper.apply(t));
+            } catch (Throwable ex) {
+                fail(ex);
+                return false;
+            }
+            actual.onNext(v);
+            return true;
+        }
+
+        @Override
+        public R poll() throws Throwable {
+            T v = qs.poll();
+            if (v != null) {
+                return requireNonNull(mapper.apply(v));
+            }
+            return null;
+        }
+    }
+
+    static final class MapConditionalSubscriber<T, R> extends FusedOperatorSubscriber<T, R> {
+
+        final ConditionalSubscriber<? super R> conditional;
+
+        final Function<? super T, ? extends R> mapper;
+
+        MapConditionalSubscriber(ConditionalSubscriber<? super R> actual, Function<? super T, ? extends R> mapper) {
+            super(actual);
+            this.conditional = actual;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean tryOnNext(T t) {
+            if (done) {
+                return false;
+            }
+            if (sourceMode == ASYNC) {
+                actual.onNext(null);
+                return true;
+            }
+            R v;
+            try {
+                v = requireNonNull(mapper.apply(t));
+            } catch (Throwable ex) {
+                fail(ex);
+                return false;
+            }
+            return conditional.tryOnNext(v);
+        }
+
+        @Override
+        public R poll() throws Throwable {
+            T v = qs.poll();
+            if (v != null) {
+                return requireNonNull(mapper.apply(v));
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,423 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import java.util.concurrent.atomic.*;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+import hu.akarnokd.reactivestreams.extensions.tools.*;
+
+/**
+ * Merges the items of several sources into one sequence, serializing them through
+ * a single drain loop and requesting at most {@code prefetch} items from each source
+ * at a time.
+ * <p>
+ * Sources emitting concurrently don't block or drop each other: unless an item can be
+ * emitted right away, a non-fused source queues it in its own SPSC queue and marks
+ * itself in a shared MPSC queue, which the drain loop consumes in arrival order.
+ * Sources offering SYNC or ASYNC fusion are polled round-robin instead.
+ *
+ * @param <T> the value type
+ */
+public final class FusedMergePublisher<T> implements Publisher<T> {
+
+    final Publisher<? extends T>[] sources;
+
+    final int prefetch;
+
+    @SuppressWarnings("unchecked")
+    public FusedMergePublisher(int prefetch, Publisher<? extends T>... sources) {
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("prefetch > 0 required but it was " + prefetch);
+        }
+        if (sources == null) {
+            throw new NullPointerException("sources is null");
+        }
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i] == null) {
+                throw new NullPointerException("sources[" + i + "] is null");
+            }
+        }
+        this.prefetch = prefetch;
+        this.sources = sources;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> s) {
+        Publisher<? extends T>[] srcs = sources;
+        int n = srcs.length;
+        if (n == 0) {
+            EmptySubscription.complete(s);
+            return;
+        }
+        MergeSubscription<T> parent = new MergeSubscription<T>(StrictCompactSubscriber.wrap(s), n, prefetch);
+        parent.actual.onSubscribe(parent);
+        parent.subscribe(srcs);
+    }
+
+    static final class MergeSubscription<T> extends PaddedAtomicLong implements Subscription {
+
+        private static final long serialVersionUID = 5271286049543418398L;
+
+        final Subscriber<? super T> actual;
+
+        final MergeInner<T>[] inners;
+
+        /** Holds the non-fused inners in the order their items arrived, one entry per item. */
+        final FusedQueue<MergeInner<T>> ready;
+
+        /** Accessed while holding wip. */
+        long emitted;
+
+        /** Round-robin start index over the fused inners, accessed while holding wip. */
+        int lastIndex;
+
+        /** The number of inners that have finished, accessed while holding wip. */
+        int finished;
+
+        volatile Throwable error;
+        @SuppressWarnings("rawtypes")
+        static final AtomicReferenceFieldUpdater<MergeSubscription, Throwable> ERROR =
+                AtomicReferenceFieldUpdater.newUpdater(MergeSubscription.class, Throwable.class, "error");
+
+        volatile boolean cancelled;
+
+        volatile int wip;
+        @SuppressWarnings("rawtypes")
+        static final AtomicIntegerFieldUpdater<MergeSubscription> WIP =
+                AtomicIntegerFieldUpdater.newUpdater(MergeSubscription.class, "wip");
+
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        MergeSubscription(Subscriber<? super T> actual, int n, int prefetch) {
+            this.actual = actual;
+            MergeInner<T>[] a = new MergeInner[n];
+            for (int i = 0; i < n; i++) {
+                a[i] = new MergeInner<T>(this, prefetch);
+            }
+            this.inners = a;
+            this.wip = 1;
+            long capacity = (long)n * prefetch;
+            if (capacity > (1 << 30)) {
+                this.ready = new MpscLinkedArrayQueue<MergeInner<T>>(256);
+            } else {
+                this.ready = new MpscArrayQueue<MergeInner<T>>((int)capacity);
+            }
+        }
+
+        /**
+         * Subscribes to the sources while holding wip so that the items of the
+         * sources subscribed first don't get ahead of the others.
+         */
+        void subscribe(Publisher<? extends T>[] sources) {
+            MergeInner<T>[] a = inners;
+            for (int i = 0; i < a.length; i++) {
+                if (cancelled) {
+                    break;
+                }
+                sources[i].subscribe(a[i]);
+            }
+            if (WIP.decrementAndGet(this) != 0) {
+                drainLoop();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0L) {
+                UndeliverableErrors.onError(new IllegalArgumentException("n > 0L required but it was " + n));
+                return;
+            }
+            SubscriptionTools.getAndAddRequested(this, n);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            cancelAll();
+            if (WIP.getAndIncrement(this) == 0) {
+                cleanup();
+            }
+        }
+
+        void cancelAll() {
+            for (MergeInner<T> inner : inners) {
+                inner.cancel();
+            }
+        }
+
+        void cleanup() {
+            ready.clear();
+            for (MergeInner<T> inner : inners) {
+                FusedQueue<T> q = inner.queue;
+                if (q != null) {
+                    q.clear();
+                }
+            }
+        }
+
+        void tryEmit(MergeInner<T> inner, T value) {
+            if (wip == 0 && WIP.compareAndSet(this, 0, 1)) {
+                if (emitted != get() && ready.isEmpty()) {
+                    actual.onNext(value);
+                    emitted++;
+                    inner.produced();
+                } else {
+                    enqueue(inner, value);
+                }
+                if (WIP.decrementAndGet(this) == 0) {
+                    return;
+                }
+            } else {
+                enqueue(inner, value);
+                if (WIP.getAndIncrement(this) != 0) {
+                    return;
+                }
+            }
+            drainLoop();
+        }
+
+        void enqueue(MergeInner<T> inner, T value) {
+            // the item goes first so that it is visible once the drain loop sees the marker
+            if (!inner.queue.offer(value) || !ready.offer(inner)) {
+                inner.cancel();
+                innerError(new IllegalStateException("The queue is full, the source ignored backpressure"));
+            }
+        }
+
+        void innerError(Throwable t) {
+            if (ERROR.compareAndSet(this, null, t)) {
+                drain();
+            } else {
+                UndeliverableErrors.onError(t);
+            }
+        }
+
+        void drain() {
+            if (WIP.getAndIncrement(this) == 0) {
+                drainLoop();
+            }
+        }
+
+        void drainLoop() {
+            int missed = 1;
+            Subscriber<? super T> a = actual;
+            FusedQueue<MergeInner<T>> rq = ready;
+            MergeInner<T>[] array = inners;
+            int n = array.length;
+            long e = emitted;
+
+            for (;;) {
+                if (checkTerminated()) {
+                    return;
+                }
+
+                long r = get();
+
+                while (e != r) {
+                    MergeInner<T> inner;
+                    T v;
+                    try {
+                        inner = rq.poll();
+                        if (inner == null) {
+                            break;
+                        }
+                        v = inner.queue.poll();
+                    } catch (Throwable ex) {
+                        // the queues of the non-fused inners don't throw
+                        ERROR.compareAndSet(this, null, ex);
+                        break;
+                    }
+                    a.onNext(v);
+                    e++;
+                    if (checkTerminated()) {
+                        return;
+                    }
+                    inner.produced();
+                }
+
+                // one item per fused inner per round
+                boolean again = true;
+                while (again && e != r) {
+                    again = false;
+                    int j = lastIndex;
+                    for (int i = 0; i < n; i++) {
+                        MergeInner<T> inner = array[j];
+                        if (++j == n) {
+                            j = 0;
+                        }
+                        FusedQueue<T> q = inner.queue;
+                        if (q == null || inner.sourceMode == FusedQueueSubscription.NONE || inner.finished) {
+                            continue;
+                        }
+                        T v;
+                        try {
+                            v = q.poll();
+                        } catch (Throwable ex) {
+                            inner.cancel();
+                            ERROR.compareAndSet(this, null, ex);
+                            v = null;
+                        }
+                        if (checkTerminated()) {
+                            return;
+                        }
+                        if (v != null) {
+                            a.onNext(v);
+                            e++;
+                            inner.produced();
+                            again = true;
+                            if (e == r) {
+                                break;
+                            }
+                        }
+                    }
+                    lastIndex = j;
+                }
+
+                for (int i = 0; i < n; i++) {
+                    MergeInner<T> inner = array[i];
+                    if (!inner.finished && inner.done) {
+                        if (inner.sourceMode == FusedQueueSubscription.NONE || inner.queue.isEmpty()) {
+                            inner.finished = true;
+                            finished++;
+                        }
+                    }
+                }
+
+                if (finished == n && rq.isEmpty()) {
+                    cancelled = true;
+                    a.onComplete();
+                    return;
+                }
+
+                emitted = e;
+                missed = WIP.addAndGet(this, -missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        boolean checkTerminated() {
+            if (cancelled) {
+                cleanup();
+                return true;
+            }
+            Throwable ex = error;
+            if (ex != null) {
+                cancelled = true;
+                cancelAll();
+                cleanup();
+                actual.onError(ex);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    static final class MergeInner<T> extends AtomicReference<Subscription> implements RelaxedSubscriber<T> {
+
+        private static final long serialVersionUID = -7440306584454826549L;
+
+        final MergeSubscription<T> parent;
+
+        final RequestBatcher batcher;
+
+        int sourceMode;
+
+        /** The upstream itself if fused, otherwise an SPSC queue; set once in onSubscribe. */
+        volatile FusedQueue<T> queue;
+
+        volatile boolean done;
+
+        /** Set by the drain loop once all items of this inner have been emitted. */
+        boolean finished;
+
+        MergeInner(MergeSubscription<T> parent, int prefetch) {
+            this.parent = parent;
+            this.batcher = new RequestBatcher(prefetch);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (SubscriptionTools.setOnce(this, s) != SubscriptionTools.SetOnceResult.SUCCESS) {
+                return;
+            }
+            if (s instanceof FusedQueueSubscription) {
+                FusedQueueSubscription<T> qs = (FusedQueueSubscription<T>)s;
+                int m = qs.requestFusion(FusedQueueSubscription.ANY);
+                if (m == FusedQueueSubscription.SYNC) {
+                    sourceMode = m;
+                    queue = qs;
+                    done = true;
+                    parent.drain();
+                    return;
+                }
+                if (m == FusedQueueSubscription.ASYNC) {
+                    sourceMode = m;
+                    queue = qs;
+                    batcher.requestInitial(s);
+                    return;
+                }
+            }
+            int p = batcher.prefetch();
+            if (p == Integer.MAX_VALUE) {
+                queue = new SpscLinkedArrayQueue<T>(128);
+            } else {
+                queue = new SpscArrayQueue<T>(p);
+            }
+            batcher.requestInitial(s);
+        }
+
+        @Override
+        public void onNext(T t) {
+            if (sourceMode == FusedQueueSubscription.ASYNC) {
+                parent.drain();
+            } else {
+                parent.tryEmit(this, t);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            parent.innerError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            parent.drain();
+        }
+
+        void cancel() {
+            SubscriptionTools.cancel(this);
+        }
+
+        /** Called by the parent while holding wip after an item of this inner has been emitted. */
+        void produced() {
+            if (sourceMode != FusedQueueSubscription.SYNC) {
+                batcher.produced(get());
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import java.util.concurrent.Executor;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+import hu.akarnokd.reactivestreams.extensions.tools.*;
+
+/**
+ * Relays the upstream signals on the given {@link Executor}, negotiating fusion with
+ * the upstream via {@code requestFusion(ANY | BOUNDARY)}.
+ * <p>
+ * A SYNC-fused upstream is polled directly on the executor, an ASYNC-fused upstream's queue
+ * is drained on the executor and otherwise the items are buffered in an SPSC queue.
+ * Consumed items are replenished in batches of {@code prefetch - prefetch / 4}.
+ * <p>
+ * The operator offers ASYNC fusion to its downstream, which then polls the same queue
+ * instead of buffering the items again.
+ *
+ * @param <T> the value type
+ */
+public final class FusedObserveOnPublisher<T> implements Publisher<T> {
+
+    final Publisher<T> source;
+
+    final Executor executor;
+
+    final int prefetch;
+
+    public FusedObserveOnPublisher(Publisher<T> source, Executor executor, int prefetch) {
+        if (source == null) {
+            throw new NullPointerException("source is null");
+        }
+        if (executor == null) {
+            throw new NullPointerException("executor is null");
+        }
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("prefetch > 0 required but it was " + prefetch);
+        }
+        this.source = source;
+        this.executor = executor;
+        this.prefetch = prefetch;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> s) {
+        source.subscribe(new ObserveOnSubscriber<T>(StrictCompactSubscriber.wrap(s), executor, prefetch));
+    }
+
+    static final class ObserveOnSubscriber<T> extends PaddedQueueDrain implements RelaxedSubscriber<T>,
+            FusedQueueSubscription<T>, Runnable {
+
+        final Subscriber<? super T> actual;
+
+        final Executor executor;
+
+        final RequestBatcher batcher;
+
+        Subscription s;
+
+        FusedQueue<T> queue;
+
+        int sourceMode;
+
+        boolean outputFused;
+
+        ObserveOnSubscriber(Subscriber<? super T> actual, Executor executor, int prefetch) {
+            this.actual = actual;
+            this.executor = executor;
+            this.batcher = new RequestBatcher(prefetch);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (this.s != null) {
+                s.cancel();
+                UndeliverableErrors.onError(new IllegalStateException("Subscription already set!"));
+                return;
+            }
+            this.s = s;
+            UPSTREAM.lazySet(this, s);
+            if (s instanceof FusedQueueSubscription) {
+                FusedQueueSubscription<T> qs = (FusedQueueSubscription<T>)s;
+                int m = qs.requestFusion(ANY | BOUNDARY);
+                if (m == SYNC) {
+                    sourceMode = m;
+                    queue = qs;
+                    // a SYNC upstream won't signal onComplete
+                    SubscriptionTools.setComplete(this, ERROR);
+                    actual.onSubscribe(this);
+                    return;
+                }
+                if (m == ASYNC) {
+                    sourceMode = m;
+                    queue = qs;
+                    actual.onSubscribe(this);
+                    batcher.requestInitial(s);
+                    return;
+                }
+            }
+            int p = batcher.prefetch();
+            if (p == Integer.MAX_VALUE) {
+                queue = new SpscLinkedArrayQueue<T>(128);
+            } else {
+                queue = new SpscArrayQueue<T>(p);
+            }
+            actual.onSubscribe(this);
+            batcher.requestInitial(s);
+        }
+
+        @Override
+        public void onNext(T t) {
+            if (ERROR.get(this) != null) {
+                return;
+            }
+            if (sourceMode != ASYNC && !queue.offer(t)) {
+                s.cancel();
+                onError(new IllegalStateException("The queue is full, the upstream ignored backpressure"));
+                return;
+            }
+            schedule();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (!SubscriptionTools.setError(this, ERROR, t)) {
+                UndeliverableErrors.onError(t);
+                return;
+            }
+            schedule();
+        }
+
+        @Override
+        public void onComplete() {
+            if (SubscriptionTools.setComplete(this, ERROR)) {
+                schedule();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0L) {
+                UndeliverableErrors.onError(new IllegalArgumentException("n > 0L required but it was " + n));
+                return;
+            }
+            SubscriptionTools.getAndAddRequested(this, REQUESTED, n);
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            if (SubscriptionTools.cancel(this, UPSTREAM)) {
+                if (!outputFused && WIP.getAndIncrement(this) == 0L) {
+                    queue.clear();
+                }
+            }
+        }
+
+        void schedule() {
+            if (WIP.getAndIncrement(this) == 0L) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (outputFused) {
+                runOutputFused();
+            } else
+            if (sourceMode == SYNC) {
+                SubscriptionTools.drainSyncQueue(queue, actual, this, REQUESTED, WIP, UPSTREAM);
+            } else {
+                // draining through this poll() replenishes the upstream
+                SubscriptionTools.drainQueue(this, actual, this, REQUESTED, WIP, ERROR, UPSTREAM);
+            }
+        }
+
+        void runOutputFused() {
+            long missed = 1L;
+            Subscriber<? super T> a = actual;
+
+            for (;;) {
+                if (SubscriptionTools.isCancelled(this, UPSTREAM)) {
+                    return;
+                }
+                Throwable ex = ERROR.get(this);
+
+                a.onNext(null);
+
+                if (ex != null) {
+                    if (SubscriptionTools.isTerminalThrowable(ex)) {
+                        a.onComplete();
+                    } else {
+                        a.onError(ex);
+                    }
+                    return;
+                }
+
+                missed = WIP.addAndGet(this, -missed);
+                if (missed == 0L) {
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public int requestFusion(int mode) {
+            // an upstream fused with this operator already accepted BOUNDARY, so its poll() may
+            // run on the downstream's side as well
+            if ((mode & ASYNC) != 0) {
+                outputFused = true;
+                return ASYNC;
+            }
+            return NONE;
+        }
+
+        @Override
+        public boolean offer(T element) {
+            throw new UnsupportedOperationException("Should not be called");
+        }
+
+        @Override
+        public T poll() throws Throwable {
+            T v = queue.poll();
+            if (v != null && sourceMode != SYNC) {
+                batcher.produced(s);
+            }
+            return v;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return queue.isEmpty();
+        }
+
+        @Override
+        public void clear() {
+            queue.clear();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+
+/**
+ * Base class for intermediate operators which can work over a fused upstream by
+ * applying their logic inside {@link #poll()}.
+ * <p>
+ * The fusion request of the downstream is forwarded to the upstream, unless the downstream
+ * is an asynchronous boundary ({@code BOUNDARY}), which would move the operator's logic
+ * to the other side of that boundary. {@code PRIMITIVE} is never forwarded.
+ *
+ * @param <T> the upstream value type
+ * @param <R> the downstream value type
+ */
+abstract class FusedOperatorSubscriber<T, R> implements ConditionalSubscriber<T>, FusedQueueSubscription<R> {
+
+    final Subscriber<? super R> actual;
+
+    Subscription upstream;
+
+    /** The upstream as a fused queue, null if the upstream doesn't support fusion. */
+    FusedQueueSubscription<T> qs;
+
+    /** The fusion mode established with the upstream. */
+    int sourceMode;
+
+    boolean done;
+
+    FusedOperatorSubscriber(Subscriber<? super R> actual) {
+        this.actual = actual;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final void onSubscribe(Subscription s) {
+        if (upstream != null) {
+            s.cancel();
+            UndeliverableErrors.onError(new IllegalStateException("Subscription already set!"));
+            return;
+        }
+        upstream = s;
+        if (s instanceof FusedQueueSubscription) {
+            qs = (FusedQueueSubscription<T>)s;
+        }
+        actual.onSubscribe(this);
+    }
+
+    @Override
+    public final void onNext(T t) {
+        if (!tryOnNext(t) && !done) {
+            upstream.request(1);
+        }
+    }
+
+    /**
+     * Cancels the upstream and signals the error to the downstream
+     * after a crash in the operator's logic.
+     * @param ex the exception thrown by the logic
+     */
+    final void fail(Throwable ex) {
+        upstream.cancel();
+        onError(ex);
+    }
+
+    @Override
+    public final void onError(Throwable t) {
+        if (done) {
+            UndeliverableErrors.onError(t);
+            return;
+        }
+        done = true;
+        actual.onError(t);
+    }
+
+    @Override
+    public final void onComplete() {
+        if (done) {
+            return;
+        }
+        done = true;
+        actual.onComplete();
+    }
+
+    @Override
+    public final void request(long n) {
+        upstream.request(n);
+    }
+
+    @Override
+    public final void cancel() {
+        upstream.cancel();
+    }
+
+    @Override
+    public final int requestFusion(int mode) {
+        FusedQueueSubscription<T> q = qs;
+        if (q == null || (mode & BOUNDARY) != 0) {
+            return NONE;
+        }
+        int m = q.requestFusion(mode & ANY);
+        sourceMode = m;
+        return m;
+    }
+
+    @Override
+    public final boolean offer(R element) {
+        throw new UnsupportedOperationException("Should not be called");
+    }
+
+    @Override
+    public final boolean isEmpty() {
+        return qs.isEmpty();
+    }
+
+    @Override
+    public final void clear() {
+        qs.clear();
+    }
+}
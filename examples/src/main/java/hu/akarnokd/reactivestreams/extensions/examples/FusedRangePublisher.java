@@ -16,7 +16,7 @@
 
 package hu.akarnokd.reactivestreams.extensions.examples;
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.NoSuchElementException;
 
 import org.reactivestreams.*;
 
@@ -25,6 +25,9 @@ import hu.akarnokd.reactivestreams.extensions.tools.*;
 
 public final class FusedRangePublisher implements Publisher<Integer> {
 
+    /** The maximum number of items delivered in one {@link BatchSubscriber#onNextBatch(Object[], int)} call. */
+    static final int BATCH_SIZE = 128;
+
     final int start;
 
     final int count;
@@ -40,17 +43,19 @@ public final class FusedRangePublisher implements Publisher<Integer> {
             EmptySubscription.complete(s);
             return;
         }
+        if (s instanceof BatchSubscriber) {
+            s.onSubscribe(new FusedRangeBatchSubscription((BatchSubscriber<? super Integer>)s, start, count));
+        } else
         if (s instanceof ConditionalSubscriber) {
             s.onSubscribe(new FusedRangeConditionalSubscription((ConditionalSubscriber<? super Integer>)s, start, count));
         } else {
-            s = StrictAtomicSubscriber.wrap(s);
+            s = StrictCompactSubscriber.wrap(s);
             s.onSubscribe(new FusedRangeSubscription(s, start, count));
         }
     }
 
-    static final class FusedRangeSubscription extends AtomicLong implements FusedQueueSubscription<Integer> {
-
-        private static final long serialVersionUID = -216712975160550513L;
+    static final class FusedRangeSubscription extends PaddedQueueDrain implements IntFusedQueueSubscription, BulkFusedQueue<Integer>,
+            SizedFusedQueue<Integer> {
 
         final Subscriber<? super Integer> actual;
 
@@ -58,8 +63,6 @@ public final class FusedRangePublisher implements Publisher<Integer> {
 
         int index;
 
-        volatile boolean cancelled;
-
         FusedRangeSubscription(Subscriber<? super Integer> actual, int start, int count) {
             this.actual = actual;
             this.index = start;
@@ -81,6 +84,47 @@ public final class FusedRangePublisher implements Publisher<Integer> {
             return null;
         }
 
+        @Override
+        public boolean offerInt(int element) {
+            throw new UnsupportedOperationException("Should not be called");
+        }
+
+        @Override
+        public int pollInt() throws Throwable {
+            int idx = index;
+            if (idx != end) {
+                index = idx + 1;
+                return idx;
+            }
+            throw new NoSuchElementException();
+        }
+
+        @Override
+        public int offerAll(Integer[] from, int offset, int length) {
+            throw new UnsupportedOperationException("Should not be called");
+        }
+
+        @Override
+        public int drain(Integer[] into, int max) {
+            int idx = index;
+            int n = Math.min(max, end - idx);
+            for (int i = 0; i < n; i++) {
+                into[i] = idx + i;
+            }
+            index = idx + n;
+            return n;
+        }
+
+        @Override
+        public long estimatedSize() {
+            return end - index;
+        }
+
+        @Override
+        public long capacity() {
+            return UNKNOWN;
+        }
+
         @Override
         public boolean isEmpty() {
             return index == end;
@@ -97,62 +141,181 @@ public final class FusedRangePublisher implements Publisher<Integer> {
                 UndeliverableErrors.onError(new IllegalArgumentException("n > 0L required but it was " + n));
                 return;
             }
-            if (SubscriptionTools.getAndAddRequested(this, n) == 0L) {
-                Subscriber<? super Integer> a = actual;
-                int idx = index;
-                long e = 0L;
-                int f = end;
+            SubscriptionTools.getAndAddRequested(this, REQUESTED, n);
+            if (WIP.getAndIncrement(this) == 0L) {
+                if (REQUESTED.get(this) == Long.MAX_VALUE) {
+                    fastPath();
+                } else {
+                    SubscriptionTools.drainSyncQueue(this, actual, this, REQUESTED, WIP, UPSTREAM);
+                }
+            }
+        }
 
-                for (;;) {
+        void fastPath() {
+            Subscriber<? super Integer> a = actual;
+            int f = end;
 
-                    while (e != n && idx != f) {
-                        if (cancelled) {
-                            return;
-                        }
+            for (int idx = index; idx != f; idx++) {
+                if (SubscriptionTools.isCancelled(this, UPSTREAM)) {
+                    return;
+                }
 
-                        a.onNext(idx);
+                a.onNext(idx);
+            }
 
-                        e++;
-                        idx++;
-                    }
+            if (!SubscriptionTools.isCancelled(this, UPSTREAM)) {
+                a.onComplete();
+            }
+        }
 
-                    if (idx == f) {
-                        if (!cancelled) {
-                            a.onComplete();
-                        }
-                        return;
-                    }
+        @Override
+        public void cancel() {
+            SubscriptionTools.cancel(this, UPSTREAM);
+        }
 
-                    n = get();
-                    if (n == e) {
-                        index = idx;
-                        n = addAndGet(-e);
-                        if (n == 0L) {
-                            break;
-                        }
-                        e = 0L;
-                    }
+        @Override
+        public int requestFusion(int mode) {
+            if ((mode & SYNC) != 0) {
+                return SYNC | (mode & PRIMITIVE);
+            }
+            return NONE;
+        }
+    }
+
+    static final class FusedRangeConditionalSubscription extends PaddedQueueDrain implements IntFusedQueueSubscription, BulkFusedQueue<Integer>,
+            SizedFusedQueue<Integer> {
+
+        final ConditionalSubscriber<? super Integer> actual;
+
+        final int end;
+
+        int index;
+
+        FusedRangeConditionalSubscription(ConditionalSubscriber<? super Integer> actual, int start, int count) {
+            this.actual = actual;
+            this.index = start;
+            this.end = start + count;
+        }
+
+        @Override
+        public boolean offer(Integer element) {
+            throw new UnsupportedOperationException("Should not be called");
+        }
+
+        @Override
+        public Integer poll() throws Throwable {
+            int idx = index;
+            if (idx != end) {
+                index = idx + 1;
+                return idx;
+            }
+            return null;
+        }
+
+        @Override
+        public boolean offerInt(int element) {
+            throw new UnsupportedOperationException("Should not be called");
+        }
+
+        @Override
+        public int pollInt() throws Throwable {
+            int idx = index;
+            if (idx != end) {
+                index = idx + 1;
+                return idx;
+            }
+            throw new NoSuchElementException();
+        }
+
+        @Override
+        public int offerAll(Integer[] from, int offset, int length) {
+            throw new UnsupportedOperationException("Should not be called");
+        }
+
+        @Override
+        public int drain(Integer[] into, int max) {
+            int idx = index;
+            int n = Math.min(max, end - idx);
+            for (int i = 0; i < n; i++) {
+                into[i] = idx + i;
+            }
+            index = idx + n;
+            return n;
+        }
+
+        @Override
+        public long estimatedSize() {
+            return end - index;
+        }
+
+        @Override
+        public long capacity() {
+            return UNKNOWN;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return index == end;
+        }
+
+        @Override
+        public void clear() {
+            index = end;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0L) {
+                UndeliverableErrors.onError(new IllegalArgumentException("n > 0L required but it was " + n));
+                return;
+            }
+            SubscriptionTools.getAndAddRequested(this, REQUESTED, n);
+            if (WIP.getAndIncrement(this) == 0L) {
+                if (REQUESTED.get(this) == Long.MAX_VALUE) {
+                    fastPath();
+                } else {
+                    SubscriptionTools.drainSyncQueue(this, actual, this, REQUESTED, WIP, UPSTREAM);
                 }
             }
         }
 
+        void fastPath() {
+            ConditionalSubscriber<? super Integer> a = actual;
+            int f = end;
+
+            for (int idx = index; idx != f; idx++) {
+                if (SubscriptionTools.isCancelled(this, UPSTREAM)) {
+                    return;
+                }
+
+                a.tryOnNext(idx);
+            }
+
+            if (!SubscriptionTools.isCancelled(this, UPSTREAM)) {
+                a.onComplete();
+            }
+        }
+
         @Override
         public void cancel() {
-            cancelled = true;
+            SubscriptionTools.cancel(this, UPSTREAM);
         }
 
         @Override
         public int requestFusion(int mode) {
-            return mode & SYNC;
+            if ((mode & SYNC) != 0) {
+                return SYNC | (mode & PRIMITIVE);
+            }
+            return NONE;
         }
     }
 
+    static final class FusedRangeBatchSubscription extends PaddedAtomicLong implements IntFusedQueueSubscription, BulkFusedQueue<Integer>,
+            SizedFusedQueue<Integer> {
 
-    static final class FusedRangeConditionalSubscription extends AtomicLong implements FusedQueueSubscription<Integer> {
-
-        private static final long serialVersionUID = -216712975160550513L;
+        private static final long serialVersionUID = 4416337938418738208L;
 
-        final ConditionalSubscriber<? super Integer> actual;
+        final BatchSubscriber<? super Integer> actual;
 
         final int end;
 
@@ -160,7 +323,10 @@ public final class FusedRangePublisher implements Publisher<Integer> {
 
         volatile boolean cancelled;
 
-        FusedRangeConditionalSubscription(ConditionalSubscriber<? super Integer> actual, int start, int count) {
+        /** Reused between batches, allocated on the first non-fused request. */
+        Integer[] batch;
+
+        FusedRangeBatchSubscription(BatchSubscriber<? super Integer> actual, int start, int count) {
             this.actual = actual;
             this.index = start;
             this.end = start + count;
@@ -181,6 +347,47 @@ public final class FusedRangePublisher implements Publisher<Integer> {
             return null;
         }
 
+        @Override
+        public boolean offerInt(int element) {
+            throw new UnsupportedOperationException("Should not be called");
+        }
+
+        @Override
+        public int pollInt() throws Throwable {
+            int idx = index;
+            if (idx != end) {
+                index = idx + 1;
+                return idx;
+            }
+            throw new NoSuchElementException();
+        }
+
+        @Override
+        public int offerAll(Integer[] from, int offset, int length) {
+            throw new UnsupportedOperationException("Should not be called");
+        }
+
+        @Override
+        public int drain(Integer[] into, int max) {
+            int idx = index;
+            int n = Math.min(max, end - idx);
+            for (int i = 0; i < n; i++) {
+                into[i] = idx + i;
+            }
+            index = idx + n;
+            return n;
+        }
+
+        @Override
+        public long estimatedSize() {
+            return end - index;
+        }
+
+        @Override
+        public long capacity() {
+            return UNKNOWN;
+        }
+
         @Override
         public boolean isEmpty() {
             return index == end;
@@ -193,41 +400,90 @@ public final class FusedRangePublisher implements Publisher<Integer> {
 
         @Override
         public void request(long n) {
+            if (n <= 0L) {
+                UndeliverableErrors.onError(new IllegalArgumentException("n > 0L required but it was " + n));
+                return;
+            }
             if (SubscriptionTools.getAndAddRequested(this, n) == 0L) {
-                ConditionalSubscriber<? super Integer> a = actual;
-                int idx = index;
-                long e = 0L;
-                int f = end;
-
-                for (;;) {
-
-                    while (e != n && idx != f) {
-                        if (cancelled) {
-                            return;
-                        }
-
-                        if (a.tryOnNext(idx)) {
-                            e++;
-                        }
-                        idx++;
-                    }
+                if (n == Long.MAX_VALUE) {
+                    fastPath();
+                } else {
+                    slowPath(n);
+                }
+            }
+        }
 
-                    if (idx == f) {
-                        if (!cancelled) {
-                            a.onComplete();
-                        }
+        void fastPath() {
+            BatchSubscriber<? super Integer> a = actual;
+            Integer[] b = batch;
+            if (b == null) {
+                b = new Integer[BATCH_SIZE];
+                batch = b;
+            }
+            int idx = index;
+            int f = end;
+
+            while (idx != f) {
+                if (cancelled) {
+                    return;
+                }
+
+                int c = Math.min(f - idx, b.length);
+                for (int i = 0; i < c; i++) {
+                    b[i] = idx + i;
+                }
+                idx += c;
+
+                a.onNextBatch(b, c);
+            }
+
+            if (!cancelled) {
+                a.onComplete();
+            }
+        }
+
+        void slowPath(long n) {
+            BatchSubscriber<? super Integer> a = actual;
+            Integer[] b = batch;
+            if (b == null) {
+                b = new Integer[BATCH_SIZE];
+                batch = b;
+            }
+            int idx = index;
+            long e = 0L;
+            int f = end;
+
+            for (;;) {
+
+                while (e != n && idx != f) {
+                    if (cancelled) {
                         return;
                     }
 
-                    n = get();
-                    if (n == e) {
-                        index = idx;
-                        n = addAndGet(-e);
-                        if (n == 0L) {
-                            break;
-                        }
-                        e = 0L;
+                    int c = (int)Math.min(Math.min(n - e, f - idx), b.length);
+                    for (int i = 0; i < c; i++) {
+                        b[i] = idx + i;
+                    }
+                    idx += c;
+
+                    e += a.onNextBatch(b, c);
+                }
+
+                if (idx == f) {
+                    if (!cancelled) {
+                        a.onComplete();
+                    }
+                    return;
+                }
+
+                n = get();
+                if (n == e) {
+                    index = idx;
+                    n = addAndGet(-e);
+                    if (n == 0L) {
+                        break;
                     }
+                    e = 0L;
                 }
             }
         }
@@ -239,8 +495,11 @@ public final class FusedRangePublisher implements Publisher<Integer> {
 
         @Override
         public int requestFusion(int mode) {
-            return mode & SYNC;
+            if ((mode & SYNC) != 0) {
+                return SYNC | (mode & PRIMITIVE);
+            }
+            return NONE;
         }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.*;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+import hu.akarnokd.reactivestreams.extensions.tools.*;
+
+/**
+ * Combines the items of several sources position-by-position into rows and emits the
+ * result of the zipper function for each complete row.
+ * <p>
+ * SYNC-fused sources are pulled directly through their {@code poll()}, ASYNC-fused
+ * sources are polled when they signal, and the other sources are prefetched into a small
+ * SPSC queue each. The sequence completes as soon as any source runs out of items.
+ * <p>
+ * If {@code reuseRow} is true, the same row array is handed to the zipper every time
+ * and thus the zipper must not retain it; otherwise each row is a new array.
+ *
+ * @param <R> the result type
+ */
+public final class FusedZipPublisher<R> implements Publisher<R> {
+
+    final Publisher<?>[] sources;
+
+    final Function<? super Object[], ? extends R> zipper;
+
+    final int prefetch;
+
+    final boolean reuseRow;
+
+    public FusedZipPublisher(Function<? super Object[], ? extends R> zipper, int prefetch, boolean reuseRow, Publisher<?>... sources) {
+        if (zipper == null) {
+            throw new NullPointerException("zipper is null");
+        }
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("prefetch > 0 required but it was " + prefetch);
+        }
+        if (sources == null) {
+            throw new NullPointerException("sources is null");
+        }
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i] == null) {
+                throw new NullPointerException("sources[" + i + "] is null");
+            }
+        }
+        this.zipper = zipper;
+        this.prefetch = prefetch;
+        this.reuseRow = reuseRow;
+        this.sources = sources;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super R> s) {
+        Publisher<?>[] srcs = sources;
+        int n = srcs.length;
+        if (n == 0) {
+            EmptySubscription.complete(s);
+            return;
+        }
+        ZipSubscription<R> parent = new ZipSubscription<R>(StrictCompactSubscriber.wrap(s), zipper, n, prefetch, reuseRow);
+        parent.actual.onSubscribe(parent);
+        parent.subscribe(srcs);
+    }
+
+    static final class ZipSubscription<R> extends PaddedAtomicLong implements Subscription {
+
+        private static final long serialVersionUID = -2434867452883857743L;
+
+        final Subscriber<? super R> actual;
+
+        final Function<? super Object[], ? extends R> zipper;
+
+        final ZipInner[] inners;
+
+        final boolean reuseRow;
+
+        /** The row being assembled; a slot keeps its item until the row is complete. Accessed while holding wip. */
+        Object[] row;
+
+        /** Accessed while holding wip. */
+        long emitted;
+
+        volatile Throwable error;
+        @SuppressWarnings("rawtypes")
+        static final AtomicReferenceFieldUpdater<ZipSubscription, Throwable> ERROR =
+                AtomicReferenceFieldUpdater.newUpdater(ZipSubscription.class, Throwable.class, "error");
+
+        volatile boolean cancelled;
+
+        volatile int wip;
+        @SuppressWarnings("rawtypes")
+        static final AtomicIntegerFieldUpdater<ZipSubscription> WIP =
+                AtomicIntegerFieldUpdater.newUpdater(ZipSubscription.class, "wip");
+
+        ZipSubscription(Subscriber<? super R> actual, Function<? super Object[], ? extends R> zipper,
+                int n, int prefetch, boolean reuseRow) {
+            this.actual = actual;
+            this.zipper = zipper;
+            this.reuseRow = reuseRow;
+            ZipInner[] a = new ZipInner[n];
+            for (int i = 0; i < n; i++) {
+                a[i] = new ZipInner(this, prefetch);
+            }
+            this.inners = a;
+            this.row = new Object[n];
+            this.wip = 1;
+        }
+
+        /**
+         * Subscribes to the sources while holding wip so that the drain loop
+         * doesn't run before all lanes have been set up.
+         */
+        void subscribe(Publisher<?>[] sources) {
+            ZipInner[] a = inners;
+            for (int i = 0; i < a.length; i++) {
+                if (cancelled) {
+                    break;
+                }
+                sources[i].subscribe(a[i]);
+            }
+            if (WIP.decrementAndGet(this) != 0) {
+                drainLoop();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0L) {
+                UndeliverableErrors.onError(new IllegalArgumentException("n > 0L required but it was " + n));
+                return;
+            }
+            SubscriptionTools.getAndAddRequested(this, n);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            cancelAll();
+            if (WIP.getAndIncrement(this) == 0) {
+                cleanup();
+            }
+        }
+
+        void cancelAll() {
+            for (ZipInner inner : inners) {
+                inner.cancel();
+            }
+        }
+
+        void cleanup() {
+            Arrays.fill(row, null);
+            for (ZipInner inner : inners) {
+                FusedQueue<Object> q = inner.queue;
+                if (q != null) {
+                    q.clear();
+                }
+            }
+        }
+
+        void innerError(Throwable t) {
+            if (ERROR.compareAndSet(this, null, t)) {
+                drain();
+            } else {
+                UndeliverableErrors.onError(t);
+            }
+        }
+
+        void drain() {
+            if (WIP.getAndIncrement(this) == 0) {
+                drainLoop();
+            }
+        }
+
+        void drainLoop() {
+            int missed = 1;
+            Subscriber<? super R> a = actual;
+            ZipInner[] array = inners;
+            int n = array.length;
+            Object[] current = row;
+            long e = emitted;
+
+            for (;;) {
+
+                long r = get();
+
+                for (;;) {
+                    if (cancelled) {
+                        cleanup();
+                        return;
+                    }
+                    Throwable ex = error;
+                    if (ex != null) {
+                        terminate();
+                        a.onError(ex);
+                        return;
+                    }
+
+                    int empty = 0;
+                    for (int i = 0; i < n; i++) {
+                        if (current[i] == null) {
+                            ZipInner inner = array[i];
+                            FusedQueue<Object> q = inner.queue;
+                            boolean d = inner.done;
+                            Object v;
+                            if (q == null) {
+                                v = null;
+                            } else {
+                                try {
+                                    v = q.poll();
+                                } catch (Throwable exc) {
+                                    terminate();
+                                    a.onError(exc);
+                                    return;
+                                }
+                            }
+                            if (v == null) {
+                                if (d) {
+                                    terminate();
+                                    a.onComplete();
+                                    return;
+                                }
+                                empty++;
+                            } else {
+                                current[i] = v;
+                            }
+                        }
+                    }
+
+                    if (empty != 0 || e == r) {
+                        break;
+                    }
+
+                    R v;
+                    try {
+                        v = zipper.apply(current);
+                        if (v == null) {
+                            throw new NullPointerException("The zipper returned a null value");
+                        }
+                    } catch (Throwable exc) {
+                        terminate();
+                        a.onError(exc);
+                        return;
+                    }
+
+                    if (reuseRow) {
+                        Arrays.fill(current, null);
+                    } else {
+                        current = new Object[n];
+                        row = current;
+                    }
+
+                    a.onNext(v);
+                    e++;
+
+                    for (ZipInner inner : array) {
+                        inner.produced();
+                    }
+                }
+
+                emitted = e;
+                missed = WIP.addAndGet(this, -missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        void terminate() {
+            cancelled = true;
+            cancelAll();
+            cleanup();
+        }
+    }
+
+    static final class ZipInner extends AtomicReference<Subscription> implements RelaxedSubscriber<Object> {
+
+        private static final long serialVersionUID = 3950373232357880478L;
+
+        final ZipSubscription<?> parent;
+
+        final RequestBatcher batcher;
+
+        int sourceMode;
+
+        /** The upstream itself if fused, otherwise an SPSC queue; set once in onSubscribe. */
+        volatile FusedQueue<Object> queue;
+
+        volatile boolean done;
+
+        ZipInner(ZipSubscription<?> parent, int prefetch) {
+            this.parent = parent;
+            this.batcher = new RequestBatcher(prefetch);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (SubscriptionTools.setOnce(this, s) != SubscriptionTools.SetOnceResult.SUCCESS) {
+                return;
+            }
+            if (s instanceof FusedQueueSubscription) {
+                FusedQueueSubscription<Object> qs = (FusedQueueSubscription<Object>)s;
+                int m = qs.requestFusion(FusedQueueSubscription.ANY);
+                if (m == FusedQueueSubscription.SYNC) {
+                    sourceMode = m;
+                    queue = qs;
+                    done = true;
+                    parent.drain();
+                    return;
+                }
+                if (m == FusedQueueSubscription.ASYNC) {
+                    sourceMode = m;
+                    queue = qs;
+                    batcher.requestInitial(s);
+                    return;
+                }
+            }
+            int p = batcher.prefetch();
+            if (p == Integer.MAX_VALUE) {
+                queue = new SpscLinkedArrayQueue<Object>(128);
+            } else {
+                queue = new SpscArrayQueue<Object>(p);
+            }
+            batcher.requestInitial(s);
+        }
+
+        @Override
+        public void onNext(Object t) {
+            if (sourceMode != FusedQueueSubscription.ASYNC && !queue.offer(t)) {
+                cancel();
+                onError(new IllegalStateException("The queue is full, the source ignored backpressure"));
+                return;
+            }
+            parent.drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            parent.innerError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            parent.drain();
+        }
+
+        void cancel() {
+            SubscriptionTools.cancel(this);
+        }
+
+        /** Called by the parent while holding wip after a row has been emitted. */
+        void produced() {
+            if (sourceMode != FusedQueueSubscription.SYNC) {
+                batcher.produced(get());
+            }
+        }
+    }
+}
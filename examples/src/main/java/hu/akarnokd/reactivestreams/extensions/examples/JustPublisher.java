@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.reactivestreams.Subscriber;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+import hu.akarnokd.reactivestreams.extensions.tools.*;
+
+/**
+ * Emits a single constant value, which flattening operators can read via {@link #value()}
+ * without subscribing.
+ *
+ * @param <T> the value type
+ */
+public final class JustPublisher<T> implements ConstantValuePublisher<T> {
+
+    final T value;
+
+    public JustPublisher(T value) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        this.value = value;
+    }
+
+    @Override
+    public T value() {
+        return value;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> s) {
+        s = StrictCompactSubscriber.wrap(s);
+        s.onSubscribe(new JustSubscription<T>(s, value));
+    }
+
+    static final class JustSubscription<T> extends AtomicInteger implements FusedQueueSubscription<T> {
+
+        private static final long serialVersionUID = 7409227512516374645L;
+
+        static final int READY = 0;
+        static final int REQUESTED = 1;
+        static final int CANCELLED = 2;
+
+        final Subscriber<? super T> actual;
+
+        final T value;
+
+        JustSubscription(Subscriber<? super T> actual, T value) {
+            this.actual = actual;
+            this.value = value;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0L) {
+                UndeliverableErrors.onError(new IllegalArgumentException("n > 0L required but it was " + n));
+                return;
+            }
+            if (compareAndSet(READY, REQUESTED)) {
+                actual.onNext(value);
+                if (get() != CANCELLED) {
+                    actual.onComplete();
+                }
+            }
+        }
+
+        @Override
+        public void cancel() {
+            set(CANCELLED);
+        }
+
+        @Override
+        public int requestFusion(int mode) {
+            return mode & SYNC;
+        }
+
+        @Override
+        public boolean offer(T element) {
+            throw new UnsupportedOperationException("Should not be called");
+        }
+
+        @Override
+        public T poll() {
+            if (get() == READY) {
+                lazySet(REQUESTED);
+                return value;
+            }
+            return null;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return get() != READY;
+        }
+
+        @Override
+        public void clear() {
+            lazySet(REQUESTED);
+        }
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import java.util.concurrent.atomic.*;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+import hu.akarnokd.reactivestreams.extensions.tools.*;
+
+/**
+ * Multicasts the items of a single upstream to all of its current subscribers,
+ * emitting only when every subscriber has requested.
+ * <p>
+ * The subscribers are tracked in an immutable array swapped via CAS so emission takes
+ * no locks. The upstream is requested in batches of {@code prefetch}; if it offers
+ * SYNC or ASYNC fusion, the processor drains the upstream queue directly instead of
+ * copying the items into its own buffer. An upstream error is relayed eagerly,
+ * dropping items not yet emitted.
+ *
+ * @param <T> the value type
+ */
+public final class MulticastProcessor<T> implements Processor<T, T>, RelaxedSubscriber<T> {
+
+    @SuppressWarnings("rawtypes")
+    static final MulticastSubscription[] EMPTY = new MulticastSubscription[0];
+
+    @SuppressWarnings("rawtypes")
+    static final MulticastSubscription[] TERMINATED = new MulticastSubscription[0];
+
+    final RequestBatcher batcher;
+
+    volatile MulticastSubscription<T>[] subscribers;
+    @SuppressWarnings("rawtypes")
+    static final AtomicReferenceFieldUpdater<MulticastProcessor, MulticastSubscription[]> SUBSCRIBERS =
+            AtomicReferenceFieldUpdater.newUpdater(MulticastProcessor.class, MulticastSubscription[].class, "subscribers");
+
+    volatile Subscription upstream;
+    @SuppressWarnings("rawtypes")
+    static final AtomicReferenceFieldUpdater<MulticastProcessor, Subscription> UPSTREAM =
+            AtomicReferenceFieldUpdater.newUpdater(MulticastProcessor.class, Subscription.class, "upstream");
+
+    volatile int wip;
+    @SuppressWarnings("rawtypes")
+    static final AtomicIntegerFieldUpdater<MulticastProcessor> WIP =
+            AtomicIntegerFieldUpdater.newUpdater(MulticastProcessor.class, "wip");
+
+    int sourceMode;
+
+    /** The upstream itself if fused, otherwise an SPSC queue; set once in onSubscribe. */
+    volatile FusedQueue<T> queue;
+
+    volatile boolean done;
+
+    volatile Throwable error;
+
+    @SuppressWarnings("unchecked")
+    public MulticastProcessor(int prefetch) {
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("prefetch > 0 required but it was " + prefetch);
+        }
+        this.batcher = new RequestBatcher(prefetch);
+        this.subscribers = EMPTY;
+    }
+
+    /**
+     * Returns true if this processor has subscribers that haven't cancelled yet.
+     * @return true if this processor has subscribers
+     */
+    public boolean hasSubscribers() {
+        return subscribers.length != 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (s == null) {
+            throw new NullPointerException("s is null");
+        }
+        if (SubscriptionTools.setOnce(this, UPSTREAM, s) != SubscriptionTools.SetOnceResult.SUCCESS) {
+            return;
+        }
+        if (s instanceof FusedQueueSubscription) {
+            FusedQueueSubscription<T> qs = (FusedQueueSubscription<T>)s;
+            int m = qs.requestFusion(FusedQueueSubscription.ANY | FusedQueueSubscription.BOUNDARY);
+            if (m == FusedQueueSubscription.SYNC) {
+                sourceMode = m;
+                queue = qs;
+                done = true;
+                drain();
+                return;
+            }
+            if (m == FusedQueueSubscription.ASYNC) {
+                sourceMode = m;
+                queue = qs;
+                batcher.requestInitial(s);
+                return;
+            }
+        }
+        int p = batcher.prefetch();
+        if (p == Integer.MAX_VALUE) {
+            queue = new SpscLinkedArrayQueue<T>(128);
+        } else {
+            queue = new SpscArrayQueue<T>(p);
+        }
+        batcher.requestInitial(s);
+    }
+
+    @Override
+    public void onNext(T t) {
+        if (done) {
+            return;
+        }
+        if (sourceMode == FusedQueueSubscription.NONE) {
+            if (t == null) {
+                throw new NullPointerException("t is null");
+            }
+            if (!queue.offer(t)) {
+                SubscriptionTools.cancel(this, UPSTREAM);
+                onError(new IllegalStateException("The queue is full, the upstream ignored backpressure"));
+                return;
+            }
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (t == null) {
+            throw new NullPointerException("t is null");
+        }
+        if (done) {
+            UndeliverableErrors.onError(t);
+            return;
+        }
+        error = t;
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> s) {
+        if (s == null) {
+            throw new NullPointerException("s is null");
+        }
+        MulticastSubscription<T> ms = new MulticastSubscription<T>(StrictCompactSubscriber.wrap(s), this);
+        ms.actual.onSubscribe(ms);
+        if (add(ms)) {
+            if (ms.cancelled) {
+                remove(ms);
+            }
+            drain();
+        } else {
+            Throwable ex = error;
+            if (ex != null) {
+                ms.actual.onError(ex);
+            } else {
+                ms.actual.onComplete();
+            }
+        }
+    }
+
+    boolean add(MulticastSubscription<T> inner) {
+        for (;;) {
+            MulticastSubscription<T>[] a = subscribers;
+            if (a == TERMINATED) {
+                return false;
+            }
+            int n = a.length;
+            @SuppressWarnings({ "rawtypes", "unchecked" })
+            MulticastSubscription<T>[] b = new MulticastSubscription[n + 1];
+            System.arraycopy(a, 0, b, 0, n);
+            b[n] = inner;
+            if (SUBSCRIBERS.compareAndSet(this, a, b)) {
+                return true;
+            }
+        }
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    void remove(MulticastSubscription<T> inner) {
+        for (;;) {
+            MulticastSubscription<T>[] a = subscribers;
+            int n = a.length;
+            if (n == 0) {
+                return;
+            }
+            int j = -1;
+            for (int i = 0; i < n; i++) {
+                if (a[i] == inner) {
+                    j = i;
+                    break;
+                }
+            }
+            if (j < 0) {
+                return;
+            }
+            MulticastSubscription<T>[] b;
+            if (n == 1) {
+                b = EMPTY;
+            } else {
+                b = new MulticastSubscription[n - 1];
+                System.arraycopy(a, 0, b, 0, j);
+                System.arraycopy(a, j + 1, b, j, n - j - 1);
+            }
+            if (SUBSCRIBERS.compareAndSet(this, a, b)) {
+                return;
+            }
+        }
+    }
+
+    void drain() {
+        if (WIP.getAndIncrement(this) == 0) {
+            drainLoop();
+        }
+    }
+
+    void drainLoop() {
+        int missed = 1;
+
+        for (;;) {
+            FusedQueue<T> q = queue;
+            if (q != null) {
+                MulticastSubscription<T>[] subs = subscribers;
+
+                // gate on the slowest subscriber
+                long r = Long.MAX_VALUE;
+                int active = 0;
+                for (MulticastSubscription<T> s : subs) {
+                    if (!s.cancelled) {
+                        r = Math.min(r, s.get() - s.emitted);
+                        active++;
+                    }
+                }
+                if (active == 0) {
+                    r = 0L;
+                }
+
+                long e = 0L;
+                boolean changed = false;
+
+                while (e != r) {
+                    if (subs != subscribers) {
+                        changed = true;
+                        break;
+                    }
+                    Throwable ex = error;
+                    if (ex != null) {
+                        q.clear();
+                        terminate(ex);
+                        return;
+                    }
+
+                    boolean d = done;
+                    T v;
+                    try {
+                        v = q.poll();
+                    } catch (Throwable exc) {
+                        SubscriptionTools.cancel(this, UPSTREAM);
+                        q.clear();
+                        error = exc;
+                        terminate(exc);
+                        return;
+                    }
+
+                    if (v == null) {
+                        if (d) {
+                            terminate(null);
+                            return;
+                        }
+                        break;
+                    }
+
+                    for (MulticastSubscription<T> s : subs) {
+                        if (!s.cancelled) {
+                            s.actual.onNext(v);
+                            s.emitted++;
+                        }
+                    }
+                    e++;
+
+                    if (sourceMode != FusedQueueSubscription.SYNC) {
+                        batcher.produced(upstream);
+                    }
+                }
+
+                if (changed) {
+                    continue;
+                }
+
+                if (e == r) {
+                    Throwable ex = error;
+                    if (ex != null) {
+                        q.clear();
+                        terminate(ex);
+                        return;
+                    }
+                    if (done && q.isEmpty()) {
+                        terminate(null);
+                        return;
+                    }
+                }
+            }
+
+            missed = WIP.addAndGet(this, -missed);
+            if (missed == 0) {
+                break;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void terminate(Throwable ex) {
+        for (MulticastSubscription<T> s : (MulticastSubscription<T>[])SUBSCRIBERS.getAndSet(this, TERMINATED)) {
+            if (!s.cancelled) {
+                if (ex != null) {
+                    s.actual.onError(ex);
+                } else {
+                    s.actual.onComplete();
+                }
+            }
+        }
+    }
+
+    static final class MulticastSubscription<T> extends PaddedAtomicLong implements Subscription {
+
+        private static final long serialVersionUID = -2937946423950461372L;
+
+        final Subscriber<? super T> actual;
+
+        final MulticastProcessor<T> parent;
+
+        /** Accessed while holding the parent's wip. */
+        long emitted;
+
+        volatile boolean cancelled;
+
+        MulticastSubscription(Subscriber<? super T> actual, MulticastProcessor<T> parent) {
+            this.actual = actual;
+            this.parent = parent;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0L) {
+                UndeliverableErrors.onError(new IllegalArgumentException("n > 0L required but it was " + n));
+                return;
+            }
+            SubscriptionTools.getAndAddRequested(this, n);
+            parent.drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                parent.remove(this);
+                // the slowest subscriber may have just left
+                parent.drain();
+            }
+        }
+    }
+}
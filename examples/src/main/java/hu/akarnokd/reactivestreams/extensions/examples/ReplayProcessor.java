@@ -0,0 +1,521 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.*;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.RelaxedSubscriber;
+import hu.akarnokd.reactivestreams.extensions.tools.*;
+
+/**
+ * Retains the last {@code maxSize} items and/or the items not older than {@code maxAge}
+ * of its upstream and replays them, followed by the live items and the terminal event,
+ * to each of its subscribers at their own pace.
+ * <p>
+ * The items are stored in linked chunks of fixed-size arrays, with their timestamps
+ * in a parallel {@code long[]} if eviction by age is enabled. Each subscriber keeps a
+ * cursor (an absolute index and its chunk) into the shared storage. Cursors are checked
+ * against the retained window before each item is emitted, so they don't keep evicted chunks
+ * reachable and memory stays bounded no matter how far behind a subscriber is, even while it
+ * is emitting; a subscriber that falls behind the retained window continues with the oldest
+ * retained item.
+ *
+ * @param <T> the value type
+ */
+public final class ReplayProcessor<T> implements Processor<T, T>, RelaxedSubscriber<T> {
+
+    static final int DEFAULT_CHUNK_SIZE = 16;
+
+    @SuppressWarnings("rawtypes")
+    static final ReplaySubscription[] EMPTY = new ReplaySubscription[0];
+
+    final int maxSize;
+
+    final long maxAgeNanos;
+
+    final int chunkSize;
+
+    final boolean timed;
+
+    volatile ReplaySubscription<T>[] subscribers;
+    @SuppressWarnings("rawtypes")
+    static final AtomicReferenceFieldUpdater<ReplayProcessor, ReplaySubscription[]> SUBSCRIBERS =
+            AtomicReferenceFieldUpdater.newUpdater(ReplayProcessor.class, ReplaySubscription[].class, "subscribers");
+
+    volatile Subscription upstream;
+    @SuppressWarnings("rawtypes")
+    static final AtomicReferenceFieldUpdater<ReplayProcessor, Subscription> UPSTREAM =
+            AtomicReferenceFieldUpdater.newUpdater(ReplayProcessor.class, Subscription.class, "upstream");
+
+    /** The chunk holding the oldest retained item, written after {@link #first}. */
+    volatile Chunk headChunk;
+
+    /** The absolute index of the oldest retained item. */
+    volatile long first;
+
+    /** The number of items ever added, written after the item itself. */
+    volatile long produced;
+
+    /** The chunk receiving new items, accessed by the upstream only. */
+    Chunk tail;
+
+    /** The number of items in the tail chunk, accessed by the upstream only. */
+    int tailOffset;
+
+    volatile boolean done;
+
+    volatile Throwable error;
+
+    /**
+     * Constructs a ReplayProcessor retaining the last {@code maxSize} items.
+     * @param maxSize the maximum number of items to retain
+     */
+    public ReplayProcessor(int maxSize) {
+        this(maxSize, Long.MAX_VALUE, TimeUnit.NANOSECONDS, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs a ReplayProcessor retaining the items not older than {@code maxAge}.
+     * @param maxAge the maximum age of the items to retain
+     * @param unit the unit of maxAge
+     */
+    public ReplayProcessor(long maxAge, TimeUnit unit) {
+        this(Integer.MAX_VALUE, maxAge, unit, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs a ReplayProcessor retaining at most the last {@code maxSize} items
+     * not older than {@code maxAge}.
+     * @param maxSize the maximum number of items to retain, Integer.MAX_VALUE for no limit
+     * @param maxAge the maximum age of the items to retain, Long.MAX_VALUE for no limit
+     * @param unit the unit of maxAge
+     * @param chunkSize the number of items per storage chunk
+     */
+    public ReplayProcessor(int maxSize, long maxAge, TimeUnit unit, int chunkSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize > 0 required but it was " + maxSize);
+        }
+        if (maxAge <= 0L) {
+            throw new IllegalArgumentException("maxAge > 0 required but it was " + maxAge);
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit is null");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize > 0 required but it was " + chunkSize);
+        }
+        this.maxSize = maxSize;
+        this.timed = maxAge != Long.MAX_VALUE;
+        this.maxAgeNanos = timed ? unit.toNanos(maxAge) : Long.MAX_VALUE;
+        this.chunkSize = chunkSize;
+        Chunk c = new Chunk(chunkSize, timed, 0L);
+        this.tail = c;
+        this.headChunk = c;
+        setSubscribers();
+    }
+
+    @SuppressWarnings("unchecked")
+    void setSubscribers() {
+        this.subscribers = EMPTY;
+    }
+
+    /**
+     * Returns true if this processor has subscribers that haven't cancelled or terminated yet.
+     * @return true if this processor has subscribers
+     */
+    public boolean hasSubscribers() {
+        return subscribers.length != 0;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (s == null) {
+            throw new NullPointerException("s is null");
+        }
+        if (SubscriptionTools.setOnce(this, UPSTREAM, s) == SubscriptionTools.SetOnceResult.SUCCESS) {
+            s.request(Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public void onNext(T t) {
+        if (t == null) {
+            throw new NullPointerException("t is null");
+        }
+        if (done) {
+            return;
+        }
+        long now = timed ? System.nanoTime() : 0L;
+
+        Chunk c = tail;
+        int offset = tailOffset;
+        if (offset == chunkSize) {
+            Chunk n = new Chunk(chunkSize, timed, c.start + chunkSize);
+            c.next = n;
+            tail = n;
+            c = n;
+            offset = 0;
+        }
+        c.values[offset] = t;
+        if (timed) {
+            c.times[offset] = now;
+        }
+        tailOffset = offset + 1;
+        long p = produced + 1;
+        produced = p;
+
+        evict(p, now);
+
+        for (ReplaySubscription<T> rs : subscribers) {
+            rs.drain();
+        }
+    }
+
+    void evict(long p, long now) {
+        long f = first;
+        if (p - f > maxSize) {
+            f = p - maxSize;
+        }
+        Chunk c = chunkOf(headChunk, f);
+        if (timed) {
+            long limit = now - maxAgeNanos;
+            while (f != p) {
+                int offset = (int)(f - c.start);
+                if (offset == chunkSize) {
+                    c = c.next;
+                    offset = 0;
+                }
+                if (c.times[offset] - limit > 0L) {
+                    break;
+                }
+                f++;
+            }
+        }
+        first = f;
+        // the evicted chunks become unreachable once no drain loop walks them
+        while (f - c.start >= chunkSize && c.next != null) {
+            c = c.next;
+        }
+        headChunk = c;
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (t == null) {
+            throw new NullPointerException("t is null");
+        }
+        if (done) {
+            UndeliverableErrors.onError(t);
+            return;
+        }
+        error = t;
+        done = true;
+        for (ReplaySubscription<T> rs : subscribers) {
+            rs.drain();
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        if (done) {
+            return;
+        }
+        done = true;
+        for (ReplaySubscription<T> rs : subscribers) {
+            rs.drain();
+        }
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> s) {
+        if (s == null) {
+            throw new NullPointerException("s is null");
+        }
+        ReplaySubscription<T> rs = new ReplaySubscription<T>(StrictCompactSubscriber.wrap(s), this);
+        rs.actual.onSubscribe(rs);
+        add(rs);
+        if (rs.cancelled) {
+            remove(rs);
+        } else {
+            rs.drain();
+        }
+    }
+
+    void add(ReplaySubscription<T> inner) {
+        for (;;) {
+            ReplaySubscription<T>[] a = subscribers;
+            int n = a.length;
+            @SuppressWarnings({ "rawtypes", "unchecked" })
+            ReplaySubscription<T>[] b = new ReplaySubscription[n + 1];
+            System.arraycopy(a, 0, b, 0, n);
+            b[n] = inner;
+            if (SUBSCRIBERS.compareAndSet(this, a, b)) {
+                return;
+            }
+        }
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    void remove(ReplaySubscription<T> inner) {
+        for (;;) {
+            ReplaySubscription<T>[] a = subscribers;
+            int n = a.length;
+            int j = -1;
+            for (int i = 0; i < n; i++) {
+                if (a[i] == inner) {
+                    j = i;
+                    break;
+                }
+            }
+            if (j < 0) {
+                return;
+            }
+            ReplaySubscription<T>[] b;
+            if (n == 1) {
+                b = EMPTY;
+            } else {
+                b = new ReplaySubscription[n - 1];
+                System.arraycopy(a, 0, b, 0, j);
+                System.arraycopy(a, j + 1, b, j, n - j - 1);
+            }
+            if (SUBSCRIBERS.compareAndSet(this, a, b)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the absolute index of the oldest retained item a new subscriber
+     * should start with, skipping the items that have aged out since the last onNext.
+     */
+    long startIndex() {
+        Chunk c = headChunk;
+        long f = first;
+        if (timed) {
+            long p = produced;
+            long limit = System.nanoTime() - maxAgeNanos;
+            c = chunkOf(c, f);
+            while (f != p) {
+                int offset = (int)(f - c.start);
+                if (offset == chunkSize) {
+                    c = c.next;
+                    offset = 0;
+                }
+                if (c.times[offset] - limit > 0L) {
+                    break;
+                }
+                f++;
+            }
+        }
+        return f;
+    }
+
+    /** Returns the chunk containing the given absolute index, starting the search from c. */
+    Chunk chunkOf(Chunk c, long index) {
+        int size = chunkSize;
+        while (index - c.start >= size) {
+            Chunk n = c.next;
+            if (n == null) {
+                break;
+            }
+            c = n;
+        }
+        return c;
+    }
+
+    static final class Chunk {
+
+        final Object[] values;
+
+        final long[] times;
+
+        /** The absolute index of values[0]. */
+        final long start;
+
+        volatile Chunk next;
+
+        Chunk(int size, boolean timed, long start) {
+            this.values = new Object[size];
+            this.times = timed ? new long[size] : null;
+            this.start = start;
+        }
+    }
+
+    static final class ReplaySubscription<T> extends PaddedAtomicLong implements Subscription {
+
+        private static final long serialVersionUID = -5396618446407314516L;
+
+        final Subscriber<? super T> actual;
+
+        final ReplayProcessor<T> parent;
+
+        /** The absolute index of the next item to emit, -1 until the first drain. Accessed while holding wip. */
+        long index;
+
+        /**
+         * The chunk containing index, accessed while holding wip. The upstream drains every
+         * subscriber after each item so this moves past the evicted chunks even without demand.
+         * Cleared upon cancellation and termination.
+         */
+        Chunk chunk;
+
+        /** Accessed while holding wip. */
+        long emitted;
+
+        volatile boolean cancelled;
+
+        volatile int wip;
+        @SuppressWarnings("rawtypes")
+        static final AtomicIntegerFieldUpdater<ReplaySubscription> WIP =
+                AtomicIntegerFieldUpdater.newUpdater(ReplaySubscription.class, "wip");
+
+        ReplaySubscription(Subscriber<? super T> actual, ReplayProcessor<T> parent) {
+            this.actual = actual;
+            this.parent = parent;
+            this.index = -1L;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0L) {
+                UndeliverableErrors.onError(new IllegalArgumentException("n > 0L required but it was " + n));
+                return;
+            }
+            SubscriptionTools.getAndAddRequested(this, n);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                parent.remove(this);
+                if (WIP.getAndIncrement(this) == 0) {
+                    chunk = null;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void drain() {
+            if (WIP.getAndIncrement(this) != 0) {
+                return;
+            }
+
+            int missed = 1;
+            Subscriber<? super T> a = actual;
+            ReplayProcessor<T> p = parent;
+            int size = p.chunkSize;
+            long e = emitted;
+
+            for (;;) {
+                if (cancelled) {
+                    chunk = null;
+                    return;
+                }
+
+                long idx = index;
+                Chunk c = chunk;
+                Chunk h = p.headChunk;
+                if (idx < 0L) {
+                    idx = p.startIndex();
+                    c = h;
+                } else {
+                    // skip what has been evicted since, dropping the reference to the evicted chunks
+                    long f = p.first;
+                    if (idx < f) {
+                        idx = f;
+                        c = h;
+                    }
+                }
+                c = p.chunkOf(c, idx);
+
+                long r = get();
+
+                while (e != r) {
+                    if (cancelled) {
+                        chunk = null;
+                        return;
+                    }
+
+                    boolean d = p.done;
+                    if (idx == p.produced) {
+                        if (d) {
+                            terminate();
+                            return;
+                        }
+                        break;
+                    }
+
+                    if (idx < p.first) {
+                        // the upstream evicted past this subscriber while it was emitting;
+                        // headChunk is read before first so it can't be past the new index
+                        h = p.headChunk;
+                        idx = p.first;
+                        c = p.chunkOf(h, idx);
+                        continue;
+                    }
+
+                    int offset = (int)(idx - c.start);
+                    if (offset == size) {
+                        c = c.next;
+                        offset = 0;
+                    }
+
+                    a.onNext((T)c.values[offset]);
+
+                    idx++;
+                    e++;
+                }
+
+                if (e == r) {
+                    if (cancelled) {
+                        chunk = null;
+                        return;
+                    }
+                    if (p.done && idx == p.produced) {
+                        terminate();
+                        return;
+                    }
+                }
+
+                index = idx;
+                chunk = c;
+                emitted = e;
+                missed = WIP.addAndGet(this, -missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        void terminate() {
+            cancelled = true;
+            chunk = null;
+            parent.remove(this);
+            Throwable ex = parent.error;
+            if (ex != null) {
+                actual.onError(ex);
+            } else {
+                actual.onComplete();
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+import hu.akarnokd.reactivestreams.extensions.tools.*;
+
+/**
+ * Buffers the items pushed into it in an unbounded queue until its single subscriber
+ * requests them, allowing callback-style APIs to be bridged into a backpressured sequence.
+ * <p>
+ * The queue is an SPSC queue, or an MPSC queue if the items are pushed from multiple
+ * threads concurrently. A downstream requesting ASYNC fusion polls this queue directly
+ * and gets only an {@code onNext(null)} signal per push instead of the item.
+ *
+ * @param <T> the value type
+ */
+public final class UnicastProcessor<T> extends PaddedQueueDrain implements Processor<T, T>, RelaxedSubscriber<T>, FusedQueueSubscription<T> {
+
+    final FusedQueue<T> queue;
+
+    volatile Subscriber<? super T> actual;
+
+    volatile int once;
+    @SuppressWarnings("rawtypes")
+    static final AtomicIntegerFieldUpdater<UnicastProcessor> ONCE =
+            AtomicIntegerFieldUpdater.newUpdater(UnicastProcessor.class, "once");
+
+    boolean outputFused;
+
+    /**
+     * Constructs a UnicastProcessor for items pushed from one thread at a time.
+     */
+    public UnicastProcessor() {
+        this(16, false);
+    }
+
+    /**
+     * Constructs a UnicastProcessor with the given queue island size.
+     * @param capacityHint the number of items per linked array of the queue
+     * @param multiProducer if true, onNext may be called from multiple threads concurrently
+     */
+    public UnicastProcessor(int capacityHint, boolean multiProducer) {
+        if (capacityHint <= 0) {
+            throw new IllegalArgumentException("capacityHint > 0 required but it was " + capacityHint);
+        }
+        if (multiProducer) {
+            this.queue = new MpscLinkedArrayQueue<T>(capacityHint);
+        } else {
+            this.queue = new SpscLinkedArrayQueue<T>(capacityHint);
+        }
+    }
+
+    /**
+     * Returns true if this processor has a subscriber that hasn't cancelled yet
+     * and this processor hasn't been terminated.
+     * @return true if this processor has a subscriber
+     */
+    public boolean hasSubscribers() {
+        return actual != null && ERROR.get(this) == null && !SubscriptionTools.isCancelled(this, UPSTREAM);
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (s == null) {
+            throw new NullPointerException("s is null");
+        }
+        if (ERROR.get(this) != null) {
+            s.cancel();
+            return;
+        }
+        if (SubscriptionTools.setOnce(this, UPSTREAM, s) == SubscriptionTools.SetOnceResult.SUCCESS) {
+            s.request(Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public void onNext(T t) {
+        if (t == null) {
+            throw new NullPointerException("t is null");
+        }
+        if (ERROR.get(this) != null || SubscriptionTools.isCancelled(this, UPSTREAM)) {
+            return;
+        }
+        queue.offer(t);
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (t == null) {
+            throw new NullPointerException("t is null");
+        }
+        if (SubscriptionTools.isCancelled(this, UPSTREAM) || !SubscriptionTools.setError(this, ERROR, t)) {
+            UndeliverableErrors.onError(t);
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        if (SubscriptionTools.isCancelled(this, UPSTREAM)) {
+            return;
+        }
+        if (SubscriptionTools.setComplete(this, ERROR)) {
+            drain();
+        }
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> s) {
+        if (s == null) {
+            throw new NullPointerException("s is null");
+        }
+        if (once == 0 && ONCE.compareAndSet(this, 0, 1)) {
+            Subscriber<? super T> a = StrictCompactSubscriber.wrap(s);
+            a.onSubscribe(this);
+            if (SubscriptionTools.isCancelled(this, UPSTREAM)) {
+                return;
+            }
+            actual = a;
+            drain();
+        } else {
+            EmptySubscription.error(s, new IllegalStateException("This processor allows only a single Subscriber"));
+        }
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0L) {
+            UndeliverableErrors.onError(new IllegalArgumentException("n > 0L required but it was " + n));
+            return;
+        }
+        SubscriptionTools.getAndAddRequested(this, REQUESTED, n);
+        drain();
+    }
+
+    @Override
+    public void cancel() {
+        if (SubscriptionTools.cancel(this, UPSTREAM)) {
+            if (WIP.getAndIncrement(this) == 0L) {
+                actual = null;
+                if (!outputFused) {
+                    queue.clear();
+                }
+            }
+        }
+    }
+
+    void drain() {
+        if (WIP.getAndIncrement(this) != 0L) {
+            return;
+        }
+
+        long missed = 1L;
+
+        for (;;) {
+            Subscriber<? super T> a = actual;
+            if (a != null) {
+                if (outputFused) {
+                    drainFused(a);
+                } else {
+                    SubscriptionTools.drainQueue(queue, a, this, REQUESTED, WIP, ERROR, UPSTREAM);
+                }
+                return;
+            }
+
+            missed = WIP.addAndGet(this, -missed);
+            if (missed == 0L) {
+                break;
+            }
+        }
+    }
+
+    void drainFused(Subscriber<? super T> a) {
+        long missed = 1L;
+
+        for (;;) {
+            if (SubscriptionTools.isCancelled(this, UPSTREAM)) {
+                actual = null;
+                return;
+            }
+            Throwable ex = ERROR.get(this);
+
+            a.onNext(null);
+
+            if (ex != null) {
+                actual = null;
+                if (SubscriptionTools.isTerminalThrowable(ex)) {
+                    a.onComplete();
+                } else {
+                    a.onError(ex);
+                }
+                return;
+            }
+
+            missed = WIP.addAndGet(this, -missed);
+            if (missed == 0L) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public int requestFusion(int mode) {
+        // poll() runs no user code so fusing across a BOUNDARY is fine
+        if ((mode & ASYNC) != 0) {
+            outputFused = true;
+            return ASYNC;
+        }
+        return NONE;
+    }
+
+    @Override
+    public boolean offer(T element) {
+        throw new UnsupportedOperationException("Should not be called");
+    }
+
+    @Override
+    public T poll() throws Throwable {
+        return queue.poll();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        queue.clear();
+    }
+}
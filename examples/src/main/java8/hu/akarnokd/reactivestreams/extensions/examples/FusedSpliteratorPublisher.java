@@ -0,0 +1,456 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.*;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+import hu.akarnokd.reactivestreams.extensions.tools.*;
+
+/**
+ * Emits the elements of a {@link Spliterator} obtained for each subscriber, supporting SYNC fusion,
+ * conditional subscribers and a fast path for unbounded requests, which hands the whole
+ * traversal to {@link Spliterator#forEachRemaining(Consumer)}.
+ * <p>
+ * Exceptions thrown by the Spliterator and null elements are signalled via {@code onError}.
+ * Without the {@code SIZED} characteristic, the completion of a bounded consumer may
+ * only be detected when it requests more.
+ * <p>
+ * Requires Java 8.
+ *
+ * @param <T> the element type
+ */
+public final class FusedSpliteratorPublisher<T> implements Publisher<T> {
+
+    final Supplier<? extends Spliterator<? extends T>> supplier;
+
+    public FusedSpliteratorPublisher(Supplier<? extends Spliterator<? extends T>> supplier) {
+        if (supplier == null) {
+            throw new NullPointerException("supplier is null");
+        }
+        this.supplier = supplier;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void subscribe(Subscriber<? super T> s) {
+        Spliterator<? extends T> sp;
+        try {
+            sp = supplier.get();
+            if (sp == null) {
+                throw new NullPointerException("The supplier returned a null Spliterator");
+            }
+        } catch (Throwable ex) {
+            EmptySubscription.error(s, ex);
+            return;
+        }
+        if (sp.getExactSizeIfKnown() == 0L) {
+            EmptySubscription.complete(s);
+            return;
+        }
+        if (s instanceof ConditionalSubscriber) {
+            s.onSubscribe(new FusedSpliteratorConditionalSubscription<T>((ConditionalSubscriber<? super T>)s, sp));
+        } else {
+            s = StrictCompactSubscriber.wrap(s);
+            s.onSubscribe(new FusedSpliteratorSubscription<T>(s, sp));
+        }
+    }
+
+    static NullPointerException nullElement() {
+        return new NullPointerException("The spliterator returned a null element");
+    }
+
+    /** Thrown from within forEachRemaining to stop the traversal upon cancellation. */
+    static final class CancelledException extends RuntimeException {
+
+        private static final long serialVersionUID = -1815431447963532513L;
+
+        static final CancelledException INSTANCE = new CancelledException();
+
+        CancelledException() {
+            super("Cancelled", null, false, false);
+        }
+    }
+
+    abstract static class AbstractFusedSpliteratorSubscription<T> extends PaddedAtomicLong implements FusedQueueSubscription<T>,
+            SizedFusedQueue<T>, Consumer<T> {
+
+        private static final long serialVersionUID = -7434307722474734520L;
+
+        /** Set to null once the Spliterator is known to be exhausted. */
+        Spliterator<? extends T> spliterator;
+
+        /** The element taken by the last tryAdvance but not yet consumed. */
+        T current;
+
+        /** Indicates {@link #current} holds an element, which may be null. */
+        boolean hasCurrent;
+
+        /** The failure of the Spliterator caught by {@link #advance()}, rethrown by {@link #take()}. */
+        Throwable error;
+
+        /** Set while the fast path calls the downstream so its failures aren't reported as the Spliterator's. */
+        boolean emitting;
+
+        /** The exact size of the Spliterator at subscription time or {@link #UNKNOWN}. */
+        final long size;
+
+        /** The number of elements taken so far, written with ordered stores for {@link #estimatedSize()}. */
+        volatile long consumed;
+        @SuppressWarnings("rawtypes")
+        static final AtomicLongFieldUpdater<AbstractFusedSpliteratorSubscription> CONSUMED =
+                AtomicLongFieldUpdater.newUpdater(AbstractFusedSpliteratorSubscription.class, "consumed");
+
+        volatile boolean cancelled;
+
+        AbstractFusedSpliteratorSubscription(Spliterator<? extends T> spliterator) {
+            this.spliterator = spliterator;
+            this.size = spliterator.getExactSizeIfKnown();
+        }
+
+        @Override
+        public final void accept(T t) {
+            current = t;
+        }
+
+        @Override
+        public final boolean offer(T element) {
+            throw new UnsupportedOperationException("Should not be called");
+        }
+
+        @Override
+        public final T poll() throws Throwable {
+            if (!advance()) {
+                return null;
+            }
+            return take();
+        }
+
+        /**
+         * Advances the Spliterator into {@link #current} unless it already holds an element.
+         * A failure of the Spliterator is saved and counts as a current element so that
+         * {@link #isEmpty()} doesn't throw and the next {@link #poll()} reports it.
+         * @return true if there is a current element or failure
+         */
+        final boolean advance() {
+            if (hasCurrent || error != null) {
+                return true;
+            }
+            Spliterator<? extends T> sp = spliterator;
+            if (sp == null) {
+                return false;
+            }
+            try {
+                if (!sp.tryAdvance(this)) {
+                    spliterator = null;
+                    return false;
+                }
+            } catch (Throwable ex) {
+                spliterator = null;
+                current = null;
+                error = ex;
+                return true;
+            }
+            hasCurrent = true;
+            return true;
+        }
+
+        /**
+         * Takes the current element after a successful {@link #advance()}.
+         * @return the current element, not null
+         * @throws Throwable the failure saved by {@link #advance()} or a
+         * NullPointerException if the element is null
+         */
+        final T take() throws Throwable {
+            Throwable ex = error;
+            if (ex != null) {
+                error = null;
+                throw ex;
+            }
+            T v = current;
+            current = null;
+            hasCurrent = false;
+            CONSUMED.lazySet(this, consumed + 1);
+            if (v == null) {
+                spliterator = null;
+                throw nullElement();
+            }
+            return v;
+        }
+
+        @Override
+        public final boolean isEmpty() {
+            return !advance();
+        }
+
+        @Override
+        public final long estimatedSize() {
+            // the Spliterator itself may only be accessed by the consumer
+            long s = size;
+            if (s < 0L) {
+                return UNKNOWN;
+            }
+            return Math.max(0L, s - consumed);
+        }
+
+        @Override
+        public final long capacity() {
+            return UNKNOWN;
+        }
+
+        @Override
+        public final void clear() {
+            spliterator = null;
+            current = null;
+            hasCurrent = false;
+            error = null;
+            CONSUMED.lazySet(this, size);
+        }
+
+        /**
+         * Checks if the Spliterator is known to be exhausted without advancing it.
+         * @return true if the Spliterator is exhausted
+         */
+        final boolean isExhausted() {
+            Spliterator<? extends T> sp = spliterator;
+            return !hasCurrent && error == null && (sp == null || sp.getExactSizeIfKnown() == 0L);
+        }
+
+        @Override
+        public final void request(long n) {
+            if (n <= 0L) {
+                UndeliverableErrors.onError(new IllegalArgumentException("n > 0L required but it was " + n));
+                return;
+            }
+            if (SubscriptionTools.getAndAddRequested(this, n) == 0L) {
+                if (n == Long.MAX_VALUE) {
+                    fastPath();
+                } else {
+                    slowPath(n);
+                }
+            }
+        }
+
+        abstract void fastPath();
+
+        abstract void slowPath(long n);
+
+        @Override
+        public final void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public final int requestFusion(int mode) {
+            return mode & SYNC;
+        }
+    }
+
+    static final class FusedSpliteratorSubscription<T> extends AbstractFusedSpliteratorSubscription<T> {
+
+        private static final long serialVersionUID = -2418283449458938417L;
+
+        final Subscriber<? super T> actual;
+
+        FusedSpliteratorSubscription(Subscriber<? super T> actual, Spliterator<? extends T> spliterator) {
+            super(spliterator);
+            this.actual = actual;
+        }
+
+        @Override
+        void fastPath() {
+            final Subscriber<? super T> a = actual;
+            try {
+                spliterator.forEachRemaining(new Consumer<T>() {
+                    @Override
+                    public void accept(T t) {
+                        if (cancelled) {
+                            throw CancelledException.INSTANCE;
+                        }
+                        if (t == null) {
+                            throw nullElement();
+                        }
+                        emitting = true;
+                        a.onNext(t);
+                        emitting = false;
+                    }
+                });
+            } catch (CancelledException ex) {
+                return;
+            } catch (Throwable ex) {
+                if (emitting) {
+                    // not a failure of the Spliterator
+                    throw ex;
+                }
+                if (!cancelled) {
+                    a.onError(ex);
+                }
+                return;
+            }
+            if (!cancelled) {
+                a.onComplete();
+            }
+        }
+
+        @Override
+        void slowPath(long n) {
+            Subscriber<? super T> a = actual;
+            long e = 0L;
+
+            for (;;) {
+
+                while (e != n) {
+                    if (cancelled) {
+                        return;
+                    }
+
+                    T v;
+                    try {
+                        v = advance() ? take() : null;
+                    } catch (Throwable ex) {
+                        a.onError(ex);
+                        return;
+                    }
+
+                    if (v == null) {
+                        a.onComplete();
+                        return;
+                    }
+
+                    a.onNext(v);
+
+                    e++;
+                }
+
+                if (isExhausted()) {
+                    if (!cancelled) {
+                        a.onComplete();
+                    }
+                    return;
+                }
+
+                n = get();
+                if (n == e) {
+                    n = addAndGet(-e);
+                    if (n == 0L) {
+                        break;
+                    }
+                    e = 0L;
+                }
+            }
+        }
+    }
+
+    static final class FusedSpliteratorConditionalSubscription<T> extends AbstractFusedSpliteratorSubscription<T> {
+
+        private static final long serialVersionUID = -6468496469346474556L;
+
+        final ConditionalSubscriber<? super T> actual;
+
+        FusedSpliteratorConditionalSubscription(ConditionalSubscriber<? super T> actual, Spliterator<? extends T> spliterator) {
+            super(spliterator);
+            this.actual = actual;
+        }
+
+        @Override
+        void fastPath() {
+            final ConditionalSubscriber<? super T> a = actual;
+            try {
+                spliterator.forEachRemaining(new Consumer<T>() {
+                    @Override
+                    public void accept(T t) {
+                        if (cancelled) {
+                            throw CancelledException.INSTANCE;
+                        }
+                        if (t == null) {
+                            throw nullElement();
+                        }
+                        emitting = true;
+                        a.tryOnNext(t);
+                        emitting = false;
+                    }
+                });
+            } catch (CancelledException ex) {
+                return;
+            } catch (Throwable ex) {
+                if (emitting) {
+                    // not a failure of the Spliterator
+                    throw ex;
+                }
+                if (!cancelled) {
+                    a.onError(ex);
+                }
+                return;
+            }
+            if (!cancelled) {
+                a.onComplete();
+            }
+        }
+
+        @Override
+        void slowPath(long n) {
+            ConditionalSubscriber<? super T> a = actual;
+            long e = 0L;
+
+            for (;;) {
+
+                while (e != n) {
+                    if (cancelled) {
+                        return;
+                    }
+
+                    T v;
+                    try {
+                        v = advance() ? take() : null;
+                    } catch (Throwable ex) {
+                        a.onError(ex);
+                        return;
+                    }
+
+                    if (v == null) {
+                        a.onComplete();
+                        return;
+                    }
+
+                    if (a.tryOnNext(v)) {
+                        e++;
+                    }
+                }
+
+                if (isExhausted()) {
+                    if (!cancelled) {
+                        a.onComplete();
+                    }
+                    return;
+                }
+
+                n = get();
+                if (n == e) {
+                    n = addAndGet(-e);
+                    if (n == 0L) {
+                        break;
+                    }
+                    e = 0L;
+                }
+            }
+        }
+    }
+}
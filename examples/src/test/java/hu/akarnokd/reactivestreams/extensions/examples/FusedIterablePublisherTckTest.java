@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import java.util.*;
+
+import org.reactivestreams.Publisher;
+import org.testng.annotations.Test;
+
+import hu.akarnokd.reactivestreams.extensions.examples.UndeliverableErrors.Handler;
+import hu.akarnokd.reactivestreams.extensions.tck.*;
+
+public class FusedIterablePublisherTckTest extends FusedConditionalPublisherVerification<Integer> {
+
+    @Override
+    public Publisher<Integer> createPublisher(int elements) {
+        List<Integer> list = new ArrayList<Integer>();
+        for (int i = 1; i <= elements; i++) {
+            list.add(i);
+        }
+        return new FusedIterablePublisher<Integer>(list);
+    }
+
+    @Override
+    public Integer typicalItem() {
+        return 1;
+    }
+
+    @Override
+    @Test(enabled = false)
+    public void setExternalErrorHandler(final ExternalErrorConsumer errorConsumer) {
+        if (errorConsumer == null) {
+            UndeliverableErrors.handler = null;
+        } else {
+            UndeliverableErrors.handler = new Handler() {
+                @Override
+                public void handle(Throwable e) {
+                    errorConsumer.accept(e);
+                }
+            };
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void failingHasNextInFusedMerge() throws Throwable {
+        Iterable<Integer> iterable = new Iterable<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<Integer>() {
+                    int calls;
+
+                    @Override
+                    public boolean hasNext() {
+                        if (++calls == 2) {
+                            throw new IllegalStateException("Forced failure");
+                        }
+                        return true;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        return 1;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+
+        TckStandardSubscriber<Integer> ts = new TckStandardSubscriber<Integer>(1000);
+
+        new FusedMergePublisher<Integer>(16, new FusedIterablePublisher<Integer>(iterable)).subscribe(ts);
+
+        ts.request(1);
+
+        ts.expectElement(1);
+        ts.expectNoErrors();
+
+        // the failure of hasNext() is reported by the next poll()
+        ts.request(1);
+
+        ts.expectError();
+    }
+}
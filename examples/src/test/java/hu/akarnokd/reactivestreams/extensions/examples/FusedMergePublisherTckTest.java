@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import org.reactivestreams.Publisher;
+import org.testng.annotations.Test;
+
+import hu.akarnokd.reactivestreams.extensions.examples.UndeliverableErrors.Handler;
+import hu.akarnokd.reactivestreams.extensions.tck.RelaxedPublisherVerification;
+
+public class FusedMergePublisherTckTest extends RelaxedPublisherVerification<Integer> {
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Publisher<Integer> createPublisher(int elements) {
+        int n = elements / 3;
+        Integer[] rest = new Integer[elements - 2 * n];
+        for (int i = 0; i < rest.length; i++) {
+            rest[i] = i + 1;
+        }
+        return new FusedMergePublisher<Integer>(8,
+                new FusedRangePublisher(1, n),
+                new FusedArrayPublisher<Integer>(rest),
+                new FusedRangePublisher(1, n));
+    }
+
+    @Override
+    @Test(enabled = false)
+    public void setExternalErrorHandler(final ExternalErrorConsumer errorConsumer) {
+        if (errorConsumer == null) {
+            UndeliverableErrors.handler = null;
+        } else {
+            UndeliverableErrors.handler = new Handler() {
+                @Override
+                public void handle(Throwable e) {
+                    errorConsumer.accept(e);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import static org.testng.Assert.*;
+
+import org.reactivestreams.Publisher;
+import org.testng.annotations.Test;
+
+import hu.akarnokd.reactivestreams.extensions.tck.TckStandardSubscriber;
+
+public class MulticastProcessorTest {
+
+    static final int TIMEOUT = 200;
+
+    static final int COUNT = 100;
+
+    static void expectRange(TckStandardSubscriber<Integer> ts, int from, int to) throws Throwable {
+        for (int i = from; i <= to; i++) {
+            ts.expectElement(i);
+        }
+    }
+
+    /**
+     * Two subscribers with different demand where the slower one cancels in its onNext,
+     * letting the faster one continue in the same drain round.
+     */
+    static void slowSubscriberCancels(Publisher<Integer> source) throws Throwable {
+        MulticastProcessor<Integer> mp = new MulticastProcessor<Integer>(16);
+
+        TckStandardSubscriber<Integer> fast = new TckStandardSubscriber<Integer>(TIMEOUT);
+        TckStandardSubscriber<Integer> slow = new TckStandardSubscriber<Integer>(TIMEOUT) {
+            @Override
+            public void onNext(Integer t) {
+                super.onNext(t);
+                if (t == 3) {
+                    cancel();
+                }
+            }
+        };
+
+        mp.subscribe(fast);
+        mp.subscribe(slow);
+        source.subscribe(mp);
+
+        fast.request(10);
+        // gated by the subscriber without demand
+        fast.expectElements(0);
+
+        slow.request(5);
+        expectRange(slow, 1, 3);
+        expectRange(fast, 1, 10);
+        fast.expectElements(0);
+        assertTrue(mp.hasSubscribers());
+
+        fast.request(Long.MAX_VALUE);
+        expectRange(fast, 11, COUNT);
+        fast.expectComplete();
+
+        slow.expectElements(0);
+        slow.expectNoComplete();
+        slow.expectNoErrors();
+        assertFalse(mp.hasSubscribers());
+    }
+
+    @Test
+    public void slowSubscriberCancelsSyncFused() throws Throwable {
+        slowSubscriberCancels(new FusedRangePublisher(1, COUNT));
+    }
+
+    @Test
+    public void slowSubscriberCancelsAsyncFused() throws Throwable {
+        UnicastProcessor<Integer> up = new UnicastProcessor<Integer>();
+        for (int i = 1; i <= COUNT; i++) {
+            up.onNext(i);
+        }
+        up.onComplete();
+        slowSubscriberCancels(up);
+    }
+
+    @Test
+    public void slowSubscriberCancelsNonFused() throws Throwable {
+        // the subscriptions of ReplayProcessor don't support fusion
+        ReplayProcessor<Integer> rp = new ReplayProcessor<Integer>(COUNT);
+        for (int i = 1; i <= COUNT; i++) {
+            rp.onNext(i);
+        }
+        rp.onComplete();
+        slowSubscriberCancels(rp);
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import static org.testng.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.reactivestreams.*;
+import org.testng.annotations.Test;
+
+import hu.akarnokd.reactivestreams.extensions.examples.ReplayProcessor.*;
+import hu.akarnokd.reactivestreams.extensions.tck.TckStandardSubscriber;
+
+public class ReplayProcessorTest {
+
+    static final int TIMEOUT = 1000;
+
+    static void push(ReplayProcessor<Integer> rp, int from, int to) {
+        for (int i = from; i <= to; i++) {
+            rp.onNext(i);
+        }
+    }
+
+    static void expectRange(TckStandardSubscriber<Integer> ts, int from, int to) throws Throwable {
+        for (int i = from; i <= to; i++) {
+            ts.expectElement(i);
+        }
+    }
+
+    @Test
+    public void sizeBoundAcrossChunks() throws Throwable {
+        for (int chunkSize : new int[] { 1, 2, 3, 5, 16 }) {
+            for (int n = 1; n <= 40; n++) {
+                ReplayProcessor<Integer> rp = new ReplayProcessor<Integer>(5, Long.MAX_VALUE, TimeUnit.NANOSECONDS, chunkSize);
+                push(rp, 1, n);
+                rp.onComplete();
+
+                TckStandardSubscriber<Integer> ts = new TckStandardSubscriber<Integer>(TIMEOUT);
+                rp.subscribe(ts);
+                ts.request(Long.MAX_VALUE);
+
+                expectRange(ts, Math.max(1, n - 4), n);
+                ts.expectComplete();
+            }
+        }
+    }
+
+    @Test
+    public void sizeBoundLiveSubscriberBehind() throws Throwable {
+        for (int chunkSize : new int[] { 1, 3, 16 }) {
+            ReplayProcessor<Integer> rp = new ReplayProcessor<Integer>(5, Long.MAX_VALUE, TimeUnit.NANOSECONDS, chunkSize);
+            TckStandardSubscriber<Integer> ts = new TckStandardSubscriber<Integer>(TIMEOUT);
+            rp.subscribe(ts);
+
+            push(rp, 1, 3);
+            ts.request(2);
+            expectRange(ts, 1, 2);
+
+            // 3 is evicted while the subscriber has no demand
+            push(rp, 4, 21);
+            ts.request(3);
+            expectRange(ts, 17, 19);
+
+            rp.onComplete();
+            ts.request(10);
+            expectRange(ts, 20, 21);
+            ts.expectComplete();
+        }
+    }
+
+    @Test
+    public void timeBound() throws Throwable {
+        ReplayProcessor<Integer> rp = new ReplayProcessor<Integer>(200, TimeUnit.MILLISECONDS);
+        TckStandardSubscriber<Integer> ts = new TckStandardSubscriber<Integer>(TIMEOUT);
+        rp.subscribe(ts);
+
+        push(rp, 1, 40);
+        Thread.sleep(400);
+        push(rp, 41, 42);
+
+        ts.request(Long.MAX_VALUE);
+        expectRange(ts, 41, 42);
+
+        TckStandardSubscriber<Integer> ts2 = new TckStandardSubscriber<Integer>(TIMEOUT);
+        rp.subscribe(ts2);
+        ts2.request(Long.MAX_VALUE);
+        expectRange(ts2, 41, 42);
+
+        Thread.sleep(400);
+
+        TckStandardSubscriber<Integer> ts3 = new TckStandardSubscriber<Integer>(TIMEOUT);
+        rp.subscribe(ts3);
+        ts3.request(Long.MAX_VALUE);
+        rp.onComplete();
+
+        ts.expectComplete();
+        ts2.expectComplete();
+        // the items aged out without a new onNext
+        ts3.expectComplete();
+    }
+
+    @Test
+    public void noDemandMemoryBound() throws Throwable {
+        int maxSize = 10;
+        int chunkSize = 4;
+        ReplayProcessor<Integer> rp = new ReplayProcessor<Integer>(maxSize, Long.MAX_VALUE, TimeUnit.NANOSECONDS, chunkSize);
+        TckStandardSubscriber<Integer> ts = new TckStandardSubscriber<Integer>(TIMEOUT);
+        rp.subscribe(ts);
+
+        @SuppressWarnings("unchecked")
+        ReplaySubscription<Integer> rs = rp.subscribers[0];
+
+        int n = 100000;
+        push(rp, 1, n);
+
+        int chunks = 0;
+        for (Chunk c = rp.headChunk; c != null; c = c.next) {
+            chunks++;
+        }
+        assertTrue(chunks <= maxSize / chunkSize + 2, "Retained chunks: " + chunks);
+        // the cursor of the subscriber doesn't keep the evicted chunks reachable
+        assertTrue(rs.chunk.start >= rp.headChunk.start, "Cursor at " + rs.chunk.start + ", head at " + rp.headChunk.start);
+
+        ts.request(Long.MAX_VALUE);
+        expectRange(ts, n - maxSize + 1, n);
+    }
+
+    @Test
+    public void slowSubscriberSkipsEvicted() throws Throwable {
+        final ReplayProcessor<Integer> rp = new ReplayProcessor<Integer>(10, Long.MAX_VALUE, TimeUnit.NANOSECONDS, 16);
+        final List<Integer> values = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(1);
+
+        rp.subscribe(new Subscriber<Integer>() {
+            @Override
+            public void onSubscribe(final Subscription s) {
+                // start draining on another thread once the producer is running, which then
+                // keeps this thread emitting as the subscriber never catches up
+                new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            Thread.sleep(50);
+                        } catch (InterruptedException ex) {
+                            return;
+                        }
+                        s.request(Long.MAX_VALUE);
+                    }
+                }.start();
+            }
+
+            @Override
+            public void onNext(Integer t) {
+                values.add(t);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                done.countDown();
+            }
+
+            @Override
+            public void onComplete() {
+                done.countDown();
+            }
+        });
+
+        int n = 0;
+        long end = System.currentTimeMillis() + 300;
+        while (System.currentTimeMillis() < end) {
+            rp.onNext(++n);
+        }
+
+        int chunks = 0;
+        for (Chunk c = rp.headChunk; c != null; c = c.next) {
+            chunks++;
+        }
+        assertTrue(chunks <= 2, "Retained chunks: " + chunks);
+
+        rp.onComplete();
+
+        // without skipping the evicted items, the subscriber would need n milliseconds
+        assertTrue(done.await(5, TimeUnit.SECONDS), "Not completed, received " + values.size() + " of " + n);
+
+        List<Integer> list = new ArrayList<Integer>(values);
+        assertEquals(list.get(list.size() - 1).intValue(), n);
+        for (int i = 1; i < list.size(); i++) {
+            assertTrue(list.get(i - 1) < list.get(i), "Out of order at " + i + ": " + list.get(i - 1) + ", " + list.get(i));
+        }
+    }
+
+    @Test
+    public void cancelClearsCursor() throws Throwable {
+        ReplayProcessor<Integer> rp = new ReplayProcessor<Integer>(5, Long.MAX_VALUE, TimeUnit.NANOSECONDS, 2);
+        TckStandardSubscriber<Integer> ts = new TckStandardSubscriber<Integer>(TIMEOUT);
+        rp.subscribe(ts);
+
+        @SuppressWarnings("unchecked")
+        ReplaySubscription<Integer> rs = rp.subscribers[0];
+
+        push(rp, 1, 3);
+        ts.request(1);
+        ts.expectElement(1);
+        assertNotNull(rs.chunk);
+
+        ts.cancel();
+
+        assertNull(rs.chunk);
+        assertFalse(rp.hasSubscribers());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.examples;
+
+import java.util.concurrent.*;
+
+import org.reactivestreams.Publisher;
+import org.testng.annotations.*;
+
+import hu.akarnokd.reactivestreams.extensions.examples.UndeliverableErrors.Handler;
+import hu.akarnokd.reactivestreams.extensions.tck.FusedPublisherVerification;
+
+public class UnicastProcessorAsyncTckTest extends FusedPublisherVerification<Integer> {
+
+    ExecutorService executor;
+
+    @BeforeClass
+    public void before() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterClass
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public Publisher<Integer> createPublisher(final int elements) {
+        final UnicastProcessor<Integer> up = new UnicastProcessor<Integer>(8, true);
+        final int half = elements / 2;
+        final CountDownLatch latch = new CountDownLatch(2);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= half; i++) {
+                    up.onNext(i);
+                }
+                latch.countDown();
+            }
+        });
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = half + 1; i <= elements; i++) {
+                    up.onNext(i);
+                }
+                latch.countDown();
+                try {
+                    latch.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                up.onComplete();
+            }
+        });
+        return up;
+    }
+
+    @Override
+    public Integer typicalItem() {
+        return 1;
+    }
+
+    @Override
+    @Test(enabled = false)
+    public void setExternalErrorHandler(final ExternalErrorConsumer errorConsumer) {
+        if (errorConsumer == null) {
+            UndeliverableErrors.handler = null;
+        } else {
+            UndeliverableErrors.handler = new Handler() {
+                @Override
+                public void handle(Throwable e) {
+                    errorConsumer.accept(e);
+                }
+            };
+        }
+    }
+}
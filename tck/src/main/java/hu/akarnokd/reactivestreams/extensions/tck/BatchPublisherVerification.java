@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tck;
+
+import org.reactivestreams.Publisher;
+import org.testng.annotations.Test;
+
+/**
+ * Verifies {@code Publisher}s that deliver items to a
+ * {@link hu.akarnokd.reactivestreams.extensions.BatchSubscriber BatchSubscriber}
+ * via {@code onNextBatch}.
+ * @param <T> the value type
+ */
+public abstract class BatchPublisherVerification<T> extends RelaxedPublisherVerification<T> {
+
+    @Test
+    public void requiredBatchPublisherWorks() {
+        runPublisher(true, new TestBody<T>() {
+            @Override
+            public void run(Publisher<T> pub, int elements, boolean exact, boolean errorResult) throws Throwable {
+                TckBatchSubscriber<T> sub = settings.newBatchSubscriber();
+                try {
+                    sub.request(Long.MAX_VALUE);
+
+                    pub.subscribe(sub);
+
+                    sub.expectSubscribe();
+
+                    if (exact) {
+                        sub.expectElements(elements);
+                    } else {
+                        sub.expectAnyElements(elements);
+                    }
+
+                    if (errorResult) {
+                        sub.expectError();
+                        sub.expectNoComplete();
+                    } else {
+                        sub.expectComplete();
+                        sub.expectNoErrors();
+                    }
+
+                    if (elements != 0) {
+                        sub.expectBatches();
+                    }
+                } catch (Throwable ex) {
+                    sub.cancel();
+                    throw ex;
+                }
+            }
+        }, 0, 1, 2, 3, 5, 10, 20, 1000);
+    }
+
+    @Test
+    public void requiredBatchPublisherHonorsRequest() {
+        runPublisher(true, new TestBody<T>() {
+            @Override
+            public void run(Publisher<T> pub, int elements, boolean exact, boolean errorResult) throws Throwable {
+                TckBatchSubscriber<T> sub = settings.newBatchSubscriber();
+                try {
+                    pub.subscribe(sub);
+
+                    sub.expectSubscribe();
+
+                    sub.request(1);
+
+                    sub.expectElements(1);
+
+                    sub.request(elements - 1);
+
+                    if (exact) {
+                        sub.expectElements(elements - 1);
+                    } else {
+                        sub.expectAnyElements(elements - 1);
+                    }
+
+                    if (errorResult) {
+                        sub.expectError();
+                        sub.expectNoComplete();
+                    } else {
+                        sub.expectComplete();
+                        sub.expectNoErrors();
+                    }
+                } catch (Throwable ex) {
+                    sub.cancel();
+                    throw ex;
+                }
+            }
+        }, 2, 3, 5, 10, 20, 1000);
+    }
+
+    @Test
+    public void requiredDroppedItemsDontCountAsDelivered() {
+        runPublisher(true, new TestBody<T>() {
+            @Override
+            public void run(Publisher<T> pub, int elements, boolean exact, boolean errorResult) throws Throwable {
+                TckBatchSubscriber<T> sub = settings.newBatchSubscriber();
+                try {
+                    sub.setDropBatches(1);
+
+                    pub.subscribe(sub);
+
+                    sub.expectSubscribe();
+
+                    sub.request(1);
+
+                    if (exact) {
+                        sub.expectElements(1);
+                    } else {
+                        sub.expectAnyElements(1);
+                    }
+
+                    sub.expectNoErrors();
+                    sub.expectBatches();
+                } finally {
+                    sub.cancel();
+                }
+            }
+        }, 3, 5, 10, 20);
+    }
+}
@@ -68,6 +68,49 @@ public abstract class FusedPublisherVerification<T> extends RelaxedPublisherVeri
         }, 0, 1, 2, 3, 5, 10, 20);
     }
 
+    @Test
+    public void optionalPrimitiveFusedPublisherWorks() {
+        runPublisher(false, new TestBody<T>() {
+            @Override
+            public void run(Publisher<T> pub, int elements, boolean exact, boolean errorResult) throws Throwable {
+                TckFusedSubscriber<T> sub = settings.newFusedSubscriber();
+                try {
+                    sub.request(Long.MAX_VALUE);
+                    sub.setInitialFusionMode(FusedQueueSubscription.ANY | FusedQueueSubscription.PRIMITIVE);
+
+                    pub.subscribe(sub);
+
+                    sub.expectFusedSubscribe();
+
+                    FusedQueue<T> queue = sub.fusedQueue();
+                    if (!(queue instanceof IntFusedQueueSubscription) && !(queue instanceof LongFusedQueueSubscription)) {
+                        throw new SkipException("Not a primitive fused source: " + queue.getClass());
+                    }
+
+                    sub.expectFusionMode(FusedQueueSubscription.ANY);
+                    sub.expectPrimitiveFusion();
+
+                    if (exact) {
+                        sub.expectElements(elements);
+                    } else {
+                        sub.expectAnyElements(elements);
+                    }
+
+                    if (errorResult) {
+                        sub.expectError();
+                        sub.expectNoComplete();
+                    } else {
+                        sub.expectComplete();
+                        sub.expectNoErrors();
+                    }
+                } catch (Throwable ex) {
+                    sub.cancel();
+                    throw ex;
+                }
+            }
+        }, 0, 1, 2, 3, 5, 10, 20);
+    }
+
     @Test
     public void requiredOfferShouldThrowOrReturnFalse() {
         final T typicalItem = typicalItem();
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tck;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+import hu.akarnokd.reactivestreams.extensions.tools.SubscriptionTools;
+
+public class TckBatchSubscriber<T> extends TckFusedSubscriber<T> implements BatchSubscriber<T> {
+
+    protected final AtomicLong outstanding;
+
+    protected int dropBatches;
+
+    protected volatile long batchCount;
+
+    public TckBatchSubscriber(int itemTimeoutMillis) {
+        super(itemTimeoutMillis);
+        this.outstanding = new AtomicLong();
+    }
+
+    /**
+     * Sets the number of batches to drop (not consume) at the beginning.
+     * @param dropBatches the number of batches to drop
+     */
+    public final void setDropBatches(int dropBatches) {
+        this.dropBatches = dropBatches;
+    }
+
+    @Override
+    public void request(long n) {
+        if (n > 0L) {
+            SubscriptionTools.getAndAddRequested(outstanding, n);
+        }
+        super.request(n);
+    }
+
+    @Override
+    public void requestDirect(long n) {
+        if (n > 0L) {
+            SubscriptionTools.getAndAddRequested(outstanding, n);
+        }
+        super.requestDirect(n);
+    }
+
+    @Override
+    public void onNext(T t) {
+        if (actualFusionMode == FusedQueueSubscription.NONE && outstanding.get() != 0L) {
+            SubscriptionTools.subtractAndGetRequested(outstanding, 1);
+        }
+        super.onNext(t);
+    }
+
+    @Override
+    public int onNextBatch(T[] items, int count) {
+        batchCount++;
+        if (items == null) {
+            super.onError(new NullPointerException("Null items array received"));
+            return count;
+        }
+        if (count <= 0 || count > items.length) {
+            super.onError(new IllegalArgumentException("Invalid batch count: " + count + ", array length: " + items.length));
+            return count;
+        }
+        long r = outstanding.get();
+        if (count > r) {
+            super.onError(new IllegalStateException("Batch of " + count + " items exceeds the outstanding request of " + r));
+            return count;
+        }
+        int d = dropBatches;
+        if (d > 0) {
+            dropBatches = d - 1;
+            return 0;
+        }
+        SubscriptionTools.subtractAndGetRequested(outstanding, count);
+        for (int i = 0; i < count; i++) {
+            super.onNext(items[i]);
+        }
+        return count;
+    }
+
+    public final void expectBatches() {
+        if (batchCount == 0L) {
+            throw fail("No items received via onNextBatch");
+        }
+    }
+}
@@ -13,6 +13,8 @@ public class TckFusedSubscriber<T> extends TckStandardSubscriber<T> implements R
 
     protected volatile FusedQueueSubscription<T> qs;
 
+    protected volatile boolean primitiveFusion;
+
     public TckFusedSubscriber(int itemTimeoutMillis) {
         super(itemTimeoutMillis);
     }
@@ -32,13 +34,24 @@ public class TckFusedSubscriber<T> extends TckStandardSubscriber<T> implements R
                 int ifm = initialFusionMode;
                 if (ifm != FusedQueueSubscription.NONE) {
                     int m = qs.requestFusion(ifm);
+                    if ((m & FusedQueueSubscription.PRIMITIVE) != 0) {
+                        m &= ~FusedQueueSubscription.PRIMITIVE;
+                        if ((ifm & FusedQueueSubscription.PRIMITIVE) == 0) {
+                            super.onError(new IllegalStateException("PRIMITIVE fusion returned but not requested"));
+                        } else
+                        if (!(queue instanceof IntFusedQueue) && !(queue instanceof LongFusedQueue)) {
+                            super.onError(new IllegalStateException("PRIMITIVE fusion returned by a non-primitive queue: " + queue.getClass()));
+                        } else {
+                            primitiveFusion = true;
+                        }
+                    }
                     if (m == FusedQueueSubscription.SYNC) {
                         requestInitial = false;
                         actualFusionMode = m;
                         try {
                             T v;
 
-                            while ((v = queue.poll()) != null) {
+                            while ((v = pollNext(queue)) != null) {
                                 super.onNext(v);
                             }
                             super.onComplete();
@@ -88,7 +101,7 @@ public class TckFusedSubscriber<T> extends TckStandardSubscriber<T> implements R
                 T v;
 
                 try {
-                    while ((v = queue.poll()) != null) {
+                    while ((v = pollNext(queue)) != null) {
                         super.onNext(v);
                     }
                 } catch (Throwable ex) {
@@ -119,6 +132,27 @@ public class TckFusedSubscriber<T> extends TckStandardSubscriber<T> implements R
         }
     }
 
+    /**
+     * Polls the next item from the queue, via the primitive {@code pollInt()} or {@code pollLong()}
+     * if primitive fusion was established.
+     * @param queue the queue to poll
+     * @return the next item or null if the queue is empty
+     * @throws Throwable if the queue's poll crashed
+     */
+    @SuppressWarnings("unchecked")
+    protected final T pollNext(FusedQueueSubscription<T> queue) throws Throwable {
+        if (primitiveFusion) {
+            if (queue.isEmpty()) {
+                return null;
+            }
+            if (queue instanceof IntFusedQueue) {
+                return (T)Integer.valueOf(((IntFusedQueue)queue).pollInt());
+            }
+            return (T)Long.valueOf(((LongFusedQueue)queue).pollLong());
+        }
+        return queue.poll();
+    }
+
     protected final String fusionString(int mode) {
         StringBuilder b = new StringBuilder();
         if ((mode & FusedQueueSubscription.ANY) == FusedQueueSubscription.ANY) {
@@ -137,6 +171,13 @@ public class TckFusedSubscriber<T> extends TckStandardSubscriber<T> implements R
                 b.append("BOUNDARY(4)");
             }
         }
+        if ((mode & FusedQueueSubscription.PRIMITIVE) != 0) {
+            if (b.length() > 0) {
+                b.append(" | PRIMITIVE(8)");
+            } else {
+                b.append("PRIMITIVE(8)");
+            }
+        }
         return b.toString();
     }
 
@@ -160,6 +201,12 @@ public class TckFusedSubscriber<T> extends TckStandardSubscriber<T> implements R
         }
     }
 
+    public final void expectPrimitiveFusion() {
+        if (!primitiveFusion) {
+            throw fail("PRIMITIVE fusion not established. Actual: " + fusionString(actualFusionMode));
+        }
+    }
+
     public final void expectFusedSubscribe() throws Throwable {
         expectSubscribe();
         if (qs == null) {
@@ -42,4 +42,8 @@ public class TckTestSettings {
     public <T> TckFusedSubscriber<T> newFusedSubscriber() {
         return new TckFusedSubscriber<T>(itemTimeoutMillis);
     }
+
+    public <T> TckBatchSubscriber<T> newBatchSubscriber() {
+        return new TckBatchSubscriber<T>(itemTimeoutMillis);
+    }
 }
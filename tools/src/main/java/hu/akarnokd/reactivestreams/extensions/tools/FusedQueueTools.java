@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+
+/**
+ * Utility methods for working with {@link FusedQueue}s in bulk, using the
+ * {@link BulkFusedQueue} methods if the queue supports them or falling back
+ * to element-by-element processing otherwise, and for querying the size of
+ * {@link SizedFusedQueue}s.
+ */
+public final class FusedQueueTools {
+
+    /** Utility class. */
+    private FusedQueueTools() {
+        throw new IllegalStateException("No instances!");
+    }
+
+    /**
+     * Polls up to the given number of elements from the queue into the array, starting at index zero.
+     * @param <T> the value type
+     * @param queue the queue to drain, not null
+     * @param into the array to fill in, not null, at least {@code max} long
+     * @param max the maximum number of elements to poll, positive
+     * @return the number of elements actually polled, zero if the queue was empty
+     * @throws Throwable the exception thrown by the queue's dequeueing logic
+     * @see BulkFusedQueue#drain(Object[], int)
+     */
+    public static <T> int drain(FusedQueue<T> queue, T[] into, int max) throws Throwable {
+        if (queue instanceof BulkFusedQueue) {
+            return ((BulkFusedQueue<T>)queue).drain(into, max);
+        }
+        int i = 0;
+        while (i != max) {
+            T v = queue.poll();
+            if (v == null) {
+                break;
+            }
+            into[i++] = v;
+        }
+        return i;
+    }
+
+    /**
+     * Try to offer a range of elements from an array into the queue in order.
+     * @param <T> the value type
+     * @param queue the queue to offer to, not null
+     * @param from the source array, not null
+     * @param offset the index of the first element to offer
+     * @param length the number of elements to offer, each of them not null
+     * @return the number of elements offered, less than {@code length} if the queue became full
+     * @see BulkFusedQueue#offerAll(Object[], int, int)
+     */
+    public static <T> int offerAll(FusedQueue<T> queue, T[] from, int offset, int length) {
+        if (queue instanceof BulkFusedQueue) {
+            return ((BulkFusedQueue<T>)queue).offerAll(from, offset, length);
+        }
+        int i = 0;
+        while (i != length) {
+            if (!queue.offer(from[offset + i])) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the approximate number of elements in the queue if it is a {@link SizedFusedQueue}.
+     * @param queue the queue to query, not null
+     * @return the approximate number of elements or {@link SizedFusedQueue#UNKNOWN}
+     * @see SizedFusedQueue#estimatedSize()
+     */
+    public static long estimatedSize(FusedQueue<?> queue) {
+        if (queue instanceof SizedFusedQueue) {
+            return ((SizedFusedQueue<?>)queue).estimatedSize();
+        }
+        return SizedFusedQueue.UNKNOWN;
+    }
+
+    /**
+     * Returns the capacity of the queue if it is a {@link SizedFusedQueue}.
+     * @param queue the queue to query, not null
+     * @return the capacity, {@link SizedFusedQueue#UNBOUNDED} or {@link SizedFusedQueue#UNKNOWN}
+     * @see SizedFusedQueue#capacity()
+     */
+    public static long capacity(FusedQueue<?> queue) {
+        if (queue instanceof SizedFusedQueue) {
+            return ((SizedFusedQueue<?>)queue).capacity();
+        }
+        return SizedFusedQueue.UNKNOWN;
+    }
+}
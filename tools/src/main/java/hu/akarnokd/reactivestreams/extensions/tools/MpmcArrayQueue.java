@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import java.util.concurrent.atomic.*;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+
+/**
+ * A bounded, multi-producer multi-consumer array-backed {@link FusedQueue}
+ * with per-slot sequence numbers (based on Dmitry Vyukov's bounded MPMC queue).
+ * <p>
+ * The capacity is rounded up to the next power of two, but at least 2: with a single
+ * slot, the sequence number of a written slot would look free to the next producer. Each slot has a sequence
+ * number telling whether it is ready to be written for a given producer index
+ * ({@code sequence == index}) or ready to be read for a given consumer index
+ * ({@code sequence == index + 1}). Producers and consumers claim slots with a
+ * compare-and-set on their respective index and then publish the slot by an ordered
+ * store of its next sequence number.
+ * <p>
+ * Any number of threads may call {@link #offer(Object)}, {@link #poll()},
+ * {@link #isEmpty()} and {@link #clear()} concurrently:
+ * <ul>
+ * <li>{@code poll()} never throws and returns null if the queue is empty; if a producer has
+ * claimed the next slot but hasn't stored the element yet, {@code poll()} spins until
+ * the element becomes visible.</li>
+ * <li>{@code isEmpty()} is a snapshot: {@code true} means the queue was empty at some point
+ * during the call, but with other threads polling, {@code false} doesn't guarantee
+ * the next {@code poll()} of the caller will return an element as another consumer may have
+ * taken it in the meantime.</li>
+ * <li>{@code clear()} polls and drops elements until it finds the queue empty; elements
+ * taken by other consumers during the call are not affected and elements offered concurrently
+ * may or may not be dropped.</li>
+ * </ul>
+ *
+ * @param <T> the value type
+ */
+public final class MpmcArrayQueue<T> extends MpmcArrayQueuePad2 implements SizedFusedQueue<T> {
+
+    final AtomicReferenceArray<T> array;
+
+    final AtomicLongArray sequences;
+
+    final int mask;
+
+    /**
+     * Constructs a queue with the given capacity rounded up to the next power of two (at least 2).
+     * @param capacity the minimum capacity, positive, at most 2^30
+     * @throws IllegalArgumentException if capacity is non-positive or larger than 2^30
+     */
+    public MpmcArrayQueue(int capacity) {
+        QueueTools.verifyCapacity(capacity);
+        int c = Math.max(2, QueueTools.roundToPowerOfTwo(capacity));
+        this.array = new AtomicReferenceArray<T>(c);
+        AtomicLongArray s = new AtomicLongArray(c);
+        for (int i = 0; i < c; i++) {
+            s.lazySet(i, i);
+        }
+        this.sequences = s;
+        this.mask = c - 1;
+    }
+
+    @Override
+    public boolean offer(T element) {
+        if (element == null) {
+            throw new NullPointerException("element is null");
+        }
+        AtomicLongArray s = sequences;
+        int m = mask;
+        for (;;) {
+            long pi = producerIndex;
+            int offset = (int)pi & m;
+            long seq = s.get(offset);
+            if (seq == pi) {
+                if (PRODUCER_INDEX.compareAndSet(this, pi, pi + 1)) {
+                    array.lazySet(offset, element);
+                    s.lazySet(offset, pi + 1);
+                    return true;
+                }
+            } else if (seq < pi) {
+                // the slot from the previous round hasn't been released yet
+                if (pi - m - 1 >= consumerIndex) {
+                    return false;
+                }
+                // a consumer has claimed the slot but hasn't released it yet
+            }
+            // otherwise another producer claimed the slot, retry with the new index
+        }
+    }
+
+    @Override
+    public T poll() {
+        AtomicLongArray s = sequences;
+        int m = mask;
+        for (;;) {
+            long ci = consumerIndex;
+            int offset = (int)ci & m;
+            long seq = s.get(offset);
+            if (seq == ci + 1) {
+                if (CONSUMER_INDEX.compareAndSet(this, ci, ci + 1)) {
+                    T v = array.get(offset);
+                    array.lazySet(offset, null);
+                    s.lazySet(offset, ci + m + 1);
+                    return v;
+                }
+            } else if (seq < ci + 1) {
+                // the slot hasn't been written in this round yet
+                if (ci >= producerIndex) {
+                    return null;
+                }
+                // a producer has claimed the slot but its store is not visible yet
+            }
+            // otherwise another consumer claimed the slot, retry with the new index
+        }
+    }
+
+    @Override
+    public long estimatedSize() {
+        // reading the consumer index first ensures it is not ahead of the producer index read after
+        long ci = consumerIndex;
+        long size = producerIndex - ci;
+        if (size < 0L) {
+            return 0L;
+        }
+        return Math.min(size, mask + 1L);
+    }
+
+    @Override
+    public long capacity() {
+        return mask + 1L;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        // reading the consumer index first ensures ci <= pi
+        long ci = consumerIndex;
+        return ci == producerIndex;
+    }
+
+    @Override
+    public void clear() {
+        while (poll() != null) {
+            // the poll itself clears the slots
+        }
+    }
+}
+
+/** Padding between the object header and the producer fields. */
+abstract class MpmcArrayQueuePad0 {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p08, p09, p0A, p0B, p0C, p0D, p0E, p0F;
+}
+
+/** Holds the producer-side fields. */
+abstract class MpmcArrayQueueProducerFields extends MpmcArrayQueuePad0 {
+
+    volatile long producerIndex;
+    static final AtomicLongFieldUpdater<MpmcArrayQueueProducerFields> PRODUCER_INDEX =
+            AtomicLongFieldUpdater.newUpdater(MpmcArrayQueueProducerFields.class, "producerIndex");
+}
+
+/** Padding between the producer and the consumer fields. */
+abstract class MpmcArrayQueuePad1 extends MpmcArrayQueueProducerFields {
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+    long p18, p19, p1A, p1B, p1C, p1D, p1E, p1F;
+}
+
+/** Holds the consumer-side fields. */
+abstract class MpmcArrayQueueConsumerFields extends MpmcArrayQueuePad1 {
+
+    volatile long consumerIndex;
+    static final AtomicLongFieldUpdater<MpmcArrayQueueConsumerFields> CONSUMER_INDEX =
+            AtomicLongFieldUpdater.newUpdater(MpmcArrayQueueConsumerFields.class, "consumerIndex");
+}
+
+/** Padding between the consumer fields and the read-only fields of the queue. */
+abstract class MpmcArrayQueuePad2 extends MpmcArrayQueueConsumerFields {
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+    long p28, p29, p2A, p2B, p2C, p2D, p2E, p2F;
+}
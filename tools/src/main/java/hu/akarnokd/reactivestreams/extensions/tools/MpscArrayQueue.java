@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import java.util.concurrent.atomic.*;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+
+/**
+ * A bounded, multi-producer single-consumer array-backed {@link FusedQueue}.
+ * <p>
+ * The capacity is rounded up to the next power of two. Producers claim a slot
+ * with a single compare-and-set on the producer index (retried only if another producer
+ * claimed the same slot concurrently) and consult the consumer index only if the cached
+ * producer limit has been reached. The consumer doesn't use any compare-and-set: it
+ * publishes its progress via ordered stores ({@code lazySet}).
+ * <p>
+ * Any number of threads may call {@link #offer(Object)} concurrently but only one
+ * thread at a time may call {@link #poll()}, {@link #isEmpty()} and {@link #clear()}.
+ * {@code poll()} never throws and returns null if the queue is empty; if a producer has
+ * claimed the next slot but hasn't stored the element yet, {@code poll()} spins until
+ * the element becomes visible.
+ * <p>
+ * {@link #offerAll(Object[], int, int)} claims as many slots as possible with a single
+ * compare-and-set, which reduces the contention between producers offering in batches.
+ *
+ * @param <T> the value type
+ */
+public final class MpscArrayQueue<T> extends MpscArrayQueuePad2 implements BulkFusedQueue<T>, SizedFusedQueue<T> {
+
+    final AtomicReferenceArray<T> array;
+
+    final int mask;
+
+    /**
+     * Constructs a queue with the given capacity rounded up to the next power of two.
+     * @param capacity the minimum capacity, positive, at most 2^30
+     * @throws IllegalArgumentException if capacity is non-positive or larger than 2^30
+     */
+    public MpscArrayQueue(int capacity) {
+        QueueTools.verifyCapacity(capacity);
+        int c = QueueTools.roundToPowerOfTwo(capacity);
+        this.array = new AtomicReferenceArray<T>(c);
+        this.mask = c - 1;
+        this.producerLimit = c;
+    }
+
+    @Override
+    public boolean offer(T element) {
+        if (element == null) {
+            throw new NullPointerException("element is null");
+        }
+        int m = mask;
+        long limit = producerLimit;
+        long pi;
+        do {
+            pi = producerIndex;
+            if (pi >= limit) {
+                limit = consumerIndex + m + 1;
+                if (pi >= limit) {
+                    return false;
+                }
+                PRODUCER_LIMIT.lazySet(this, limit);
+            }
+        } while (!PRODUCER_INDEX.compareAndSet(this, pi, pi + 1));
+
+        array.lazySet((int)pi & m, element);
+        return true;
+    }
+
+    @Override
+    public int offerAll(T[] from, int offset, int length) {
+        // a claimed slot can't be abandoned, therefore validate the elements upfront
+        for (int i = 0; i < length; i++) {
+            if (from[offset + i] == null) {
+                throw new NullPointerException("from[" + (offset + i) + "] is null");
+            }
+        }
+        if (length == 0) {
+            return 0;
+        }
+        int m = mask;
+        long limit = producerLimit;
+        long pi;
+        int n;
+        do {
+            pi = producerIndex;
+            if (pi + length > limit) {
+                long newLimit = consumerIndex + m + 1;
+                if (newLimit != limit) {
+                    limit = newLimit;
+                    PRODUCER_LIMIT.lazySet(this, limit);
+                }
+                if (pi >= limit) {
+                    return 0;
+                }
+            }
+            n = (int)Math.min(length, limit - pi);
+        } while (!PRODUCER_INDEX.compareAndSet(this, pi, pi + n));
+
+        AtomicReferenceArray<T> a = array;
+        for (int i = 0; i < n; i++) {
+            a.lazySet((int)(pi + i) & m, from[offset + i]);
+        }
+        return n;
+    }
+
+    @Override
+    public int drain(T[] into, int max) {
+        int i = 0;
+        while (i != max) {
+            T v = poll();
+            if (v == null) {
+                break;
+            }
+            into[i++] = v;
+        }
+        return i;
+    }
+
+    @Override
+    public T poll() {
+        AtomicReferenceArray<T> a = array;
+        long ci = consumerIndex;
+        int offset = (int)ci & mask;
+        T v = a.get(offset);
+        if (v == null) {
+            if (ci == producerIndex) {
+                return null;
+            }
+            // a producer has claimed the slot but its store is not visible yet
+            do {
+                v = a.get(offset);
+            } while (v == null);
+        }
+        a.lazySet(offset, null);
+        CONSUMER_INDEX.lazySet(this, ci + 1);
+        return v;
+    }
+
+    @Override
+    public long estimatedSize() {
+        // reading the consumer index first ensures it is not ahead of the producer index read after
+        long ci = consumerIndex;
+        long size = producerIndex - ci;
+        if (size < 0L) {
+            return 0L;
+        }
+        return Math.min(size, mask + 1L);
+    }
+
+    @Override
+    public long capacity() {
+        return mask + 1L;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return consumerIndex == producerIndex;
+    }
+
+    @Override
+    public void clear() {
+        while (poll() != null) {
+            // the poll itself clears the slots
+        }
+    }
+}
+
+/** Padding between the object header and the producer fields. */
+abstract class MpscArrayQueuePad0 {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p08, p09, p0A, p0B, p0C, p0D, p0E, p0F;
+}
+
+/** Holds the producer-side fields. */
+abstract class MpscArrayQueueProducerFields extends MpscArrayQueuePad0 {
+
+    volatile long producerIndex;
+    static final AtomicLongFieldUpdater<MpscArrayQueueProducerFields> PRODUCER_INDEX =
+            AtomicLongFieldUpdater.newUpdater(MpscArrayQueueProducerFields.class, "producerIndex");
+
+    /** The cached index, exclusive, up to which producers can claim slots without reading the consumer index. */
+    volatile long producerLimit;
+    static final AtomicLongFieldUpdater<MpscArrayQueueProducerFields> PRODUCER_LIMIT =
+            AtomicLongFieldUpdater.newUpdater(MpscArrayQueueProducerFields.class, "producerLimit");
+}
+
+/** Padding between the producer and the consumer fields. */
+abstract class MpscArrayQueuePad1 extends MpscArrayQueueProducerFields {
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+    long p18, p19, p1A, p1B, p1C, p1D, p1E, p1F;
+}
+
+/** Holds the consumer-side fields. */
+abstract class MpscArrayQueueConsumerFields extends MpscArrayQueuePad1 {
+
+    volatile long consumerIndex;
+    static final AtomicLongFieldUpdater<MpscArrayQueueConsumerFields> CONSUMER_INDEX =
+            AtomicLongFieldUpdater.newUpdater(MpscArrayQueueConsumerFields.class, "consumerIndex");
+}
+
+/** Padding between the consumer fields and the read-only fields of the queue. */
+abstract class MpscArrayQueuePad2 extends MpscArrayQueueConsumerFields {
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+    long p28, p29, p2A, p2B, p2C, p2D, p2E, p2F;
+}
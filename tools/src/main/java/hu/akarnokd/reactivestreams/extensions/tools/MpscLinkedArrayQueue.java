@@ -0,0 +1,223 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import java.util.concurrent.atomic.*;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+
+/**
+ * An unbounded, multi-producer single-consumer {@link FusedQueue} that stores the
+ * elements in fixed-size array segments linked together.
+ * <p>
+ * Producers claim an index with a single atomic increment of the producer index and
+ * find the segment for it starting from the most recent segment; a new segment is
+ * allocated and linked by the producer that first needs it (the other producers racing
+ * for it drop their own copy). The consumer doesn't use any compare-and-set: it
+ * publishes its progress via ordered stores ({@code lazySet}) and drops the segments
+ * it has moved past.
+ * <p>
+ * Any number of threads may call {@link #offer(Object)} concurrently but only one
+ * thread at a time may call {@link #poll()}, {@link #isEmpty()} and {@link #clear()}.
+ * {@code poll()} never throws and returns null if the queue is empty; if a producer has
+ * claimed the next index but hasn't stored the element yet, {@code poll()} spins until
+ * the element becomes visible.
+ *
+ * @param <T> the value type
+ */
+public final class MpscLinkedArrayQueue<T> extends MpscLinkedArrayQueuePad2 implements SizedFusedQueue<T> {
+
+    final int mask;
+
+    final int shift;
+
+    /**
+     * Constructs an empty queue with the given segment size rounded up to the next power of two.
+     * @param chunkSize the number of elements per segment, positive, at most 2^30
+     * @throws IllegalArgumentException if chunkSize is non-positive or larger than 2^30
+     */
+    public MpscLinkedArrayQueue(int chunkSize) {
+        QueueTools.verifyCapacity(chunkSize);
+        int c = QueueTools.roundToPowerOfTwo(chunkSize);
+        this.mask = c - 1;
+        this.shift = Integer.numberOfTrailingZeros(c);
+        Segment s = new Segment(0L, c);
+        this.producerSegment = s;
+        this.consumerSegment = s;
+    }
+
+    @Override
+    public boolean offer(T element) {
+        if (element == null) {
+            throw new NullPointerException("element is null");
+        }
+        // read before claiming the index so that the segment can't be ahead of the index
+        Segment s = producerSegment;
+        long pi = PRODUCER_INDEX.getAndIncrement(this);
+        long id = pi >> shift;
+        if (s.id != id) {
+            s = segmentFor(s, id);
+        }
+        s.lazySet((int)pi & mask, element);
+        return true;
+    }
+
+    Segment segmentFor(Segment s, long id) {
+        int n = mask + 1;
+        while (s.id != id) {
+            Segment next = s.next;
+            if (next == null) {
+                next = new Segment(s.id + 1, n);
+                if (!Segment.NEXT.compareAndSet(s, null, next)) {
+                    next = s.next;
+                }
+            }
+            s = next;
+        }
+        for (;;) {
+            Segment current = producerSegment;
+            if (current.id >= id || PRODUCER_SEGMENT.compareAndSet(this, current, s)) {
+                break;
+            }
+        }
+        return s;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T poll() {
+        Segment s = consumerSegment;
+        long ci = consumerIndex;
+        if (s.id != ci >> shift) {
+            Segment next = s.next;
+            if (next == null) {
+                if (ci == producerIndex) {
+                    return null;
+                }
+                // a producer has claimed the index but hasn't linked the segment yet
+                do {
+                    next = s.next;
+                } while (next == null);
+            }
+            s = next;
+            consumerSegment = s;
+        }
+        int offset = (int)ci & mask;
+        Object v = s.get(offset);
+        if (v == null) {
+            if (ci == producerIndex) {
+                return null;
+            }
+            // a producer has claimed the index but its store is not visible yet
+            do {
+                v = s.get(offset);
+            } while (v == null);
+        }
+        s.lazySet(offset, null);
+        CONSUMER_INDEX.lazySet(this, ci + 1);
+        return (T)v;
+    }
+
+    @Override
+    public long estimatedSize() {
+        // reading the consumer index first ensures it is not ahead of the producer index read after
+        long ci = consumerIndex;
+        long size = producerIndex - ci;
+        if (size < 0L) {
+            return 0L;
+        }
+        return size;
+    }
+
+    @Override
+    public long capacity() {
+        return UNBOUNDED;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return consumerIndex == producerIndex;
+    }
+
+    @Override
+    public void clear() {
+        while (poll() != null) {
+            // the poll itself clears the slots
+        }
+    }
+
+    /**
+     * An array segment with its sequence number and link to the next segment.
+     */
+    static final class Segment extends AtomicReferenceArray<Object> {
+
+        private static final long serialVersionUID = -2386137829342138045L;
+
+        final long id;
+
+        volatile Segment next;
+        static final AtomicReferenceFieldUpdater<Segment, Segment> NEXT =
+                AtomicReferenceFieldUpdater.newUpdater(Segment.class, Segment.class, "next");
+
+        Segment(long id, int length) {
+            super(length);
+            this.id = id;
+        }
+    }
+}
+
+/** Padding between the object header and the producer fields. */
+abstract class MpscLinkedArrayQueuePad0 {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p08, p09, p0A, p0B, p0C, p0D, p0E, p0F;
+}
+
+/** Holds the producer-side fields. */
+abstract class MpscLinkedArrayQueueProducerFields extends MpscLinkedArrayQueuePad0 {
+
+    volatile long producerIndex;
+    static final AtomicLongFieldUpdater<MpscLinkedArrayQueueProducerFields> PRODUCER_INDEX =
+            AtomicLongFieldUpdater.newUpdater(MpscLinkedArrayQueueProducerFields.class, "producerIndex");
+
+    /** The most recent segment, the starting point for the producers to find their segment. */
+    volatile MpscLinkedArrayQueue.Segment producerSegment;
+    static final AtomicReferenceFieldUpdater<MpscLinkedArrayQueueProducerFields, MpscLinkedArrayQueue.Segment> PRODUCER_SEGMENT =
+            AtomicReferenceFieldUpdater.newUpdater(MpscLinkedArrayQueueProducerFields.class, MpscLinkedArrayQueue.Segment.class, "producerSegment");
+}
+
+/** Padding between the producer and the consumer fields. */
+abstract class MpscLinkedArrayQueuePad1 extends MpscLinkedArrayQueueProducerFields {
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+    long p18, p19, p1A, p1B, p1C, p1D, p1E, p1F;
+}
+
+/** Holds the consumer-side fields. */
+abstract class MpscLinkedArrayQueueConsumerFields extends MpscLinkedArrayQueuePad1 {
+
+    volatile long consumerIndex;
+    static final AtomicLongFieldUpdater<MpscLinkedArrayQueueConsumerFields> CONSUMER_INDEX =
+            AtomicLongFieldUpdater.newUpdater(MpscLinkedArrayQueueConsumerFields.class, "consumerIndex");
+
+    /** The segment the consumer currently reads from. */
+    MpscLinkedArrayQueue.Segment consumerSegment;
+}
+
+/** Padding between the consumer fields and the read-only fields of the queue. */
+abstract class MpscLinkedArrayQueuePad2 extends MpscLinkedArrayQueueConsumerFields {
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+    long p28, p29, p2A, p2B, p2C, p2D, p2E, p2F;
+}
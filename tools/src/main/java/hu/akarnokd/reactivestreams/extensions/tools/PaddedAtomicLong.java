@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link AtomicLong} followed by padding fields so that the fields of a subclass
+ * don't share the cache line of the atomic value.
+ * <p>
+ * Useful as the base class of a {@code Subscription} that keeps the requested amount
+ * in itself, which is updated by the requesting thread, while the emitting thread keeps
+ * reading and writing its own fields, such as the current index or the cancelled flag.
+ * The {@link AtomicLong} methods are not meant to be called from outside.
+ */
+public abstract class PaddedAtomicLong extends AtomicLong {
+
+    private static final long serialVersionUID = 3541830463374547530L;
+
+    /** Occupies the alignment gap in front of the value, where newer JVMs would place subclass fields. */
+    int p0G;
+
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p08, p09, p0A, p0B, p0C, p0D, p0E, p0F;
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import java.util.concurrent.atomic.*;
+
+import org.reactivestreams.Subscription;
+
+/**
+ * Holds the fields the field-updater versions of {@link SubscriptionTools#drainQueue(hu.akarnokd.reactivestreams.extensions.FusedQueue,
+ * org.reactivestreams.Subscriber, Object, AtomicLongFieldUpdater, AtomicLongFieldUpdater, AtomicReferenceFieldUpdater, AtomicReferenceFieldUpdater)
+ * drainQueue} and {@code drainSyncQueue} work with, keeping the requested amount, updated by the requesting side,
+ * on a separate cache line from the fields of the drain loop.
+ * <p>
+ * Subclasses access the fields through the field updaters. The {@code upstream} field indicates
+ * cancellation by holding {@link CancelledSubscription#INSTANCE}, even if the subclass is a source
+ * without an actual upstream.
+ */
+public abstract class PaddedQueueDrain extends PaddedQueueDrainPad2 {
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    protected static final AtomicLongFieldUpdater<PaddedQueueDrain> REQUESTED =
+            (AtomicLongFieldUpdater)AtomicLongFieldUpdater.newUpdater(PaddedQueueDrainRequestFields.class, "requested");
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    protected static final AtomicLongFieldUpdater<PaddedQueueDrain> WIP =
+            (AtomicLongFieldUpdater)AtomicLongFieldUpdater.newUpdater(PaddedQueueDrainEmitterFields.class, "wip");
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    protected static final AtomicReferenceFieldUpdater<PaddedQueueDrain, Throwable> ERROR =
+            (AtomicReferenceFieldUpdater)AtomicReferenceFieldUpdater.newUpdater(PaddedQueueDrainEmitterFields.class, Throwable.class, "error");
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    protected static final AtomicReferenceFieldUpdater<PaddedQueueDrain, Subscription> UPSTREAM =
+            (AtomicReferenceFieldUpdater)AtomicReferenceFieldUpdater.newUpdater(PaddedQueueDrainEmitterFields.class, Subscription.class, "upstream");
+}
+
+/**
+ * Padding between the object header and the requesting-side fields.
+ * <p>
+ * The int fields of the padding classes occupy the alignment gaps that newer JVMs would
+ * otherwise fill with fields of the subclasses.
+ */
+abstract class PaddedQueueDrainPad0 {
+    int p0G;
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p08, p09, p0A, p0B, p0C, p0D, p0E, p0F;
+}
+
+/** Holds the requested amount. */
+abstract class PaddedQueueDrainRequestFields extends PaddedQueueDrainPad0 {
+
+    volatile long requested;
+}
+
+/** Padding between the requesting-side and the emitting-side fields. */
+abstract class PaddedQueueDrainPad1 extends PaddedQueueDrainRequestFields {
+    int p1G;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+    long p18, p19, p1A, p1B, p1C, p1D, p1E, p1F;
+}
+
+/** Holds the fields of the drain loop. */
+abstract class PaddedQueueDrainEmitterFields extends PaddedQueueDrainPad1 {
+
+    volatile long wip;
+
+    volatile Throwable error;
+
+    volatile Subscription upstream;
+}
+
+/** Padding between the emitting-side fields and the fields of the subclass. */
+abstract class PaddedQueueDrainPad2 extends PaddedQueueDrainEmitterFields {
+    int p2G;
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+    long p28, p29, p2A, p2B, p2C, p2D, p2E, p2F;
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+/**
+ * Utility methods shared by the {@code FusedQueue} implementations.
+ */
+final class QueueTools {
+
+    /** Utility class. */
+    private QueueTools() {
+        throw new IllegalStateException("No instances!");
+    }
+
+    /**
+     * Rounds the given positive value up to the next power of two.
+     * @param value the value to round, positive (not validated)
+     * @return the power of two equal or greater than the value
+     */
+    static int roundToPowerOfTwo(int value) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+    }
+
+    /**
+     * Validates the capacity value.
+     * @param capacity the capacity to verify
+     * @throws IllegalArgumentException if capacity is non-positive or larger than 2^30
+     */
+    static void verifyCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity > 0 required but it was " + capacity);
+        }
+        if (capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity <= 2^30 required but it was " + capacity);
+        }
+    }
+}
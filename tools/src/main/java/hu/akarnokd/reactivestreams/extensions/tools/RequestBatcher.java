@@ -0,0 +1,190 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.reactivestreams.Subscription;
+
+/**
+ * Converts per-item consumption into batched {@code request(n)} calls: after the initial
+ * {@code prefetch} request, it requests {@code limit} more items once that many have been
+ * consumed (75% of the prefetch by default).
+ * <p>
+ * The instances use a plain field and should be called from the consumer side only,
+ * i.e., from within onNext or a serialized drain loop. Operators that keep the consumed
+ * count in their own volatile field can use the field updater versions instead.
+ */
+public final class RequestBatcher {
+
+    final int prefetch;
+
+    final int limit;
+
+    int consumed;
+
+    /**
+     * Constructs a RequestBatcher with the given prefetch amount and
+     * the default replenishment limit of 75% of it.
+     * @param prefetch the initial request amount, positive,
+     *                 Integer.MAX_VALUE indicates an unbounded request
+     * @throws IllegalArgumentException if prefetch is non-positive
+     * @see #limit(int)
+     */
+    public RequestBatcher(int prefetch) {
+        this(prefetch, limit(prefetch));
+    }
+
+    /**
+     * Constructs a RequestBatcher with the given prefetch amount and
+     * replenishment limit.
+     * @param prefetch the initial request amount, positive,
+     *                 Integer.MAX_VALUE indicates an unbounded request
+     * @param limit the number of items to consume before requesting
+     *              the same amount, between 1 and prefetch
+     * @throws IllegalArgumentException if prefetch is non-positive or
+     *                 limit is not between 1 and prefetch
+     */
+    public RequestBatcher(int prefetch, int limit) {
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("prefetch > 0 required but it was " + prefetch);
+        }
+        if (limit <= 0 || limit > prefetch) {
+            throw new IllegalArgumentException("0 < limit <= prefetch required but it was " + limit);
+        }
+        this.prefetch = prefetch;
+        this.limit = limit;
+    }
+
+    /**
+     * Returns the default replenishment limit for the given prefetch amount:
+     * 75% of it, rounded up, or Integer.MAX_VALUE for an unbounded prefetch.
+     * @param prefetch the prefetch amount, positive (not validated)
+     * @return the replenishment limit
+     */
+    public static int limit(int prefetch) {
+        if (prefetch == Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+        return prefetch - (prefetch >> 2);
+    }
+
+    /**
+     * Returns the request amount to be used for the initial upstream request:
+     * the prefetch or Long.MAX_VALUE for an unbounded prefetch.
+     * @param prefetch the prefetch amount, positive (not validated)
+     * @return the initial request amount
+     */
+    public static long initialRequest(int prefetch) {
+        return prefetch == Integer.MAX_VALUE ? Long.MAX_VALUE : prefetch;
+    }
+
+    public int prefetch() {
+        return prefetch;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of items consumed since the last replenishment.
+     * @return the number of items consumed since the last replenishment
+     */
+    public int consumed() {
+        return consumed;
+    }
+
+    /**
+     * Issues the initial request of prefetch items and resets the consumed count.
+     * @param upstream the upstream Subscription, not null
+     */
+    public void requestInitial(Subscription upstream) {
+        consumed = 0;
+        upstream.request(initialRequest(prefetch));
+    }
+
+    /**
+     * Indicates one item has been consumed and requests limit more
+     * items once limit items have been consumed.
+     * @param upstream the upstream Subscription, not null
+     * @return true if a replenishing request has been issued
+     */
+    public boolean produced(Subscription upstream) {
+        int c = consumed + 1;
+        if (c == limit) {
+            consumed = 0;
+            if (limit != Integer.MAX_VALUE) {
+                upstream.request(c);
+            }
+            return true;
+        }
+        consumed = c;
+        return false;
+    }
+
+    /**
+     * Indicates the given number of items have been consumed and requests
+     * the accumulated amount once it reaches the limit.
+     * @param upstream the upstream Subscription, not null
+     * @param n the number of items consumed, non-negative and
+     *          at most the outstanding request amount (not validated)
+     * @return true if a replenishing request has been issued
+     */
+    public boolean produced(Subscription upstream, int n) {
+        int c = consumed + n;
+        if (c >= limit || c < 0) {
+            consumed = 0;
+            if (limit != Integer.MAX_VALUE) {
+                upstream.request(c < 0 ? Integer.MAX_VALUE : c);
+            }
+            return true;
+        }
+        consumed = c;
+        return false;
+    }
+
+    // -----------------------------------------------------------------------------------------
+    // Field updater versions
+    // -----------------------------------------------------------------------------------------
+
+    public static <U> boolean produced(U instance, AtomicIntegerFieldUpdater<U> consumed, int limit, Subscription upstream) {
+        int c = consumed.get(instance) + 1;
+        if (c == limit) {
+            consumed.lazySet(instance, 0);
+            if (limit != Integer.MAX_VALUE) {
+                upstream.request(c);
+            }
+            return true;
+        }
+        consumed.lazySet(instance, c);
+        return false;
+    }
+
+    public static <U> boolean produced(U instance, AtomicIntegerFieldUpdater<U> consumed, int limit, Subscription upstream, int n) {
+        int c = consumed.get(instance) + n;
+        if (c >= limit || c < 0) {
+            consumed.lazySet(instance, 0);
+            if (limit != Integer.MAX_VALUE) {
+                upstream.request(c < 0 ? Integer.MAX_VALUE : c);
+            }
+            return true;
+        }
+        consumed.lazySet(instance, c);
+        return false;
+    }
+}
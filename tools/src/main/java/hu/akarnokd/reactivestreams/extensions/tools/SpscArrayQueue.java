@@ -0,0 +1,219 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import java.util.concurrent.atomic.*;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+
+/**
+ * A bounded, single-producer single-consumer array-backed {@link FusedQueue}.
+ * <p>
+ * The capacity is rounded up to the next power of two so that the array offset
+ * is computed via a mask. The producer avoids reading the consumer's index by looking
+ * ahead in the array for an empty slot and both sides publish their progress via
+ * ordered stores ({@code lazySet}). The producer and the consumer index are kept on
+ * separate cache lines via padding fields in the class hierarchy.
+ * <p>
+ * Only one thread at a time may call {@link #offer(Object)} and only one thread at a time
+ * may call {@link #poll()}, {@link #isEmpty()} and {@link #clear()}, which makes it suitable
+ * as the queue behind an {@code ASYNC}-fused {@code FusedQueueSubscription}: {@code poll()}
+ * never throws and returns null if the queue is currently empty.
+ * <p>
+ * The bulk methods {@link #offerAll(Object[], int, int)} and {@link #drain(Object[], int)}
+ * publish the index only once per call.
+ *
+ * @param <T> the value type
+ */
+public final class SpscArrayQueue<T> extends SpscArrayQueuePad2 implements BulkFusedQueue<T>, SizedFusedQueue<T> {
+
+    /** The maximum distance the producer looks ahead for an empty slot. */
+    static final int MAX_LOOK_AHEAD_STEP = 4096;
+
+    final AtomicReferenceArray<T> array;
+
+    final int mask;
+
+    final int lookAheadStep;
+
+    /**
+     * Constructs a queue with the given capacity rounded up to the next power of two.
+     * @param capacity the minimum capacity, positive, at most 2^30
+     * @throws IllegalArgumentException if capacity is non-positive or larger than 2^30
+     */
+    public SpscArrayQueue(int capacity) {
+        QueueTools.verifyCapacity(capacity);
+        int c = QueueTools.roundToPowerOfTwo(capacity);
+        this.array = new AtomicReferenceArray<T>(c);
+        this.mask = c - 1;
+        this.lookAheadStep = Math.min(c / 4, MAX_LOOK_AHEAD_STEP);
+    }
+
+    @Override
+    public boolean offer(T element) {
+        if (element == null) {
+            throw new NullPointerException("element is null");
+        }
+        AtomicReferenceArray<T> a = array;
+        int m = mask;
+        long pi = producerIndex;
+        if (pi >= producerLookAhead) {
+            int step = lookAheadStep;
+            if (a.get((int)(pi + step) & m) == null) {
+                producerLookAhead = pi + step;
+            } else if (a.get((int)pi & m) != null) {
+                return false;
+            }
+        }
+        a.lazySet((int)pi & m, element);
+        PRODUCER_INDEX.lazySet(this, pi + 1);
+        return true;
+    }
+
+    @Override
+    public T poll() {
+        AtomicReferenceArray<T> a = array;
+        long ci = consumerIndex;
+        int offset = (int)ci & mask;
+        T v = a.get(offset);
+        if (v != null) {
+            a.lazySet(offset, null);
+            CONSUMER_INDEX.lazySet(this, ci + 1);
+        }
+        return v;
+    }
+
+    @Override
+    public int offerAll(T[] from, int offset, int length) {
+        AtomicReferenceArray<T> a = array;
+        int m = mask;
+        long pi = producerIndex;
+        long limit = producerLookAhead;
+        int i = 0;
+        try {
+            while (i != length) {
+                T element = from[offset + i];
+                if (element == null) {
+                    throw new NullPointerException("from[" + (offset + i) + "] is null");
+                }
+                long p = pi + i;
+                if (p >= limit) {
+                    int step = lookAheadStep;
+                    if (a.get((int)(p + step) & m) == null) {
+                        limit = p + step;
+                        producerLookAhead = limit;
+                    } else if (a.get((int)p & m) != null) {
+                        break;
+                    }
+                }
+                a.lazySet((int)p & m, element);
+                i++;
+            }
+        } finally {
+            if (i != 0) {
+                PRODUCER_INDEX.lazySet(this, pi + i);
+            }
+        }
+        return i;
+    }
+
+    @Override
+    public int drain(T[] into, int max) {
+        AtomicReferenceArray<T> a = array;
+        int m = mask;
+        long ci = consumerIndex;
+        int i = 0;
+        while (i != max) {
+            int offset = (int)(ci + i) & m;
+            T v = a.get(offset);
+            if (v == null) {
+                break;
+            }
+            into[i++] = v;
+            a.lazySet(offset, null);
+        }
+        if (i != 0) {
+            CONSUMER_INDEX.lazySet(this, ci + i);
+        }
+        return i;
+    }
+
+    @Override
+    public long estimatedSize() {
+        // the consumer may run ahead of the producer index briefly as the element is stored before the index
+        long ci = consumerIndex;
+        long size = producerIndex - ci;
+        if (size < 0L) {
+            return 0L;
+        }
+        return Math.min(size, mask + 1L);
+    }
+
+    @Override
+    public long capacity() {
+        return mask + 1L;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return producerIndex == consumerIndex;
+    }
+
+    @Override
+    public void clear() {
+        while (poll() != null) {
+            // the poll itself clears the slots
+        }
+    }
+}
+
+/** Padding between the object header and the producer index. */
+abstract class SpscArrayQueuePad0 {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p08, p09, p0A, p0B, p0C, p0D, p0E, p0F;
+}
+
+/** Holds the producer-side fields. */
+abstract class SpscArrayQueueProducerFields extends SpscArrayQueuePad0 {
+
+    volatile long producerIndex;
+    static final AtomicLongFieldUpdater<SpscArrayQueueProducerFields> PRODUCER_INDEX =
+            AtomicLongFieldUpdater.newUpdater(SpscArrayQueueProducerFields.class, "producerIndex");
+
+    /** The index, exclusive, up to which the producer can offer without checking the array. */
+    long producerLookAhead;
+}
+
+/** Padding between the producer and the consumer fields. */
+abstract class SpscArrayQueuePad1 extends SpscArrayQueueProducerFields {
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+    long p18, p19, p1A, p1B, p1C, p1D, p1E, p1F;
+}
+
+/** Holds the consumer-side fields. */
+abstract class SpscArrayQueueConsumerFields extends SpscArrayQueuePad1 {
+
+    volatile long consumerIndex;
+    static final AtomicLongFieldUpdater<SpscArrayQueueConsumerFields> CONSUMER_INDEX =
+            AtomicLongFieldUpdater.newUpdater(SpscArrayQueueConsumerFields.class, "consumerIndex");
+}
+
+/** Padding between the consumer fields and the read-only fields of the queue. */
+abstract class SpscArrayQueuePad2 extends SpscArrayQueueConsumerFields {
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+    long p28, p29, p2A, p2B, p2C, p2D, p2E, p2F;
+}
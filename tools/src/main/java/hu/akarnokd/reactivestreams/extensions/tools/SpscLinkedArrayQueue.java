@@ -0,0 +1,209 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import hu.akarnokd.reactivestreams.extensions.*;
+
+/**
+ * An unbounded, single-producer single-consumer {@link FusedQueue} that stores the
+ * elements in fixed-size array segments linked together.
+ * <p>
+ * When the current segment fills up, the producer allocates and links a new segment;
+ * the elements already in the queue are never copied. Once the consumer moves past a
+ * segment, it drops the reference to it, thus the memory footprint shrinks back
+ * to a single segment after a backlog has been drained. The last slot of each segment
+ * holds the link to the next segment.
+ * <p>
+ * Only one thread at a time may call {@link #offer(Object)} and only one thread at a time
+ * may call {@link #poll()}, {@link #isEmpty()} and {@link #clear()}. {@code poll()} never throws
+ * and returns null if the queue is currently empty. {@code clear()} skips over complete
+ * segments and only has to clear the contents of the last one.
+ *
+ * @param <T> the value type
+ */
+public final class SpscLinkedArrayQueue<T> extends SpscLinkedArrayQueuePad2 implements BulkFusedQueue<T> {
+
+    final int chunkSize;
+
+    /**
+     * Constructs an empty queue with the given segment size.
+     * @param chunkSize the number of elements per segment, positive
+     * @throws IllegalArgumentException if chunkSize is non-positive
+     */
+    public SpscLinkedArrayQueue(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize > 0 required but it was " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        AtomicReferenceArray<Object> a = new AtomicReferenceArray<Object>(chunkSize + 1);
+        this.producerArray = a;
+        this.consumerArray = a;
+    }
+
+    @Override
+    public boolean offer(T element) {
+        if (element == null) {
+            throw new NullPointerException("element is null");
+        }
+        AtomicReferenceArray<Object> a = producerArray;
+        int po = producerOffset;
+        int n = chunkSize;
+        if (po == n) {
+            AtomicReferenceArray<Object> b = new AtomicReferenceArray<Object>(n + 1);
+            b.lazySet(0, element);
+            producerArray = b;
+            producerOffset = 1;
+            // publishes the new segment along with its first element
+            a.lazySet(n, b);
+        } else {
+            a.lazySet(po, element);
+            producerOffset = po + 1;
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T poll() {
+        AtomicReferenceArray<Object> a = consumerArray;
+        int co = consumerOffset;
+        int n = chunkSize;
+        if (co == n) {
+            Object next = a.get(n);
+            if (next == null) {
+                return null;
+            }
+            // unlink so that a dead segment doesn't keep the live ones reachable
+            a.lazySet(n, null);
+            a = (AtomicReferenceArray<Object>)next;
+            consumerArray = a;
+            co = 0;
+            consumerOffset = 0;
+        }
+        Object v = a.get(co);
+        if (v != null) {
+            a.lazySet(co, null);
+            consumerOffset = co + 1;
+        }
+        return (T)v;
+    }
+
+    @Override
+    public int offerAll(T[] from, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            offer(from[offset + i]);
+        }
+        return length;
+    }
+
+    @Override
+    public int drain(T[] into, int max) {
+        int i = 0;
+        while (i != max) {
+            T v = poll();
+            if (v == null) {
+                break;
+            }
+            into[i++] = v;
+        }
+        return i;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean isEmpty() {
+        AtomicReferenceArray<Object> a = consumerArray;
+        int co = consumerOffset;
+        int n = chunkSize;
+        if (co == n) {
+            Object next = a.get(n);
+            if (next == null) {
+                return true;
+            }
+            a = (AtomicReferenceArray<Object>)next;
+            co = 0;
+        }
+        return a.get(co) == null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void clear() {
+        AtomicReferenceArray<Object> a = consumerArray;
+        int co = consumerOffset;
+        int n = chunkSize;
+
+        // the producer no longer touches segments that have been linked to a next one
+        for (;;) {
+            Object next = a.get(n);
+            if (next == null) {
+                break;
+            }
+            a.lazySet(n, null);
+            a = (AtomicReferenceArray<Object>)next;
+            co = 0;
+        }
+
+        while (co != n && a.get(co) != null) {
+            a.lazySet(co, null);
+            co++;
+        }
+
+        consumerArray = a;
+        consumerOffset = co;
+    }
+}
+
+/** Padding between the object header and the producer fields. */
+abstract class SpscLinkedArrayQueuePad0 {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p08, p09, p0A, p0B, p0C, p0D, p0E, p0F;
+}
+
+/** Holds the producer-side fields. */
+abstract class SpscLinkedArrayQueueProducerFields extends SpscLinkedArrayQueuePad0 {
+
+    /** The segment the producer currently writes into. */
+    AtomicReferenceArray<Object> producerArray;
+
+    /** The next slot to write in the current producer segment. */
+    int producerOffset;
+}
+
+/** Padding between the producer and the consumer fields. */
+abstract class SpscLinkedArrayQueuePad1 extends SpscLinkedArrayQueueProducerFields {
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+    long p18, p19, p1A, p1B, p1C, p1D, p1E, p1F;
+}
+
+/** Holds the consumer-side fields. */
+abstract class SpscLinkedArrayQueueConsumerFields extends SpscLinkedArrayQueuePad1 {
+
+    /** The segment the consumer currently reads from. */
+    AtomicReferenceArray<Object> consumerArray;
+
+    /** The next slot to read in the current consumer segment. */
+    int consumerOffset;
+}
+
+/** Padding between the consumer fields and the read-only fields of the queue. */
+abstract class SpscLinkedArrayQueuePad2 extends SpscLinkedArrayQueueConsumerFields {
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+    long p28, p29, p2A, p2B, p2C, p2D, p2E, p2F;
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import java.util.concurrent.atomic.*;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.RelaxedSubscriber;
+
+/**
+ * A strict {@link Subscriber} wrapper, similar to {@link StrictAtomicSubscriber}, that
+ * keeps all of its state in a single object: the inherited {@link AtomicLong} value
+ * packs the once-subscribed flag (sign bit) together with the work-in-progress counter
+ * used for serializing the signals, the rest are volatile fields with static field updaters.
+ * <p>
+ * The {@link AtomicLong} methods are not meant to be called from outside.
+ *
+ * @param <T> the value type
+ */
+public class StrictCompactSubscriber<T> extends AtomicLong implements RelaxedSubscriber<T>, Subscription {
+
+    private static final long serialVersionUID = -5298410585474946813L;
+
+    /** Indicates {@code onSubscribe} has been called already. */
+    static final long ONCE = Long.MIN_VALUE;
+
+    /** The mask for the work-in-progress counter part of the state. */
+    static final long WIP_MASK = Long.MAX_VALUE;
+
+    protected final Subscriber<? super T> actual;
+
+    protected volatile Subscription upstream;
+    @SuppressWarnings("rawtypes")
+    protected static final AtomicReferenceFieldUpdater<StrictCompactSubscriber, Subscription> UPSTREAM =
+            AtomicReferenceFieldUpdater.newUpdater(StrictCompactSubscriber.class, Subscription.class, "upstream");
+
+    protected volatile long requested;
+    @SuppressWarnings("rawtypes")
+    protected static final AtomicLongFieldUpdater<StrictCompactSubscriber> REQUESTED =
+            AtomicLongFieldUpdater.newUpdater(StrictCompactSubscriber.class, "requested");
+
+    protected volatile Throwable error;
+    @SuppressWarnings("rawtypes")
+    static final AtomicReferenceFieldUpdater<StrictCompactSubscriber, Throwable> ERROR =
+            AtomicReferenceFieldUpdater.newUpdater(StrictCompactSubscriber.class, Throwable.class, "error");
+
+    public StrictCompactSubscriber(Subscriber<? super T> actual) {
+        this.actual = actual;
+    }
+
+    @Override
+    public void onNext(T t) {
+        for (;;) {
+            long s = get();
+            if ((s & WIP_MASK) != 0L) {
+                return;
+            }
+            if (compareAndSet(s, s + 1)) {
+                break;
+            }
+        }
+
+        actual.onNext(t);
+
+        if ((decrementAndGet() & WIP_MASK) != 0L) {
+            Throwable ex = error;
+            if (ex == SubscriptionTools.TERMINATED) {
+                actual.onComplete();
+            } else {
+                actual.onError(ex);
+            }
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        SubscriptionTools.clear(this, UPSTREAM);
+        if (ERROR.compareAndSet(this, null, t)) {
+            if ((getAndIncrement() & WIP_MASK) == 0L) {
+                actual.onError(t);
+            }
+        } else {
+            undeliverableException(t);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        SubscriptionTools.clear(this, UPSTREAM);
+        if (ERROR.compareAndSet(this, null, SubscriptionTools.TERMINATED)) {
+            if ((getAndIncrement() & WIP_MASK) == 0L) {
+                actual.onComplete();
+            }
+        }
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0L) {
+            onError(new IllegalArgumentException("§3.9 violated: positive request amount required but it was " + n));
+        } else {
+            SubscriptionTools.deferredRequest(this, UPSTREAM, REQUESTED, n);
+        }
+    }
+
+    @Override
+    public void cancel() {
+        SubscriptionTools.cancel(this, UPSTREAM);
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (s == null) {
+            throw new NullPointerException("s is null");
+        }
+        for (;;) {
+            long state = get();
+            if ((state & ONCE) != 0L) {
+                s.cancel();
+                if (!SubscriptionTools.isCancelled(upstream)) {
+                    cancel();
+                    onError(new IllegalStateException("Subscription already set!"));
+                }
+                return;
+            }
+            if (compareAndSet(state, state | ONCE)) {
+                break;
+            }
+        }
+
+        actual.onSubscribe(this);
+
+        SubscriptionTools.deferredSetOnce(this, UPSTREAM, REQUESTED, s);
+    }
+
+    protected void undeliverableException(Throwable error) {
+        // default is no-op
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> RelaxedSubscriber<T> wrap(Subscriber<? super T> subscriber) {
+        if (subscriber instanceof RelaxedSubscriber) {
+            return (RelaxedSubscriber<T>)subscriber;
+        }
+        return new StrictCompactSubscriber<T>(subscriber);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import java.util.concurrent.atomic.*;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.RelaxedSubscriber;
+
+/**
+ * A strict {@link Subscriber} wrapper, similar to {@link StrictVolatileSubscriber}, that keeps
+ * the fields touched by the requesting (downstream) side and the fields touched by the
+ * emitting (upstream) side on separate cache lines via padding fields in the class hierarchy.
+ * <p>
+ * Use it when {@code request()} and {@code onNext()} are expected to run on different threads;
+ * otherwise, the extra footprint of the padding doesn't pay off.
+ *
+ * @param <T> the value type
+ */
+public class StrictPaddedSubscriber<T> extends StrictPaddedSubscriberPad2 implements RelaxedSubscriber<T>, Subscription {
+
+    protected final Subscriber<? super T> actual;
+
+    public StrictPaddedSubscriber(Subscriber<? super T> actual) {
+        this.actual = actual;
+    }
+
+    @Override
+    public void onNext(T t) {
+        SubscriptionTools.serializedOnNext(actual, this, WIP, ERROR, t);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        SubscriptionTools.clear(this, UPSTREAM);
+        if (!SubscriptionTools.serializedOnError(actual, this, WIP, ERROR, t)) {
+            undeliverableException(t);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        SubscriptionTools.clear(this, UPSTREAM);
+        SubscriptionTools.serializedOnComplete(actual, this, WIP, ERROR);
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0L) {
+            onError(new IllegalArgumentException("§3.9 violated: positive request amount required but it was " + n));
+        } else {
+            SubscriptionTools.deferredRequest(this, UPSTREAM, REQUESTED, n);
+        }
+    }
+
+    @Override
+    public void cancel() {
+        SubscriptionTools.cancel(this, UPSTREAM);
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (s == null) {
+            throw new NullPointerException("s is null");
+        }
+        if (ONCE.compareAndSet(this, 0, 1)) {
+
+            actual.onSubscribe(this);
+
+            SubscriptionTools.deferredSetOnce(this, UPSTREAM, REQUESTED, s);
+        } else {
+            s.cancel();
+            if (!SubscriptionTools.isCancelled(upstream)) {
+                cancel();
+                onError(new IllegalStateException("Subscription already set!"));
+            }
+        }
+    }
+
+    protected void undeliverableException(Throwable error) {
+        // default is no-op
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> RelaxedSubscriber<T> wrap(Subscriber<? super T> subscriber) {
+        if (subscriber instanceof RelaxedSubscriber) {
+            return (RelaxedSubscriber<T>)subscriber;
+        }
+        return new StrictPaddedSubscriber<T>(subscriber);
+    }
+}
+
+/**
+ * Padding between the object header and the requesting-side fields.
+ * <p>
+ * The int fields of the padding classes occupy the alignment gaps that newer JVMs would
+ * otherwise fill with fields of the subclasses.
+ */
+abstract class StrictPaddedSubscriberPad0 {
+    int p0G;
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p08, p09, p0A, p0B, p0C, p0D, p0E, p0F;
+}
+
+/** Holds the fields accessed by {@code request()} and {@code onSubscribe()}. */
+abstract class StrictPaddedSubscriberRequestFields extends StrictPaddedSubscriberPad0 {
+
+    volatile Subscription upstream;
+    static final AtomicReferenceFieldUpdater<StrictPaddedSubscriberRequestFields, Subscription> UPSTREAM =
+            AtomicReferenceFieldUpdater.newUpdater(StrictPaddedSubscriberRequestFields.class, Subscription.class, "upstream");
+
+    volatile long requested;
+    static final AtomicLongFieldUpdater<StrictPaddedSubscriberRequestFields> REQUESTED =
+            AtomicLongFieldUpdater.newUpdater(StrictPaddedSubscriberRequestFields.class, "requested");
+
+    volatile int once;
+    static final AtomicIntegerFieldUpdater<StrictPaddedSubscriberRequestFields> ONCE =
+            AtomicIntegerFieldUpdater.newUpdater(StrictPaddedSubscriberRequestFields.class, "once");
+}
+
+/** Padding between the requesting-side and the emitting-side fields. */
+abstract class StrictPaddedSubscriberPad1 extends StrictPaddedSubscriberRequestFields {
+    int p1G;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+    long p18, p19, p1A, p1B, p1C, p1D, p1E, p1F;
+}
+
+/** Holds the fields accessed by the serialized {@code onXXX} signals. */
+abstract class StrictPaddedSubscriberEmitterFields extends StrictPaddedSubscriberPad1 {
+
+    volatile long wip;
+    static final AtomicLongFieldUpdater<StrictPaddedSubscriberEmitterFields> WIP =
+            AtomicLongFieldUpdater.newUpdater(StrictPaddedSubscriberEmitterFields.class, "wip");
+
+    volatile Throwable error;
+    static final AtomicReferenceFieldUpdater<StrictPaddedSubscriberEmitterFields, Throwable> ERROR =
+            AtomicReferenceFieldUpdater.newUpdater(StrictPaddedSubscriberEmitterFields.class, Throwable.class, "error");
+}
+
+/** Padding between the emitting-side fields and the read-only fields of the subscriber. */
+abstract class StrictPaddedSubscriberPad2 extends StrictPaddedSubscriberEmitterFields {
+    int p2G;
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+    long p28, p29, p2A, p2B, p2C, p2D, p2E, p2F;
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import java.util.concurrent.atomic.*;
+
+import org.reactivestreams.Subscription;
+
+/**
+ * Relays requests to the current Subscription which can be switched to a new one
+ * at any time, keeping the outstanding requested amount across the switches.
+ * <p>
+ * The emitting side should report the number of items received from the
+ * current Subscription via {@link #produced(long)} before switching to the next one;
+ * the new Subscription is then requested the remaining amount only.
+ * <p>
+ * The methods can be called from any thread. Replaced Subscriptions are not cancelled
+ * as they are expected to have completed.
+ */
+public class SubscriptionArbiter implements Subscription {
+
+    /** The current Subscription, accessed while holding wip. */
+    Subscription current;
+
+    /** The outstanding requested amount, accessed while holding wip. */
+    long requested;
+
+    volatile boolean unbounded;
+
+    volatile boolean cancelled;
+
+    volatile int wip;
+    static final AtomicIntegerFieldUpdater<SubscriptionArbiter> WIP =
+            AtomicIntegerFieldUpdater.newUpdater(SubscriptionArbiter.class, "wip");
+
+    volatile Subscription missedSubscription;
+    static final AtomicReferenceFieldUpdater<SubscriptionArbiter, Subscription> MISSED_SUBSCRIPTION =
+            AtomicReferenceFieldUpdater.newUpdater(SubscriptionArbiter.class, Subscription.class, "missedSubscription");
+
+    volatile long missedRequested;
+    static final AtomicLongFieldUpdater<SubscriptionArbiter> MISSED_REQUESTED =
+            AtomicLongFieldUpdater.newUpdater(SubscriptionArbiter.class, "missedRequested");
+
+    volatile long missedProduced;
+    static final AtomicLongFieldUpdater<SubscriptionArbiter> MISSED_PRODUCED =
+            AtomicLongFieldUpdater.newUpdater(SubscriptionArbiter.class, "missedProduced");
+
+    /**
+     * Switches to the given Subscription and requests the outstanding amount from it
+     * or cancels it if the arbiter has been cancelled.
+     * @param subscription the new Subscription, not null
+     * @throws NullPointerException if {@code subscription} is null
+     */
+    public final void setSubscription(Subscription subscription) {
+        if (subscription == null) {
+            throw new NullPointerException("subscription is null");
+        }
+        if (cancelled) {
+            subscription.cancel();
+            return;
+        }
+        if (wip == 0 && WIP.compareAndSet(this, 0, 1)) {
+            current = subscription;
+            long r = requested;
+            if (WIP.decrementAndGet(this) != 0) {
+                drainLoop();
+            }
+            if (r != 0L) {
+                subscription.request(r);
+            }
+            return;
+        }
+        MISSED_SUBSCRIPTION.set(this, subscription);
+        drain();
+    }
+
+    /**
+     * Adds the amount to the outstanding requested amount and requests it from
+     * the current Subscription, if any.
+     * @param n the amount to request, positive (not validated)
+     */
+    @Override
+    public final void request(long n) {
+        if (unbounded) {
+            return;
+        }
+        if (wip == 0 && WIP.compareAndSet(this, 0, 1)) {
+            long r = requested;
+            if (r != Long.MAX_VALUE) {
+                r = SubscriptionTools.addAndCap(r, n);
+                requested = r;
+                if (r == Long.MAX_VALUE) {
+                    unbounded = true;
+                }
+            }
+            Subscription s = current;
+            if (WIP.decrementAndGet(this) != 0) {
+                drainLoop();
+            }
+            if (s != null) {
+                s.request(n);
+            }
+            return;
+        }
+        SubscriptionTools.getAndAddRequested(this, MISSED_REQUESTED, n);
+        drain();
+    }
+
+    /**
+     * Subtracts the number of items received from the current Subscription from
+     * the outstanding requested amount, which doesn't go below zero.
+     * @param n the number of items produced, positive (not validated)
+     */
+    public final void produced(long n) {
+        if (unbounded) {
+            return;
+        }
+        if (wip == 0 && WIP.compareAndSet(this, 0, 1)) {
+            long r = requested;
+            if (r != Long.MAX_VALUE) {
+                requested = Math.max(0L, r - n);
+            }
+            if (WIP.decrementAndGet(this) == 0) {
+                return;
+            }
+            drainLoop();
+            return;
+        }
+        SubscriptionTools.getAndAddRequested(this, MISSED_PRODUCED, n);
+        drain();
+    }
+
+    /**
+     * Cancels the current Subscription and any subsequent Subscription set.
+     */
+    @Override
+    public void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            drain();
+        }
+    }
+
+    /**
+     * Returns true if the arbiter has been cancelled.
+     * @return true if the arbiter has been cancelled
+     */
+    public final boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns true if an unbounded amount has been requested, in which case
+     * the produced amounts are no longer tracked.
+     * @return true if an unbounded amount has been requested
+     */
+    public final boolean isUnbounded() {
+        return unbounded;
+    }
+
+    final void drain() {
+        if (WIP.getAndIncrement(this) == 0) {
+            drainLoop();
+        }
+    }
+
+    final void drainLoop() {
+        int missed = 1;
+        long requestAmount = 0L;
+        Subscription requestTarget = null;
+
+        for (;;) {
+            Subscription ms = missedSubscription;
+            if (ms != null) {
+                ms = MISSED_SUBSCRIPTION.getAndSet(this, null);
+            }
+            long mr = missedRequested;
+            if (mr != 0L) {
+                mr = MISSED_REQUESTED.getAndSet(this, 0L);
+            }
+            long mp = missedProduced;
+            if (mp != 0L) {
+                mp = MISSED_PRODUCED.getAndSet(this, 0L);
+            }
+
+            Subscription s = current;
+
+            if (cancelled) {
+                if (s != null) {
+                    s.cancel();
+                    current = null;
+                }
+                if (ms != null) {
+                    ms.cancel();
+                }
+                requestTarget = null;
+            } else {
+                long r = requested;
+                if (r != Long.MAX_VALUE) {
+                    r = SubscriptionTools.addAndCap(r, mr);
+                    if (r != Long.MAX_VALUE) {
+                        r = Math.max(0L, r - mp);
+                    } else {
+                        unbounded = true;
+                    }
+                    requested = r;
+                }
+
+                if (ms != null) {
+                    // the outstanding amount already includes what was meant for the previous one
+                    current = ms;
+                    requestAmount = r;
+                    requestTarget = r != 0L ? ms : null;
+                } else if (s != null && mr != 0L) {
+                    requestAmount = SubscriptionTools.addAndCap(requestAmount, mr);
+                    requestTarget = s;
+                }
+            }
+
+            missed = WIP.addAndGet(this, -missed);
+            if (missed == 0) {
+                if (requestTarget != null) {
+                    requestTarget.request(requestAmount);
+                }
+                return;
+            }
+        }
+    }
+}
@@ -20,11 +20,12 @@ import java.util.concurrent.atomic.*;
 
 import org.reactivestreams.*;
 
-import hu.akarnokd.reactivestreams.extensions.ConditionalSubscriber;
+import hu.akarnokd.reactivestreams.extensions.*;
 
 /**
  * Utility class supporting atomic operations with {@link Subscription}s,
- * {@link Throwable}s and {@link Subscriber}s.
+ * {@link Throwable}s and {@link Subscriber}s and draining {@link FusedQueue}s
+ * towards {@link Subscriber}s.
  */
 public final class SubscriptionTools {
 
@@ -471,6 +472,220 @@ public final class SubscriptionTools {
         return false;
     }
 
+    /**
+     * Atomically stores the completion indicator in the error AtomicReference if it is empty
+     * so that a drain loop can pick it up.
+     * @param error the error AtomicReference holding the error or terminal signal
+     * @return true if successful, false if there was an error or terminal indicator already
+     * @see #drainQueue(FusedQueue, Subscriber, AtomicLong, AtomicLong, AtomicReference, AtomicReference)
+     */
+    public static boolean setComplete(AtomicReference<Throwable> error) {
+        return error.compareAndSet(null, TERMINATED);
+    }
+
+    /**
+     * Atomically stores the Throwable in the error AtomicReference if it is empty
+     * so that a drain loop can pick it up.
+     * @param error the error AtomicReference holding the error or terminal signal
+     * @param t the Throwable to store, not null
+     * @return true if successful, false if there was an error or terminal indicator already
+     * @see #drainQueue(FusedQueue, Subscriber, AtomicLong, AtomicLong, AtomicReference, AtomicReference)
+     */
+    public static boolean setError(AtomicReference<Throwable> error, Throwable t) {
+        return error.compareAndSet(null, t);
+    }
+
+    /**
+     * Drains a queue, filled in by an upstream in a non-fused ({@code NONE}) or
+     * {@code ASYNC}-fused manner, towards the subscriber.
+     * <p>
+     * Should be called by the thread that incremented the wip counter from zero:
+     * <pre><code>
+     * if (wip.getAndIncrement() == 0) {
+     *     SubscriptionTools.drainQueue(queue, actual, requested, wip, error, upstream);
+     * }
+     * </code></pre>
+     * The loop emits up to the requested amount, using {@code tryOnNext} if the subscriber
+     * is a {@link ConditionalSubscriber}, and subtracts the emitted amount from requested once
+     * per round. The upstream termination should be indicated via {@link #setComplete(AtomicReference)} or
+     * {@link #setError(AtomicReference, Throwable)}. Completion is emitted once the queue becomes empty,
+     * errors are emitted immediately and the remaining items are cleared. Cancellation is indicated via
+     * {@link #cancel(AtomicReference)} on the upstream field, upon which the queue is cleared.
+     * If {@code poll()} throws, the upstream is cancelled and the error is emitted.
+     * @param <T> the value type
+     * @param queue the queue to drain
+     * @param subscriber the target subscriber
+     * @param requested the requested amount by the subscriber
+     * @param wip the work-in-progress counter serializing the drain loop
+     * @param error the error AtomicReference holding the error or terminal signal of the upstream
+     * @param upstream the upstream Subscription field indicating cancellation
+     * @see #drainSyncQueue(FusedQueue, Subscriber, AtomicLong, AtomicLong, AtomicReference)
+     */
+    public static <T> void drainQueue(FusedQueue<T> queue, Subscriber<? super T> subscriber, AtomicLong requested, AtomicLong wip,
+            AtomicReference<Throwable> error, AtomicReference<Subscription> upstream) {
+        @SuppressWarnings("unchecked")
+        ConditionalSubscriber<? super T> conditional = subscriber instanceof ConditionalSubscriber
+                ? (ConditionalSubscriber<? super T>)subscriber : null;
+        long missed = 1L;
+
+        for (;;) {
+            long r = requested.get();
+            long e = 0L;
+
+            while (e != r) {
+                if (upstream.get() == CancelledSubscription.INSTANCE) {
+                    queue.clear();
+                    return;
+                }
+
+                Throwable ex = error.get();
+                if (ex != null && ex != TERMINATED) {
+                    queue.clear();
+                    subscriber.onError(ex);
+                    return;
+                }
+
+                T v;
+                try {
+                    v = queue.poll();
+                } catch (Throwable exc) {
+                    cancel(upstream);
+                    queue.clear();
+                    subscriber.onError(exc);
+                    return;
+                }
+
+                if (v == null) {
+                    if (ex == TERMINATED) {
+                        subscriber.onComplete();
+                        return;
+                    }
+                    break;
+                }
+
+                if (conditional != null) {
+                    if (conditional.tryOnNext(v)) {
+                        e++;
+                    }
+                } else {
+                    subscriber.onNext(v);
+                    e++;
+                }
+            }
+
+            if (e == r) {
+                if (upstream.get() == CancelledSubscription.INSTANCE) {
+                    queue.clear();
+                    return;
+                }
+
+                Throwable ex = error.get();
+                if (ex != null) {
+                    if (ex != TERMINATED) {
+                        queue.clear();
+                        subscriber.onError(ex);
+                        return;
+                    }
+                    if (queue.isEmpty()) {
+                        subscriber.onComplete();
+                        return;
+                    }
+                }
+            }
+
+            if (e != 0L) {
+                subtractAndGetRequested(requested, e);
+            }
+
+            missed = wip.addAndGet(-missed);
+            if (missed == 0L) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Drains a {@code SYNC}-fused upstream queue towards the subscriber.
+     * <p>
+     * Should be called by the thread that incremented the wip counter from zero, typically from
+     * the {@code request()} method. The upstream is considered complete when {@code poll()} returns
+     * null or {@code isEmpty()} returns true and failed if {@code poll()} throws. The loop emits up to
+     * the requested amount, using {@code tryOnNext} if the subscriber is a {@link ConditionalSubscriber},
+     * and subtracts the emitted amount from requested once per round. Cancellation is indicated via
+     * {@link #cancel(AtomicReference)} on the upstream field, upon which the queue is cleared.
+     * @param <T> the value type
+     * @param queue the queue to drain, usually the upstream {@code FusedQueueSubscription}
+     * @param subscriber the target subscriber
+     * @param requested the requested amount by the subscriber
+     * @param wip the work-in-progress counter serializing the drain loop
+     * @param upstream the upstream Subscription field indicating cancellation
+     * @see #drainQueue(FusedQueue, Subscriber, AtomicLong, AtomicLong, AtomicReference, AtomicReference)
+     */
+    public static <T> void drainSyncQueue(FusedQueue<T> queue, Subscriber<? super T> subscriber, AtomicLong requested, AtomicLong wip,
+            AtomicReference<Subscription> upstream) {
+        @SuppressWarnings("unchecked")
+        ConditionalSubscriber<? super T> conditional = subscriber instanceof ConditionalSubscriber
+                ? (ConditionalSubscriber<? super T>)subscriber : null;
+        long missed = 1L;
+
+        for (;;) {
+            long r = requested.get();
+            long e = 0L;
+
+            while (e != r) {
+                if (upstream.get() == CancelledSubscription.INSTANCE) {
+                    queue.clear();
+                    return;
+                }
+
+                T v;
+                try {
+                    v = queue.poll();
+                } catch (Throwable ex) {
+                    cancel(upstream);
+                    queue.clear();
+                    subscriber.onError(ex);
+                    return;
+                }
+
+                if (v == null) {
+                    subscriber.onComplete();
+                    return;
+                }
+
+                if (conditional != null) {
+                    if (conditional.tryOnNext(v)) {
+                        e++;
+                    }
+                } else {
+                    subscriber.onNext(v);
+                    e++;
+                }
+            }
+
+            if (e == r) {
+                if (upstream.get() == CancelledSubscription.INSTANCE) {
+                    queue.clear();
+                    return;
+                }
+
+                if (queue.isEmpty()) {
+                    subscriber.onComplete();
+                    return;
+                }
+            }
+
+            if (e != 0L) {
+                subtractAndGetRequested(requested, e);
+            }
+
+            missed = wip.addAndGet(-missed);
+            if (missed == 0L) {
+                break;
+            }
+        }
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Field updater versions
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -665,4 +880,160 @@ public final class SubscriptionTools {
         }
         return false;
     }
-}
\ No newline at end of file
+
+    public static <U> boolean setComplete(U instance, AtomicReferenceFieldUpdater<U, Throwable> error) {
+        return error.compareAndSet(instance, null, TERMINATED);
+    }
+
+    public static <U> boolean setError(U instance, AtomicReferenceFieldUpdater<U, Throwable> error, Throwable t) {
+        return error.compareAndSet(instance, null, t);
+    }
+
+    public static <T, U> void drainQueue(FusedQueue<T> queue, Subscriber<? super T> subscriber, U instance, AtomicLongFieldUpdater<U> requested,
+            AtomicLongFieldUpdater<U> wip, AtomicReferenceFieldUpdater<U, Throwable> error, AtomicReferenceFieldUpdater<U, Subscription> upstream) {
+        @SuppressWarnings("unchecked")
+        ConditionalSubscriber<? super T> conditional = subscriber instanceof ConditionalSubscriber
+                ? (ConditionalSubscriber<? super T>)subscriber : null;
+        long missed = 1L;
+
+        for (;;) {
+            long r = requested.get(instance);
+            long e = 0L;
+
+            while (e != r) {
+                if (upstream.get(instance) == CancelledSubscription.INSTANCE) {
+                    queue.clear();
+                    return;
+                }
+
+                Throwable ex = error.get(instance);
+                if (ex != null && ex != TERMINATED) {
+                    queue.clear();
+                    subscriber.onError(ex);
+                    return;
+                }
+
+                T v;
+                try {
+                    v = queue.poll();
+                } catch (Throwable exc) {
+                    cancel(instance, upstream);
+                    queue.clear();
+                    subscriber.onError(exc);
+                    return;
+                }
+
+                if (v == null) {
+                    if (ex == TERMINATED) {
+                        subscriber.onComplete();
+                        return;
+                    }
+                    break;
+                }
+
+                if (conditional != null) {
+                    if (conditional.tryOnNext(v)) {
+                        e++;
+                    }
+                } else {
+                    subscriber.onNext(v);
+                    e++;
+                }
+            }
+
+            if (e == r) {
+                if (upstream.get(instance) == CancelledSubscription.INSTANCE) {
+                    queue.clear();
+                    return;
+                }
+
+                Throwable ex = error.get(instance);
+                if (ex != null) {
+                    if (ex != TERMINATED) {
+                        queue.clear();
+                        subscriber.onError(ex);
+                        return;
+                    }
+                    if (queue.isEmpty()) {
+                        subscriber.onComplete();
+                        return;
+                    }
+                }
+            }
+
+            if (e != 0L) {
+                subtractAndGetRequested(instance, requested, e);
+            }
+
+            missed = wip.addAndGet(instance, -missed);
+            if (missed == 0L) {
+                break;
+            }
+        }
+    }
+
+    public static <T, U> void drainSyncQueue(FusedQueue<T> queue, Subscriber<? super T> subscriber, U instance, AtomicLongFieldUpdater<U> requested,
+            AtomicLongFieldUpdater<U> wip, AtomicReferenceFieldUpdater<U, Subscription> upstream) {
+        @SuppressWarnings("unchecked")
+        ConditionalSubscriber<? super T> conditional = subscriber instanceof ConditionalSubscriber
+                ? (ConditionalSubscriber<? super T>)subscriber : null;
+        long missed = 1L;
+
+        for (;;) {
+            long r = requested.get(instance);
+            long e = 0L;
+
+            while (e != r) {
+                if (upstream.get(instance) == CancelledSubscription.INSTANCE) {
+                    queue.clear();
+                    return;
+                }
+
+                T v;
+                try {
+                    v = queue.poll();
+                } catch (Throwable ex) {
+                    cancel(instance, upstream);
+                    queue.clear();
+                    subscriber.onError(ex);
+                    return;
+                }
+
+                if (v == null) {
+                    subscriber.onComplete();
+                    return;
+                }
+
+                if (conditional != null) {
+                    if (conditional.tryOnNext(v)) {
+                        e++;
+                    }
+                } else {
+                    subscriber.onNext(v);
+                    e++;
+                }
+            }
+
+            if (e == r) {
+                if (upstream.get(instance) == CancelledSubscription.INSTANCE) {
+                    queue.clear();
+                    return;
+                }
+
+                if (queue.isEmpty()) {
+                    subscriber.onComplete();
+                    return;
+                }
+            }
+
+            if (e != 0L) {
+                subtractAndGetRequested(instance, requested, e);
+            }
+
+            missed = wip.addAndGet(instance, -missed);
+            if (missed == 0L) {
+                break;
+            }
+        }
+    }
+}
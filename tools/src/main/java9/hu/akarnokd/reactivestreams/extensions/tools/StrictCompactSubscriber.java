@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import java.lang.invoke.*;
+import java.util.concurrent.atomic.*;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.RelaxedSubscriber;
+
+/**
+ * Java 9+ version of the compact strict subscriber using {@link VarHandle}s on the same
+ * fields and the acquire/release methods of the inherited {@link AtomicLong} state;
+ * the field updaters are kept for subclasses.
+ * <p>
+ * The {@link AtomicLong} methods are not meant to be called from outside.
+ *
+ * @param <T> the value type
+ */
+public class StrictCompactSubscriber<T> extends AtomicLong implements RelaxedSubscriber<T>, Subscription {
+
+    private static final long serialVersionUID = -5298410585474946813L;
+
+    /** Indicates {@code onSubscribe} has been called already. */
+    static final long ONCE = Long.MIN_VALUE;
+
+    /** The mask for the work-in-progress counter part of the state. */
+    static final long WIP_MASK = Long.MAX_VALUE;
+
+    protected final Subscriber<? super T> actual;
+
+    protected volatile Subscription upstream;
+    @SuppressWarnings("rawtypes")
+    protected static final AtomicReferenceFieldUpdater<StrictCompactSubscriber, Subscription> UPSTREAM =
+            AtomicReferenceFieldUpdater.newUpdater(StrictCompactSubscriber.class, Subscription.class, "upstream");
+
+    protected volatile long requested;
+    @SuppressWarnings("rawtypes")
+    protected static final AtomicLongFieldUpdater<StrictCompactSubscriber> REQUESTED =
+            AtomicLongFieldUpdater.newUpdater(StrictCompactSubscriber.class, "requested");
+
+    protected volatile Throwable error;
+    @SuppressWarnings("rawtypes")
+    static final AtomicReferenceFieldUpdater<StrictCompactSubscriber, Throwable> ERROR =
+            AtomicReferenceFieldUpdater.newUpdater(StrictCompactSubscriber.class, Throwable.class, "error");
+
+    static final VarHandle UPSTREAM_HANDLE;
+
+    static final VarHandle REQUESTED_HANDLE;
+
+    static final VarHandle ERROR_HANDLE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            UPSTREAM_HANDLE = lookup.findVarHandle(StrictCompactSubscriber.class, "upstream", Subscription.class);
+            REQUESTED_HANDLE = lookup.findVarHandle(StrictCompactSubscriber.class, "requested", long.class);
+            ERROR_HANDLE = lookup.findVarHandle(StrictCompactSubscriber.class, "error", Throwable.class);
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    public StrictCompactSubscriber(Subscriber<? super T> actual) {
+        this.actual = actual;
+    }
+
+    @Override
+    public void onNext(T t) {
+        for (;;) {
+            // a stale state only makes the CAS fail
+            long s = getOpaque();
+            if ((s & WIP_MASK) != 0L) {
+                return;
+            }
+            if (weakCompareAndSetAcquire(s, s + 1)) {
+                break;
+            }
+        }
+
+        actual.onNext(t);
+
+        if ((decrementAndGet() & WIP_MASK) != 0L) {
+            // the decrement observed the terminating increment so the error is visible
+            Throwable ex = (Throwable)ERROR_HANDLE.get(this);
+            if (ex == SubscriptionTools.TERMINATED) {
+                actual.onComplete();
+            } else {
+                actual.onError(ex);
+            }
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        SubscriptionHandles.clear(this, UPSTREAM_HANDLE);
+        if (ERROR_HANDLE.compareAndSet(this, (Throwable)null, t)) {
+            if ((getAndIncrement() & WIP_MASK) == 0L) {
+                actual.onError(t);
+            }
+        } else {
+            undeliverableException(t);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        SubscriptionHandles.clear(this, UPSTREAM_HANDLE);
+        if (ERROR_HANDLE.compareAndSet(this, (Throwable)null, (Throwable)SubscriptionTools.TERMINATED)) {
+            if ((getAndIncrement() & WIP_MASK) == 0L) {
+                actual.onComplete();
+            }
+        }
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0L) {
+            onError(new IllegalArgumentException("§3.9 violated: positive request amount required but it was " + n));
+        } else {
+            SubscriptionHandles.deferredRequest(this, UPSTREAM_HANDLE, REQUESTED_HANDLE, n);
+        }
+    }
+
+    @Override
+    public void cancel() {
+        SubscriptionHandles.cancel(this, UPSTREAM_HANDLE);
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (s == null) {
+            throw new NullPointerException("s is null");
+        }
+        for (;;) {
+            long state = getOpaque();
+            if ((state & ONCE) != 0L) {
+                s.cancel();
+                if (!SubscriptionHandles.isCancelled(this, UPSTREAM_HANDLE)) {
+                    cancel();
+                    onError(new IllegalStateException("Subscription already set!"));
+                }
+                return;
+            }
+            if (weakCompareAndSetAcquire(state, state | ONCE)) {
+                break;
+            }
+        }
+
+        actual.onSubscribe(this);
+
+        SubscriptionHandles.deferredSetOnce(this, UPSTREAM_HANDLE, REQUESTED_HANDLE, s);
+    }
+
+    protected void undeliverableException(Throwable error) {
+        // default is no-op
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> RelaxedSubscriber<T> wrap(Subscriber<? super T> subscriber) {
+        if (subscriber instanceof RelaxedSubscriber) {
+            return (RelaxedSubscriber<T>)subscriber;
+        }
+        return new StrictCompactSubscriber<T>(subscriber);
+    }
+}
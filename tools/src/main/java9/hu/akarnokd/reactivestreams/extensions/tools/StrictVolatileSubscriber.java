@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import java.lang.invoke.*;
+import java.util.concurrent.atomic.*;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.RelaxedSubscriber;
+
+/**
+ * Java 9+ version of the strict subscriber using {@link VarHandle}s on the same fields;
+ * the field updaters are kept for subclasses.
+ *
+ * @param <T> the value type
+ */
+public class StrictVolatileSubscriber<T> implements RelaxedSubscriber<T>, Subscription {
+
+    protected final Subscriber<? super T> actual;
+
+    protected volatile Subscription upstream;
+    @SuppressWarnings("rawtypes")
+    protected static final AtomicReferenceFieldUpdater<StrictVolatileSubscriber, Subscription> UPSTREAM =
+            AtomicReferenceFieldUpdater.newUpdater(StrictVolatileSubscriber.class, Subscription.class, "upstream");
+
+    protected volatile long requested;
+    @SuppressWarnings("rawtypes")
+    protected static final AtomicLongFieldUpdater<StrictVolatileSubscriber> REQUESTED =
+            AtomicLongFieldUpdater.newUpdater(StrictVolatileSubscriber.class, "requested");
+
+    protected volatile long wip;
+    @SuppressWarnings("rawtypes")
+    protected static final AtomicLongFieldUpdater<StrictVolatileSubscriber> WIP =
+            AtomicLongFieldUpdater.newUpdater(StrictVolatileSubscriber.class, "wip");
+
+    protected volatile Throwable error;
+    @SuppressWarnings("rawtypes")
+    static final AtomicReferenceFieldUpdater<StrictVolatileSubscriber, Throwable> ERROR =
+            AtomicReferenceFieldUpdater.newUpdater(StrictVolatileSubscriber.class, Throwable.class, "error");
+
+    protected volatile int once;
+    @SuppressWarnings("rawtypes")
+    protected static final AtomicIntegerFieldUpdater<StrictVolatileSubscriber> ONCE =
+            AtomicIntegerFieldUpdater.newUpdater(StrictVolatileSubscriber.class, "once");
+
+    static final VarHandle UPSTREAM_HANDLE;
+
+    static final VarHandle REQUESTED_HANDLE;
+
+    static final VarHandle WIP_HANDLE;
+
+    static final VarHandle ERROR_HANDLE;
+
+    static final VarHandle ONCE_HANDLE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            UPSTREAM_HANDLE = lookup.findVarHandle(StrictVolatileSubscriber.class, "upstream", Subscription.class);
+            REQUESTED_HANDLE = lookup.findVarHandle(StrictVolatileSubscriber.class, "requested", long.class);
+            WIP_HANDLE = lookup.findVarHandle(StrictVolatileSubscriber.class, "wip", long.class);
+            ERROR_HANDLE = lookup.findVarHandle(StrictVolatileSubscriber.class, "error", Throwable.class);
+            ONCE_HANDLE = lookup.findVarHandle(StrictVolatileSubscriber.class, "once", int.class);
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    public StrictVolatileSubscriber(Subscriber<? super T> actual) {
+        this.actual = actual;
+    }
+
+    @Override
+    public void onNext(T t) {
+        SubscriptionHandles.serializedOnNext(actual, this, WIP_HANDLE, ERROR_HANDLE, t);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        SubscriptionHandles.clear(this, UPSTREAM_HANDLE);
+        if (!SubscriptionHandles.serializedOnError(actual, this, WIP_HANDLE, ERROR_HANDLE, t)) {
+            undeliverableException(t);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        SubscriptionHandles.clear(this, UPSTREAM_HANDLE);
+        SubscriptionHandles.serializedOnComplete(actual, this, WIP_HANDLE, ERROR_HANDLE);
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0L) {
+            onError(new IllegalArgumentException("§3.9 violated: positive request amount required but it was " + n));
+        } else {
+            SubscriptionHandles.deferredRequest(this, UPSTREAM_HANDLE, REQUESTED_HANDLE, n);
+        }
+    }
+
+    @Override
+    public void cancel() {
+        SubscriptionHandles.cancel(this, UPSTREAM_HANDLE);
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (s == null) {
+            throw new NullPointerException("s is null");
+        }
+        // only one thread may win, the upstream handoff does its own ordering
+        if ((int)ONCE_HANDLE.compareAndExchangeAcquire(this, 0, 1) == 0) {
+
+            actual.onSubscribe(this);
+
+            SubscriptionHandles.deferredSetOnce(this, UPSTREAM_HANDLE, REQUESTED_HANDLE, s);
+        } else {
+            s.cancel();
+            if (!SubscriptionHandles.isCancelled(this, UPSTREAM_HANDLE)) {
+                cancel();
+                onError(new IllegalStateException("Subscription already set!"));
+            }
+        }
+    }
+
+    protected void undeliverableException(Throwable error) {
+        // default is no-op
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> RelaxedSubscriber<T> wrap(Subscriber<? super T> subscriber) {
+        if (subscriber instanceof RelaxedSubscriber) {
+            return (RelaxedSubscriber<T>)subscriber;
+        }
+        return new StrictAtomicSubscriber<T>(subscriber);
+    }
+}
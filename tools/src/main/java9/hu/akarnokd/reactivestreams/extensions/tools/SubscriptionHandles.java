@@ -0,0 +1,166 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import java.lang.invoke.VarHandle;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.reactivestreams.extensions.ConditionalSubscriber;
+
+/**
+ * The {@link VarHandle} versions of the {@link SubscriptionTools} primitives used by the
+ * strict subscribers on Java 9+, each using the weakest access mode that keeps it correct.
+ * <p>
+ * The VarHandles are expected to be constants in the caller so the access
+ * gets specialized once these methods are inlined.
+ */
+final class SubscriptionHandles {
+
+    /** Utility class. */
+    private SubscriptionHandles() {
+        throw new IllegalStateException("No instances!");
+    }
+
+    static boolean cancel(Object instance, VarHandle field) {
+        // acquire is enough for the fast path, the exchange decides who cancels
+        Subscription current = (Subscription)field.getAcquire(instance);
+        if (current != CancelledSubscription.INSTANCE) {
+            current = (Subscription)field.getAndSet(instance, (Subscription)CancelledSubscription.INSTANCE);
+            if (current != CancelledSubscription.INSTANCE) {
+                if (current != null) {
+                    current.cancel();
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static void clear(Object instance, VarHandle field) {
+        field.setRelease(instance, (Subscription)CancelledSubscription.INSTANCE);
+    }
+
+    static boolean isCancelled(Object instance, VarHandle field) {
+        return field.getAcquire(instance) == CancelledSubscription.INSTANCE;
+    }
+
+    static SubscriptionTools.SetOnceResult deferredSetOnce(Object instance, VarHandle field, VarHandle requested, Subscription subscription) {
+        if (subscription == null) {
+            throw new NullPointerException("subscription is null");
+        }
+        // volatile CAS and exchange: pairs with the add-then-read in deferredRequest
+        if (!field.compareAndSet(instance, (Subscription)null, subscription)) {
+            subscription.cancel();
+            if (field.getAcquire(instance) == CancelledSubscription.INSTANCE) {
+                return SubscriptionTools.SetOnceResult.CANCELLED;
+            }
+            return SubscriptionTools.SetOnceResult.ALREADY_SET;
+        }
+
+        long r = (long)requested.getAndSet(instance, 0L);
+        if (r != 0L) {
+            subscription.request(r);
+        }
+        return SubscriptionTools.SetOnceResult.SUCCESS;
+    }
+
+    static boolean deferredRequest(Object instance, VarHandle field, VarHandle requested, long n) {
+        Subscription current = (Subscription)field.getAcquire(instance);
+        if (current != null) {
+            current.request(n);
+            return true;
+        }
+        getAndAddRequested(instance, requested, n);
+        // must not float above the add, hence a volatile read
+        current = (Subscription)field.getVolatile(instance);
+        if (current != null) {
+            long r = (long)requested.getAndSet(instance, 0L);
+            if (r != 0L) {
+                current.request(r);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static long getAndAddRequested(Object instance, VarHandle requested, long n) {
+        for (;;) {
+            // a stale value only makes the CAS fail
+            long r = (long)requested.getOpaque(instance);
+            if (r == Long.MAX_VALUE) {
+                return Long.MAX_VALUE;
+            }
+            long u = SubscriptionTools.addAndCap(r, n);
+            if (requested.weakCompareAndSet(instance, r, u)) {
+                return r;
+            }
+        }
+    }
+
+    static <T> boolean serializedOnNext(Subscriber<? super T> subscriber, Object instance, VarHandle wip, VarHandle error, T item) {
+        if ((long)wip.getOpaque(instance) == 0L && (long)wip.compareAndExchangeAcquire(instance, 0L, 1L) == 0L) {
+            subscriber.onNext(item);
+            if ((long)wip.getAndAdd(instance, -1L) != 1L) {
+                emitTerminal(subscriber, instance, error);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    static <T> boolean serializedTryOnNext(ConditionalSubscriber<? super T> subscriber, Object instance, VarHandle wip, VarHandle error, T item) {
+        if ((long)wip.getOpaque(instance) == 0L && (long)wip.compareAndExchangeAcquire(instance, 0L, 1L) == 0L) {
+            boolean b = subscriber.tryOnNext(item);
+            if ((long)wip.getAndAdd(instance, -1L) != 1L) {
+                emitTerminal(subscriber, instance, error);
+            }
+            return b;
+        }
+        return false;
+    }
+
+    static void emitTerminal(Subscriber<?> subscriber, Object instance, VarHandle error) {
+        // the wip decrement observed the terminating increment so the error is visible
+        Throwable ex = (Throwable)error.get(instance);
+        if (ex == SubscriptionTools.TERMINATED) {
+            subscriber.onComplete();
+        } else {
+            subscriber.onError(ex);
+        }
+    }
+
+    static <T> boolean serializedOnError(Subscriber<? super T> subscriber, Object instance, VarHandle wip, VarHandle error, Throwable t) {
+        if (error.compareAndSet(instance, (Throwable)null, t)) {
+            if ((long)wip.getAndAdd(instance, 1L) == 0L) {
+                subscriber.onError(t);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    static <T> boolean serializedOnComplete(Subscriber<? super T> subscriber, Object instance, VarHandle wip, VarHandle error) {
+        if (error.compareAndSet(instance, (Throwable)null, (Throwable)SubscriptionTools.TERMINATED)) {
+            if ((long)wip.getAndAdd(instance, 1L) == 0L) {
+                subscriber.onComplete();
+            }
+            return true;
+        }
+        return false;
+    }
+}
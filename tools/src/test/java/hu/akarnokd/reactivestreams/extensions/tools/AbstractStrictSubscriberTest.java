@@ -71,6 +71,47 @@ public abstract class AbstractStrictSubscriberTest {
         assertTrue(errors.toString(), errors.isEmpty());
     }
 
+    @Test
+    public void completeWhileOnNext() {
+        final List<Object> events = new ArrayList<Object>();
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        final RelaxedSubscriber<Object>[] ref = new RelaxedSubscriber[1];
+
+        RelaxedSubscriber<Object> sub = create(new Subscriber<Object>() {
+            @Override
+            public void onSubscribe(Subscription s) {
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(Object t) {
+                events.add(t);
+                ref[0].onComplete();
+                ref[0].onNext(2);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                events.add(t.getMessage());
+            }
+
+            @Override
+            public void onComplete() {
+                events.add("OnComplete");
+            }
+        }, errors);
+        ref[0] = sub;
+
+        sub.onSubscribe(new LongSubscription());
+
+        sub.onNext(1);
+        sub.onNext(3);
+
+        assertEquals(Arrays.<Object>asList(1, "OnComplete"), events);
+
+        assertTrue(errors.toString(), errors.isEmpty());
+    }
+
     @Test
     public void zeroRequest() {
         RelaxedSubscriber<Object> sub = create(subscriber, errors);
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import hu.akarnokd.reactivestreams.extensions.SizedFusedQueue;
+
+public class FusedQueueToolsTest {
+
+    @Test
+    public void drainFallback() throws Throwable {
+        MpmcArrayQueue<Integer> q = new MpmcArrayQueue<Integer>(8);
+        for (int i = 0; i < 5; i++) {
+            q.offer(i);
+        }
+
+        Integer[] into = new Integer[8];
+
+        assertEquals(3, FusedQueueTools.drain(q, into, 3));
+        assertEquals(2, FusedQueueTools.drain(q, into, 8));
+        assertEquals(3, into[0].intValue());
+        assertEquals(4, into[1].intValue());
+        assertEquals(0, FusedQueueTools.drain(q, into, 8));
+    }
+
+    @Test
+    public void offerAllFallback() {
+        MpmcArrayQueue<Integer> q = new MpmcArrayQueue<Integer>(4);
+
+        assertEquals(4, FusedQueueTools.offerAll(q, new Integer[] { 1, 2, 3, 4, 5, 6 }, 1, 5));
+
+        for (int i = 2; i <= 5; i++) {
+            assertEquals(i, q.poll().intValue());
+        }
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void drainBulk() throws Throwable {
+        SpscArrayQueue<Integer> q = new SpscArrayQueue<Integer>(8);
+
+        assertEquals(3, FusedQueueTools.offerAll(q, new Integer[] { 1, 2, 3 }, 0, 3));
+
+        Integer[] into = new Integer[8];
+
+        assertEquals(3, FusedQueueTools.drain(q, into, 8));
+        assertEquals(1, into[0].intValue());
+        assertEquals(3, into[2].intValue());
+    }
+
+    @Test
+    public void noInstances() throws Exception {
+        SubscriptionToolsTest.utilityClass(FusedQueueTools.class);
+    }
+
+    @Test
+    public void sizeOfSizedQueue() {
+        SpscArrayQueue<Integer> q = new SpscArrayQueue<Integer>(8);
+        q.offer(1);
+
+        assertEquals(1L, FusedQueueTools.estimatedSize(q));
+        assertEquals(8L, FusedQueueTools.capacity(q));
+    }
+
+    @Test
+    public void sizeUnknown() {
+        SpscLinkedArrayQueue<Integer> q = new SpscLinkedArrayQueue<Integer>(8);
+        q.offer(1);
+
+        assertEquals(SizedFusedQueue.UNKNOWN, FusedQueueTools.estimatedSize(q));
+        assertEquals(SizedFusedQueue.UNKNOWN, FusedQueueTools.capacity(q));
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class MpmcArrayQueueTest {
+
+    @Test
+    public void offerPoll() {
+        MpmcArrayQueue<Integer> q = new MpmcArrayQueue<Integer>(16);
+
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+
+        for (int i = 0; i < 16; i++) {
+            assertTrue(q.offer(i));
+            assertFalse(q.isEmpty());
+        }
+
+        for (int i = 0; i < 16; i++) {
+            assertEquals(i, q.poll().intValue());
+        }
+
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+    }
+
+    @Test
+    public void full() {
+        MpmcArrayQueue<Integer> q = new MpmcArrayQueue<Integer>(10);
+
+        for (int i = 0; i < 16; i++) {
+            assertTrue(q.offer(i));
+        }
+
+        assertFalse(q.offer(16));
+
+        assertEquals(0, q.poll().intValue());
+
+        assertTrue(q.offer(16));
+        assertFalse(q.offer(17));
+    }
+
+    @Test
+    public void capacityOne() {
+        MpmcArrayQueue<Integer> q = new MpmcArrayQueue<Integer>(1);
+
+        assertTrue(q.offer(1));
+        assertTrue(q.offer(2));
+        assertFalse(q.offer(3));
+
+        assertEquals(1, q.poll().intValue());
+        assertEquals(2, q.poll().intValue());
+        assertNull(q.poll());
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(q.offer(i));
+            assertEquals(i, q.poll().intValue());
+            assertTrue(q.isEmpty());
+        }
+    }
+
+    @Test
+    public void wrapAround() {
+        MpmcArrayQueue<Integer> q = new MpmcArrayQueue<Integer>(4);
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(q.offer(i));
+            assertTrue(q.offer(i + 1));
+            assertEquals(i, q.poll().intValue());
+            assertEquals(i + 1, q.poll().intValue());
+            assertTrue(q.isEmpty());
+        }
+    }
+
+    @Test
+    public void clear() {
+        MpmcArrayQueue<Integer> q = new MpmcArrayQueue<Integer>(16);
+
+        for (int i = 0; i < 10; i++) {
+            q.offer(i);
+        }
+
+        q.clear();
+
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+
+        for (int i = 0; i < 16; i++) {
+            assertTrue(q.offer(i));
+        }
+        for (int i = 0; i < 16; i++) {
+            assertEquals(i, q.poll().intValue());
+        }
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void offerNull() {
+        new MpmcArrayQueue<Integer>(16).offer(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroCapacity() {
+        new MpmcArrayQueue<Integer>(0);
+    }
+
+    @Test
+    public void oneProducer() {
+        TestSupport.producersConsumer(new MpmcArrayQueue<Integer>(64), 1, 100000);
+    }
+
+    @Test
+    public void twoProducers() {
+        TestSupport.producersConsumer(new MpmcArrayQueue<Integer>(64), 2, 100000);
+    }
+
+    @Test
+    public void fourProducers() {
+        TestSupport.producersConsumer(new MpmcArrayQueue<Integer>(64), 4, 50000);
+    }
+
+    @Test
+    public void twoConsumers() {
+        TestSupport.producersConsumers(new MpmcArrayQueue<Integer>(64), 1, 2, 100000);
+    }
+
+    @Test
+    public void fourProducersFourConsumers() {
+        TestSupport.producersConsumers(new MpmcArrayQueue<Integer>(64), 4, 4, 25000);
+    }
+
+    @Test
+    public void isEmptyWhilePolling() {
+        for (int i = 0; i < TestSupport.LOOP; i++) {
+            final MpmcArrayQueue<Integer> q = new MpmcArrayQueue<Integer>(128);
+            for (int j = 0; j < 100; j++) {
+                q.offer(j);
+            }
+
+            final AtomicInteger count = new AtomicInteger();
+
+            Runnable r1 = new Runnable() {
+                @Override
+                public void run() {
+                    while (q.poll() != null) {
+                        count.getAndIncrement();
+                    }
+                }
+            };
+
+            Runnable r2 = new Runnable() {
+                @Override
+                public void run() {
+                    while (!q.isEmpty()) {
+                        if (q.poll() != null) {
+                            count.getAndIncrement();
+                        }
+                    }
+                }
+            };
+
+            TestSupport.race(r1, r2);
+
+            assertEquals(100, count.get());
+            assertTrue(q.isEmpty());
+            assertNull(q.poll());
+        }
+    }
+
+    @Test
+    public void clearWhilePolling() {
+        for (int i = 0; i < TestSupport.LOOP; i++) {
+            final MpmcArrayQueue<Integer> q = new MpmcArrayQueue<Integer>(128);
+            for (int j = 0; j < 100; j++) {
+                q.offer(j);
+            }
+
+            final AtomicInteger count = new AtomicInteger();
+
+            Runnable r1 = new Runnable() {
+                @Override
+                public void run() {
+                    q.clear();
+                }
+            };
+
+            Runnable r2 = new Runnable() {
+                @Override
+                public void run() {
+                    int last = -1;
+                    Integer v;
+                    while ((v = q.poll()) != null) {
+                        assertTrue(last < v);
+                        last = v;
+                        count.getAndIncrement();
+                    }
+                }
+            };
+
+            TestSupport.race(r1, r2);
+
+            assertTrue(count.get() <= 100);
+            assertTrue(q.isEmpty());
+            assertNull(q.poll());
+
+            for (int j = 0; j < 128; j++) {
+                assertTrue(q.offer(j));
+            }
+            assertFalse(q.offer(128));
+            for (int j = 0; j < 128; j++) {
+                assertEquals(j, q.poll().intValue());
+            }
+        }
+    }
+
+    @Test
+    public void estimatedSizeAndCapacity() {
+        MpmcArrayQueue<Integer> q = new MpmcArrayQueue<Integer>(10);
+
+        assertEquals(16L, q.capacity());
+        assertEquals(0L, q.estimatedSize());
+
+        for (int i = 0; i < 10; i++) {
+            q.offer(i);
+        }
+
+        assertEquals(10L, q.estimatedSize());
+
+        q.poll();
+        q.poll();
+
+        assertEquals(8L, q.estimatedSize());
+
+        q.clear();
+
+        assertEquals(0L, q.estimatedSize());
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class MpscArrayQueueTest {
+
+    @Test
+    public void offerPoll() {
+        MpscArrayQueue<Integer> q = new MpscArrayQueue<Integer>(16);
+
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+
+        for (int i = 0; i < 16; i++) {
+            assertTrue(q.offer(i));
+            assertFalse(q.isEmpty());
+        }
+
+        for (int i = 0; i < 16; i++) {
+            assertEquals(i, q.poll().intValue());
+        }
+
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+    }
+
+    @Test
+    public void full() {
+        MpscArrayQueue<Integer> q = new MpscArrayQueue<Integer>(10);
+
+        for (int i = 0; i < 16; i++) {
+            assertTrue(q.offer(i));
+        }
+
+        assertFalse(q.offer(16));
+
+        assertEquals(0, q.poll().intValue());
+
+        assertTrue(q.offer(16));
+        assertFalse(q.offer(17));
+    }
+
+    @Test
+    public void wrapAround() {
+        MpscArrayQueue<Integer> q = new MpscArrayQueue<Integer>(4);
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(q.offer(i));
+            assertTrue(q.offer(i + 1));
+            assertEquals(i, q.poll().intValue());
+            assertEquals(i + 1, q.poll().intValue());
+            assertTrue(q.isEmpty());
+        }
+    }
+
+    @Test
+    public void clear() {
+        MpscArrayQueue<Integer> q = new MpscArrayQueue<Integer>(16);
+
+        for (int i = 0; i < 10; i++) {
+            q.offer(i);
+        }
+
+        q.clear();
+
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+
+        for (int i = 0; i < 16; i++) {
+            assertTrue(q.offer(i));
+        }
+        for (int i = 0; i < 16; i++) {
+            assertEquals(i, q.poll().intValue());
+        }
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void offerNull() {
+        new MpscArrayQueue<Integer>(16).offer(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroCapacity() {
+        new MpscArrayQueue<Integer>(0);
+    }
+
+    @Test
+    public void oneProducer() {
+        TestSupport.producersConsumer(new MpscArrayQueue<Integer>(64), 1, 100000);
+    }
+
+    @Test
+    public void twoProducers() {
+        TestSupport.producersConsumer(new MpscArrayQueue<Integer>(64), 2, 100000);
+    }
+
+    @Test
+    public void fourProducers() {
+        TestSupport.producersConsumer(new MpscArrayQueue<Integer>(64), 4, 50000);
+    }
+
+    @Test
+    public void offerAllDrain() {
+        MpscArrayQueue<Integer> q = new MpscArrayQueue<Integer>(16);
+        Integer[] from = new Integer[20];
+        for (int i = 0; i < from.length; i++) {
+            from[i] = i;
+        }
+
+        assertEquals(16, q.offerAll(from, 2, 18));
+        assertFalse(q.offer(100));
+        assertEquals(0, q.offerAll(from, 0, 1));
+
+        Integer[] into = new Integer[32];
+
+        assertEquals(5, q.drain(into, 5));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i + 2, into[i].intValue());
+        }
+
+        assertEquals(5, q.offerAll(from, 0, 10));
+
+        assertEquals(16, q.drain(into, 32));
+        for (int i = 0; i < 11; i++) {
+            assertEquals(i + 7, into[i].intValue());
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, into[i + 11].intValue());
+        }
+
+        assertTrue(q.isEmpty());
+        assertEquals(0, q.drain(into, 32));
+    }
+
+    @Test
+    public void offerAllNull() {
+        MpscArrayQueue<Integer> q = new MpscArrayQueue<Integer>(16);
+
+        try {
+            q.offerAll(new Integer[] { 1, 2, null, 4 }, 0, 4);
+            fail("Should have thrown");
+        } catch (NullPointerException expected) {
+            // expected
+        }
+
+        assertNull(q.poll());
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void offerAllTwoProducers() {
+        for (int i = 0; i < TestSupport.LOOP; i++) {
+            final MpscArrayQueue<Integer> q = new MpscArrayQueue<Integer>(128);
+
+            Runnable r1 = new Runnable() {
+                @Override
+                public void run() {
+                    q.offerAll(new Integer[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 }, 0, 10);
+                    q.offerAll(new Integer[] { 10, 11, 12, 13, 14, 15, 16, 17, 18, 19 }, 0, 10);
+                }
+            };
+
+            Runnable r2 = new Runnable() {
+                @Override
+                public void run() {
+                    q.offerAll(new Integer[] { 100, 101, 102, 103, 104, 105, 106, 107, 108, 109 }, 0, 10);
+                    q.offerAll(new Integer[] { 110, 111, 112, 113, 114, 115, 116, 117, 118, 119 }, 0, 10);
+                }
+            };
+
+            TestSupport.race(r1, r2);
+
+            Integer[] into = new Integer[64];
+            assertEquals(40, q.drain(into, 64));
+
+            int[] expected = { 0, 100 };
+            for (int j = 0; j < 40; j++) {
+                int v = into[j];
+                int p = v / 100;
+                assertEquals(expected[p]++, v);
+            }
+            assertTrue(q.isEmpty());
+        }
+    }
+
+    @Test
+    public void estimatedSizeAndCapacity() {
+        MpscArrayQueue<Integer> q = new MpscArrayQueue<Integer>(10);
+
+        assertEquals(16L, q.capacity());
+        assertEquals(0L, q.estimatedSize());
+
+        for (int i = 0; i < 10; i++) {
+            q.offer(i);
+        }
+
+        assertEquals(10L, q.estimatedSize());
+
+        q.poll();
+        q.poll();
+
+        assertEquals(8L, q.estimatedSize());
+
+        q.clear();
+
+        assertEquals(0L, q.estimatedSize());
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class MpscLinkedArrayQueueTest {
+
+    @Test
+    public void offerPoll() {
+        MpscLinkedArrayQueue<Integer> q = new MpscLinkedArrayQueue<Integer>(16);
+
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+
+        for (int i = 0; i < 16; i++) {
+            assertTrue(q.offer(i));
+            assertFalse(q.isEmpty());
+        }
+
+        for (int i = 0; i < 16; i++) {
+            assertEquals(i, q.poll().intValue());
+        }
+
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+    }
+
+    @Test
+    public void multipleSegments() {
+        MpscLinkedArrayQueue<Integer> q = new MpscLinkedArrayQueue<Integer>(4);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(q.offer(i));
+        }
+
+        assertNotSame(q.producerSegment, q.consumerSegment);
+
+        for (int i = 0; i < 100; i++) {
+            assertFalse(q.isEmpty());
+            assertEquals(i, q.poll().intValue());
+        }
+
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+        assertSame(q.producerSegment, q.consumerSegment);
+    }
+
+    @Test
+    public void segmentBoundary() {
+        MpscLinkedArrayQueue<Integer> q = new MpscLinkedArrayQueue<Integer>(4);
+
+        for (int i = 0; i < 4; i++) {
+            q.offer(i);
+        }
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, q.poll().intValue());
+        }
+
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+
+        q.offer(4);
+
+        assertEquals(4, q.poll().intValue());
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void clear() {
+        MpscLinkedArrayQueue<Integer> q = new MpscLinkedArrayQueue<Integer>(16);
+
+        for (int i = 0; i < 10; i++) {
+            q.offer(i);
+        }
+
+        q.clear();
+
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+
+        for (int i = 0; i < 16; i++) {
+            assertTrue(q.offer(i));
+        }
+        for (int i = 0; i < 16; i++) {
+            assertEquals(i, q.poll().intValue());
+        }
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void offerNull() {
+        new MpscLinkedArrayQueue<Integer>(16).offer(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroCapacity() {
+        new MpscLinkedArrayQueue<Integer>(0);
+    }
+
+    @Test
+    public void oneProducer() {
+        TestSupport.producersConsumer(new MpscLinkedArrayQueue<Integer>(64), 1, 100000);
+    }
+
+    @Test
+    public void twoProducers() {
+        TestSupport.producersConsumer(new MpscLinkedArrayQueue<Integer>(64), 2, 100000);
+    }
+
+    @Test
+    public void fourProducers() {
+        TestSupport.producersConsumer(new MpscLinkedArrayQueue<Integer>(64), 4, 50000);
+    }
+
+    @Test
+    public void estimatedSizeAndCapacity() {
+        MpscLinkedArrayQueue<Integer> q = new MpscLinkedArrayQueue<Integer>(4);
+
+        assertEquals(Long.MAX_VALUE, q.capacity());
+        assertEquals(0L, q.estimatedSize());
+
+        for (int i = 0; i < 10; i++) {
+            q.offer(i);
+        }
+
+        assertEquals(10L, q.estimatedSize());
+
+        q.poll();
+        q.poll();
+
+        assertEquals(8L, q.estimatedSize());
+
+        q.clear();
+
+        assertEquals(0L, q.estimatedSize());
+    }
+}
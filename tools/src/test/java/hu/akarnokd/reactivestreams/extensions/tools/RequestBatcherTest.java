@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.junit.Test;
+
+public class RequestBatcherTest {
+
+    @Test
+    public void defaultLimit() {
+        assertEquals(1, RequestBatcher.limit(1));
+        assertEquals(2, RequestBatcher.limit(2));
+        assertEquals(3, RequestBatcher.limit(4));
+        assertEquals(96, RequestBatcher.limit(128));
+        assertEquals(Integer.MAX_VALUE, RequestBatcher.limit(Integer.MAX_VALUE));
+
+        RequestBatcher rb = new RequestBatcher(16);
+        assertEquals(16, rb.prefetch());
+        assertEquals(12, rb.limit());
+    }
+
+    @Test
+    public void invalidArguments() {
+        try {
+            new RequestBatcher(0);
+            fail("Should have thrown");
+        } catch (IllegalArgumentException ex) {
+            assertEquals("prefetch > 0 required but it was 0", ex.getMessage());
+        }
+        try {
+            new RequestBatcher(4, 0);
+            fail("Should have thrown");
+        } catch (IllegalArgumentException ex) {
+            assertEquals("0 < limit <= prefetch required but it was 0", ex.getMessage());
+        }
+        try {
+            new RequestBatcher(4, 5);
+            fail("Should have thrown");
+        } catch (IllegalArgumentException ex) {
+            assertEquals("0 < limit <= prefetch required but it was 5", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void replenishAfterLimit() {
+        LongSubscription s = new LongSubscription();
+        RequestBatcher rb = new RequestBatcher(8);
+
+        rb.requestInitial(s);
+        assertEquals(8, s.requested());
+
+        for (int i = 1; i < 6; i++) {
+            assertFalse(rb.produced(s));
+            assertEquals(i, rb.consumed());
+        }
+        assertEquals(8, s.requested());
+
+        assertTrue(rb.produced(s));
+        assertEquals(0, rb.consumed());
+        assertEquals(14, s.requested());
+    }
+
+    @Test
+    public void replenishBatch() {
+        LongSubscription s = new LongSubscription();
+        RequestBatcher rb = new RequestBatcher(8);
+
+        assertFalse(rb.produced(s, 4));
+        assertFalse(rb.produced(s, 0));
+        assertTrue(rb.produced(s, 3));
+        assertEquals(7, s.requested());
+        assertEquals(0, rb.consumed());
+    }
+
+    @Test
+    public void unbounded() {
+        LongSubscription s = new LongSubscription();
+        RequestBatcher rb = new RequestBatcher(Integer.MAX_VALUE);
+
+        rb.requestInitial(s);
+        assertEquals(Long.MAX_VALUE, s.requested());
+
+        assertFalse(rb.produced(s));
+        assertTrue(rb.produced(s, Integer.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, s.requested());
+    }
+
+    static final class Consumer {
+        volatile int consumed;
+        static final AtomicIntegerFieldUpdater<Consumer> CONSUMED =
+                AtomicIntegerFieldUpdater.newUpdater(Consumer.class, "consumed");
+    }
+
+    @Test
+    public void fieldUpdater() {
+        LongSubscription s = new LongSubscription();
+        Consumer c = new Consumer();
+
+        assertFalse(RequestBatcher.produced(c, Consumer.CONSUMED, 3, s));
+        assertFalse(RequestBatcher.produced(c, Consumer.CONSUMED, 3, s));
+        assertEquals(2, c.consumed);
+        assertTrue(RequestBatcher.produced(c, Consumer.CONSUMED, 3, s));
+        assertEquals(0, c.consumed);
+        assertEquals(3, s.requested());
+
+        assertFalse(RequestBatcher.produced(c, Consumer.CONSUMED, 3, s, 2));
+        assertTrue(RequestBatcher.produced(c, Consumer.CONSUMED, 3, s, 2));
+        assertEquals(0, c.consumed);
+        assertEquals(7, s.requested());
+    }
+
+    @Test
+    public void fieldUpdaterUnbounded() {
+        LongSubscription s = new LongSubscription();
+        Consumer c = new Consumer();
+
+        assertTrue(RequestBatcher.produced(c, Consumer.CONSUMED, Integer.MAX_VALUE, s, Integer.MAX_VALUE));
+        assertEquals(0, s.requested());
+    }
+}
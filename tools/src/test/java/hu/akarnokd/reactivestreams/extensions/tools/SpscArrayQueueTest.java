@@ -0,0 +1,283 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SpscArrayQueueTest {
+
+    @Test
+    public void offerPoll() {
+        SpscArrayQueue<Integer> q = new SpscArrayQueue<Integer>(16);
+
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+
+        for (int i = 0; i < 16; i++) {
+            assertTrue(q.offer(i));
+            assertFalse(q.isEmpty());
+        }
+
+        assertFalse(q.offer(16));
+
+        for (int i = 0; i < 16; i++) {
+            assertEquals(i, q.poll().intValue());
+        }
+
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+    }
+
+    @Test
+    public void capacityRoundedUp() {
+        SpscArrayQueue<Integer> q = new SpscArrayQueue<Integer>(10);
+
+        for (int i = 0; i < 16; i++) {
+            assertTrue(q.offer(i));
+        }
+
+        assertFalse(q.offer(16));
+    }
+
+    @Test
+    public void capacityOne() {
+        SpscArrayQueue<Integer> q = new SpscArrayQueue<Integer>(1);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(q.offer(i));
+            assertFalse(q.offer(i));
+            assertEquals(i, q.poll().intValue());
+            assertNull(q.poll());
+        }
+    }
+
+    @Test
+    public void wrapAround() {
+        SpscArrayQueue<Integer> q = new SpscArrayQueue<Integer>(8);
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(q.offer(i));
+            assertTrue(q.offer(i + 1));
+            assertTrue(q.offer(i + 2));
+            assertEquals(i, q.poll().intValue());
+            assertEquals(i + 1, q.poll().intValue());
+            assertEquals(i + 2, q.poll().intValue());
+            assertTrue(q.isEmpty());
+        }
+    }
+
+    @Test
+    public void clear() {
+        SpscArrayQueue<Integer> q = new SpscArrayQueue<Integer>(16);
+
+        for (int i = 0; i < 10; i++) {
+            q.offer(i);
+        }
+
+        q.clear();
+
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+
+        for (int i = 0; i < 16; i++) {
+            assertTrue(q.offer(i));
+        }
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void offerNull() {
+        new SpscArrayQueue<Integer>(16).offer(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroCapacity() {
+        new SpscArrayQueue<Integer>(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooLargeCapacity() {
+        new SpscArrayQueue<Integer>((1 << 30) + 1);
+    }
+
+    @Test
+    public void producerConsumer() {
+        final SpscArrayQueue<Integer> q = new SpscArrayQueue<Integer>(128);
+        final int n = 1000000;
+
+        Runnable producer = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < n; i++) {
+                    while (!q.offer(i)) {
+                        Thread.yield();
+                    }
+                }
+            }
+        };
+
+        final int[] last = { -1 };
+
+        Runnable consumer = new Runnable() {
+            @Override
+            public void run() {
+                int expected = 0;
+                while (expected != n) {
+                    Integer v = q.poll();
+                    if (v != null) {
+                        if (v != expected) {
+                            throw new AssertionError("Expected: " + expected + ", Actual: " + v);
+                        }
+                        expected++;
+                    } else {
+                        Thread.yield();
+                    }
+                }
+                last[0] = expected;
+            }
+        };
+
+        TestSupport.race(producer, consumer);
+
+        assertEquals(n, last[0]);
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void offerAllDrain() {
+        SpscArrayQueue<Integer> q = new SpscArrayQueue<Integer>(16);
+        Integer[] from = new Integer[20];
+        for (int i = 0; i < from.length; i++) {
+            from[i] = i;
+        }
+
+        assertEquals(16, q.offerAll(from, 2, 18));
+        assertFalse(q.offer(100));
+
+        Integer[] into = new Integer[32];
+
+        assertEquals(5, q.drain(into, 5));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i + 2, into[i].intValue());
+        }
+
+        assertEquals(5, q.offerAll(from, 0, 5));
+
+        assertEquals(16, q.drain(into, 32));
+        for (int i = 0; i < 11; i++) {
+            assertEquals(i + 7, into[i].intValue());
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, into[i + 11].intValue());
+        }
+
+        assertTrue(q.isEmpty());
+        assertEquals(0, q.drain(into, 32));
+    }
+
+    @Test
+    public void offerAllNull() {
+        SpscArrayQueue<Integer> q = new SpscArrayQueue<Integer>(16);
+
+        try {
+            q.offerAll(new Integer[] { 1, 2, null, 4 }, 0, 4);
+            fail("Should have thrown");
+        } catch (NullPointerException expected) {
+            // expected
+        }
+
+        assertEquals(1, q.poll().intValue());
+        assertEquals(2, q.poll().intValue());
+        assertNull(q.poll());
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void bulkProducerConsumer() {
+        for (int i = 0; i < 100; i++) {
+            final SpscArrayQueue<Integer> q = new SpscArrayQueue<Integer>(16);
+            final int n = 10000;
+
+            Runnable r1 = new Runnable() {
+                @Override
+                public void run() {
+                    Integer[] from = new Integer[7];
+                    for (int i = 0; i < from.length; i++) {
+                        from[i] = i;
+                    }
+                    int j = 0;
+                    while (j < n) {
+                        for (int k = 0; k < from.length; k++) {
+                            from[k] = j + k;
+                        }
+                        j += q.offerAll(from, 0, Math.min(from.length, n - j));
+                        Thread.yield();
+                    }
+                }
+            };
+
+            final int[] received = { 0 };
+
+            Runnable r2 = new Runnable() {
+                @Override
+                public void run() {
+                    Integer[] into = new Integer[5];
+                    int j = 0;
+                    while (j < n) {
+                        int c = q.drain(into, into.length);
+                        for (int k = 0; k < c; k++) {
+                            assertEquals(j++, into[k].intValue());
+                        }
+                        if (c == 0) {
+                            Thread.yield();
+                        }
+                    }
+                    received[0] = j;
+                }
+            };
+
+            TestSupport.race(r1, r2);
+
+            assertEquals(n, received[0]);
+            assertTrue(q.isEmpty());
+        }
+    }
+
+    @Test
+    public void estimatedSizeAndCapacity() {
+        SpscArrayQueue<Integer> q = new SpscArrayQueue<Integer>(10);
+
+        assertEquals(16L, q.capacity());
+        assertEquals(0L, q.estimatedSize());
+
+        for (int i = 0; i < 10; i++) {
+            q.offer(i);
+        }
+
+        assertEquals(10L, q.estimatedSize());
+
+        q.poll();
+        q.poll();
+
+        assertEquals(8L, q.estimatedSize());
+
+        q.clear();
+
+        assertEquals(0L, q.estimatedSize());
+    }
+}
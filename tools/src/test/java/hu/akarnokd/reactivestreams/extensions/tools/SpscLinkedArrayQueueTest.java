@@ -0,0 +1,214 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SpscLinkedArrayQueueTest {
+
+    @Test
+    public void offerPoll() {
+        SpscLinkedArrayQueue<Integer> q = new SpscLinkedArrayQueue<Integer>(4);
+
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(q.offer(i));
+            assertFalse(q.isEmpty());
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertFalse(q.isEmpty());
+            assertEquals(i, q.poll().intValue());
+        }
+
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+    }
+
+    @Test
+    public void chunkBoundary() {
+        SpscLinkedArrayQueue<Integer> q = new SpscLinkedArrayQueue<Integer>(4);
+
+        for (int i = 0; i < 4; i++) {
+            q.offer(i);
+        }
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, q.poll().intValue());
+        }
+
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+
+        q.offer(4);
+
+        assertFalse(q.isEmpty());
+        assertEquals(4, q.poll().intValue());
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void chunkSizeOne() {
+        SpscLinkedArrayQueue<Integer> q = new SpscLinkedArrayQueue<Integer>(1);
+
+        for (int i = 0; i < 10; i++) {
+            q.offer(i);
+            q.offer(i + 1);
+            assertEquals(i, q.poll().intValue());
+            assertEquals(i + 1, q.poll().intValue());
+            assertNull(q.poll());
+        }
+    }
+
+    @Test
+    public void segmentsReleased() {
+        SpscLinkedArrayQueue<Integer> q = new SpscLinkedArrayQueue<Integer>(8);
+
+        for (int i = 0; i < 100; i++) {
+            q.offer(i);
+        }
+
+        assertNotSame(q.producerArray, q.consumerArray);
+
+        while (q.poll() != null) { }
+
+        assertSame(q.producerArray, q.consumerArray);
+    }
+
+    @Test
+    public void clear() {
+        SpscLinkedArrayQueue<Integer> q = new SpscLinkedArrayQueue<Integer>(8);
+
+        for (int i = 0; i < 100; i++) {
+            q.offer(i);
+        }
+
+        q.poll();
+
+        q.clear();
+
+        assertSame(q.producerArray, q.consumerArray);
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+
+        for (int i = 0; i < 100; i++) {
+            q.offer(i);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, q.poll().intValue());
+        }
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void clearAtChunkBoundary() {
+        SpscLinkedArrayQueue<Integer> q = new SpscLinkedArrayQueue<Integer>(8);
+
+        for (int i = 0; i < 8; i++) {
+            q.offer(i);
+        }
+
+        q.clear();
+
+        assertTrue(q.isEmpty());
+
+        q.offer(8);
+
+        assertEquals(8, q.poll().intValue());
+        assertTrue(q.isEmpty());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void offerNull() {
+        new SpscLinkedArrayQueue<Integer>(16).offer(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroChunkSize() {
+        new SpscLinkedArrayQueue<Integer>(0);
+    }
+
+    @Test
+    public void producerConsumer() {
+        final SpscLinkedArrayQueue<Integer> q = new SpscLinkedArrayQueue<Integer>(32);
+        final int n = 1000000;
+
+        Runnable producer = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < n; i++) {
+                    q.offer(i);
+                }
+            }
+        };
+
+        final int[] last = { -1 };
+
+        Runnable consumer = new Runnable() {
+            @Override
+            public void run() {
+                int expected = 0;
+                while (expected != n) {
+                    Integer v = q.poll();
+                    if (v != null) {
+                        if (v != expected) {
+                            throw new AssertionError("Expected: " + expected + ", Actual: " + v);
+                        }
+                        expected++;
+                    } else {
+                        Thread.yield();
+                    }
+                }
+                last[0] = expected;
+            }
+        };
+
+        TestSupport.race(producer, consumer);
+
+        assertEquals(n, last[0]);
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void offerAllDrain() {
+        SpscLinkedArrayQueue<Integer> q = new SpscLinkedArrayQueue<Integer>(4);
+        Integer[] from = new Integer[20];
+        for (int i = 0; i < from.length; i++) {
+            from[i] = i;
+        }
+
+        assertEquals(18, q.offerAll(from, 2, 18));
+
+        Integer[] into = new Integer[32];
+
+        assertEquals(5, q.drain(into, 5));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i + 2, into[i].intValue());
+        }
+
+        assertEquals(13, q.drain(into, 32));
+        for (int i = 0; i < 13; i++) {
+            assertEquals(i + 7, into[i].intValue());
+        }
+
+        assertTrue(q.isEmpty());
+        assertEquals(0, q.drain(into, 32));
+    }
+}
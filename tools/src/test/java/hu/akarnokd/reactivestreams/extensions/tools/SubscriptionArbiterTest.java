@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.reactivestreams.extensions.tools;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SubscriptionArbiterTest {
+
+    @Test
+    public void requestBeforeSubscription() {
+        SubscriptionArbiter arbiter = new SubscriptionArbiter();
+        arbiter.request(5);
+        arbiter.request(3);
+
+        LongSubscription s = new LongSubscription();
+        arbiter.setSubscription(s);
+
+        assertEquals(8, s.requested());
+
+        arbiter.request(2);
+        assertEquals(10, s.requested());
+    }
+
+    @Test
+    public void switchRequestsOutstandingOnly() {
+        SubscriptionArbiter arbiter = new SubscriptionArbiter();
+
+        LongSubscription s1 = new LongSubscription();
+        arbiter.setSubscription(s1);
+        arbiter.request(10);
+        assertEquals(10, s1.requested());
+
+        arbiter.produced(4);
+
+        LongSubscription s2 = new LongSubscription();
+        arbiter.setSubscription(s2);
+        assertEquals(6, s2.requested());
+        assertFalse(s1.isCancelled());
+    }
+
+    @Test
+    public void switchWithNothingOutstanding() {
+        SubscriptionArbiter arbiter = new SubscriptionArbiter();
+        arbiter.request(2);
+        arbiter.produced(2);
+
+        LongSubscription s = new LongSubscription();
+        arbiter.setSubscription(s);
+        assertEquals(0, s.requested());
+    }
+
+    @Test
+    public void producedMoreThanRequested() {
+        SubscriptionArbiter arbiter = new SubscriptionArbiter();
+        arbiter.request(2);
+        arbiter.produced(5);
+
+        LongSubscription s = new LongSubscription();
+        arbiter.setSubscription(s);
+        assertEquals(0, s.requested());
+
+        arbiter.request(1);
+        assertEquals(1, s.requested());
+    }
+
+    @Test
+    public void unbounded() {
+        SubscriptionArbiter arbiter = new SubscriptionArbiter();
+        arbiter.request(Long.MAX_VALUE);
+        assertTrue(arbiter.isUnbounded());
+
+        arbiter.produced(100);
+        arbiter.request(1);
+
+        LongSubscription s = new LongSubscription();
+        arbiter.setSubscription(s);
+        assertEquals(Long.MAX_VALUE, s.requested());
+    }
+
+    @Test
+    public void cancel() {
+        SubscriptionArbiter arbiter = new SubscriptionArbiter();
+        LongSubscription s1 = new LongSubscription();
+        arbiter.setSubscription(s1);
+
+        arbiter.cancel();
+        assertTrue(arbiter.isCancelled());
+        assertTrue(s1.isCancelled());
+
+        LongSubscription s2 = new LongSubscription();
+        arbiter.setSubscription(s2);
+        assertTrue(s2.isCancelled());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void setNull() {
+        new SubscriptionArbiter().setSubscription(null);
+    }
+
+    @Test
+    public void requestSetRace() {
+        for (int i = 0; i < TestSupport.LOOP; i++) {
+            final SubscriptionArbiter arbiter = new SubscriptionArbiter();
+            final LongSubscription s = new LongSubscription();
+
+            Runnable r1 = new Runnable() {
+                @Override
+                public void run() {
+                    arbiter.request(1);
+                    arbiter.request(2);
+                }
+            };
+
+            Runnable r2 = new Runnable() {
+                @Override
+                public void run() {
+                    arbiter.setSubscription(s);
+                }
+            };
+
+            TestSupport.race(r1, r2);
+
+            assertEquals(3, s.requested());
+        }
+    }
+
+    @Test
+    public void producedSwitchRequestRace() {
+        for (int i = 0; i < TestSupport.LOOP; i++) {
+            final SubscriptionArbiter arbiter = new SubscriptionArbiter();
+            arbiter.setSubscription(new LongSubscription());
+            arbiter.request(10);
+
+            final LongSubscription s2 = new LongSubscription();
+
+            Runnable r1 = new Runnable() {
+                @Override
+                public void run() {
+                    arbiter.produced(4);
+                    arbiter.setSubscription(s2);
+                }
+            };
+
+            Runnable r2 = new Runnable() {
+                @Override
+                public void run() {
+                    arbiter.request(5);
+                }
+            };
+
+            TestSupport.race(r1, r2);
+
+            assertEquals(11, s2.requested());
+        }
+    }
+
+    @Test
+    public void cancelSetRace() {
+        for (int i = 0; i < TestSupport.LOOP; i++) {
+            final SubscriptionArbiter arbiter = new SubscriptionArbiter();
+            final LongSubscription s = new LongSubscription();
+
+            Runnable r1 = new Runnable() {
+                @Override
+                public void run() {
+                    arbiter.cancel();
+                }
+            };
+
+            Runnable r2 = new Runnable() {
+                @Override
+                public void run() {
+                    arbiter.setSubscription(s);
+                }
+            };
+
+            TestSupport.race(r1, r2);
+
+            assertTrue(s.isCancelled());
+        }
+    }
+}
@@ -26,8 +26,9 @@ import java.util.*;
 import java.util.concurrent.atomic.*;
 
 import org.junit.Test;
-import org.reactivestreams.Subscription;
+import org.reactivestreams.*;
 
+import hu.akarnokd.reactivestreams.extensions.*;
 import hu.akarnokd.reactivestreams.extensions.tools.SubscriptionTools.SetOnceResult;
 
 public class SubscriptionToolsTest {
@@ -811,6 +812,326 @@ public class SubscriptionToolsTest {
         }
     }
 
+    static SpscArrayQueue<Integer> queueOf(int... items) {
+        SpscArrayQueue<Integer> q = new SpscArrayQueue<Integer>(16);
+        for (int i : items) {
+            q.offer(i);
+        }
+        return q;
+    }
+
+    static final class CrashingQueue implements FusedQueue<Integer> {
+
+        @Override
+        public boolean offer(Integer element) {
+            return false;
+        }
+
+        @Override
+        public Integer poll() throws Throwable {
+            throw new IOException("poll");
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+
+        @Override
+        public void clear() {
+        }
+    }
+
+    /**
+     * Consumes only the even numbers via tryOnNext.
+     */
+    static final class EvenSubscriber implements ConditionalSubscriber<Integer> {
+
+        final List<Object> events = new ArrayList<Object>();
+
+        @Override
+        public void onSubscribe(Subscription s) {
+        }
+
+        @Override
+        public void onNext(Integer t) {
+            events.add(t);
+        }
+
+        @Override
+        public boolean tryOnNext(Integer t) {
+            if (t % 2 == 0) {
+                events.add(t);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            events.add(t.getMessage());
+        }
+
+        @Override
+        public void onComplete() {
+            events.add("OnComplete");
+        }
+    }
+
+    @Test
+    public void drainQueue() {
+        BasicSubscriber sub = new BasicSubscriber();
+        SpscArrayQueue<Integer> q = queueOf(1, 2, 3);
+        AtomicLong requested = new AtomicLong(Long.MAX_VALUE);
+        AtomicLong wip = new AtomicLong(1);
+        AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        AtomicReference<Subscription> upstream = new AtomicReference<Subscription>(new BooleanSubscription());
+
+        SubscriptionTools.drainQueue(q, sub.standard(), requested, wip, error, upstream);
+
+        assertEquals(Arrays.<Object>asList(1, 2, 3), sub.events);
+        assertEquals(0L, wip.get());
+
+        q.offer(4);
+        assertTrue(setComplete(error));
+        assertFalse(setError(error, new IOException()));
+        assertEquals(0L, wip.getAndIncrement());
+
+        SubscriptionTools.drainQueue(q, sub.standard(), requested, wip, error, upstream);
+
+        assertEquals(Arrays.<Object>asList(1, 2, 3, 4, "OnComplete"), sub.events);
+    }
+
+    @Test
+    public void drainQueueBackpressured() {
+        BasicSubscriber sub = new BasicSubscriber();
+        SpscArrayQueue<Integer> q = queueOf(1, 2, 3);
+        AtomicLong requested = new AtomicLong(2);
+        AtomicLong wip = new AtomicLong(1);
+        AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        AtomicReference<Subscription> upstream = new AtomicReference<Subscription>(new BooleanSubscription());
+
+        setComplete(error);
+
+        SubscriptionTools.drainQueue(q, sub.standard(), requested, wip, error, upstream);
+
+        assertEquals(Arrays.<Object>asList(1, 2), sub.events);
+        assertEquals(0L, requested.get());
+        assertEquals(0L, wip.get());
+
+        requested.set(1);
+        wip.set(1);
+
+        SubscriptionTools.drainQueue(q, sub.standard(), requested, wip, error, upstream);
+
+        assertEquals(Arrays.<Object>asList(1, 2, 3, "OnComplete"), sub.events);
+    }
+
+    @Test
+    public void drainQueueCompleteEmptyNoRequest() {
+        BasicSubscriber sub = new BasicSubscriber();
+        SpscArrayQueue<Integer> q = queueOf();
+        AtomicLong requested = new AtomicLong();
+        AtomicLong wip = new AtomicLong(1);
+        AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        AtomicReference<Subscription> upstream = new AtomicReference<Subscription>(new BooleanSubscription());
+
+        setComplete(error);
+
+        SubscriptionTools.drainQueue(q, sub.standard(), requested, wip, error, upstream);
+
+        assertEquals(Arrays.<Object>asList("OnComplete"), sub.events);
+    }
+
+    @Test
+    public void drainQueueErrorEager() {
+        BasicSubscriber sub = new BasicSubscriber();
+        SpscArrayQueue<Integer> q = queueOf(1, 2, 3);
+        AtomicLong requested = new AtomicLong(Long.MAX_VALUE);
+        AtomicLong wip = new AtomicLong(1);
+        AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        AtomicReference<Subscription> upstream = new AtomicReference<Subscription>(new BooleanSubscription());
+
+        assertTrue(setError(error, new IOException("failure")));
+        assertFalse(setComplete(error));
+
+        SubscriptionTools.drainQueue(q, sub.standard(), requested, wip, error, upstream);
+
+        assertEquals(Arrays.<Object>asList("failure"), sub.events);
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void drainQueueCancelled() {
+        BasicSubscriber sub = new BasicSubscriber();
+        SpscArrayQueue<Integer> q = queueOf(1, 2, 3);
+        AtomicLong requested = new AtomicLong(Long.MAX_VALUE);
+        AtomicLong wip = new AtomicLong(1);
+        AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        BooleanSubscription bs = new BooleanSubscription();
+        AtomicReference<Subscription> upstream = new AtomicReference<Subscription>(bs);
+
+        SubscriptionTools.cancel(upstream);
+
+        SubscriptionTools.drainQueue(q, sub.standard(), requested, wip, error, upstream);
+
+        assertTrue(sub.events.isEmpty());
+        assertTrue(q.isEmpty());
+        assertTrue(bs.isCancelled());
+    }
+
+    @Test
+    public void drainQueuePollCrash() {
+        BasicSubscriber sub = new BasicSubscriber();
+        AtomicLong requested = new AtomicLong(Long.MAX_VALUE);
+        AtomicLong wip = new AtomicLong(1);
+        AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        BooleanSubscription bs = new BooleanSubscription();
+        AtomicReference<Subscription> upstream = new AtomicReference<Subscription>(bs);
+
+        SubscriptionTools.drainQueue(new CrashingQueue(), sub.standard(), requested, wip, error, upstream);
+
+        assertEquals(Arrays.<Object>asList("poll"), sub.events);
+        assertTrue(bs.isCancelled());
+    }
+
+    @Test
+    public void drainQueueConditional() {
+        EvenSubscriber sub = new EvenSubscriber();
+        SpscArrayQueue<Integer> q = queueOf(1, 2, 3, 4, 5, 6);
+        AtomicLong requested = new AtomicLong(2);
+        AtomicLong wip = new AtomicLong(1);
+        AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        AtomicReference<Subscription> upstream = new AtomicReference<Subscription>(new BooleanSubscription());
+
+        SubscriptionTools.drainQueue(q, sub, requested, wip, error, upstream);
+
+        assertEquals(Arrays.<Object>asList(2, 4), sub.events);
+        assertEquals(0L, requested.get());
+        assertEquals(5, q.poll().intValue());
+    }
+
+    @Test
+    public void drainQueueMissed() {
+        final AtomicLong wip = new AtomicLong(1);
+        final AtomicLong requested = new AtomicLong(Long.MAX_VALUE);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final AtomicReference<Subscription> upstream = new AtomicReference<Subscription>(new BooleanSubscription());
+        final SpscArrayQueue<Integer> q = queueOf(1);
+        final List<Object> events = new ArrayList<Object>();
+
+        Subscriber<Integer> sub = new Subscriber<Integer>() {
+            @Override
+            public void onSubscribe(Subscription s) {
+            }
+
+            @Override
+            public void onNext(Integer t) {
+                events.add(t);
+                if (t == 1) {
+                    // a reentrant signal while the drain loop is running
+                    q.offer(2);
+                    setComplete(error);
+                    if (wip.getAndIncrement() == 0) {
+                        fail("Should have been in the drain loop");
+                    }
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                events.add(t);
+            }
+
+            @Override
+            public void onComplete() {
+                events.add("OnComplete");
+            }
+        };
+
+        SubscriptionTools.drainQueue(q, sub, requested, wip, error, upstream);
+
+        assertEquals(Arrays.<Object>asList(1, 2, "OnComplete"), events);
+    }
+
+    @Test
+    public void drainSyncQueue() {
+        BasicSubscriber sub = new BasicSubscriber();
+        SpscArrayQueue<Integer> q = queueOf(1, 2, 3, 4, 5);
+        AtomicLong requested = new AtomicLong(2);
+        AtomicLong wip = new AtomicLong(1);
+        AtomicReference<Subscription> upstream = new AtomicReference<Subscription>(new BooleanSubscription());
+
+        SubscriptionTools.drainSyncQueue(q, sub.standard(), requested, wip, upstream);
+
+        assertEquals(Arrays.<Object>asList(1, 2), sub.events);
+        assertEquals(0L, requested.get());
+        assertEquals(0L, wip.get());
+
+        requested.set(3);
+        wip.set(1);
+
+        SubscriptionTools.drainSyncQueue(q, sub.standard(), requested, wip, upstream);
+
+        assertEquals(Arrays.<Object>asList(1, 2, 3, 4, 5, "OnComplete"), sub.events);
+    }
+
+    @Test
+    public void drainSyncQueueUnbounded() {
+        BasicSubscriber sub = new BasicSubscriber();
+        SpscArrayQueue<Integer> q = queueOf(1, 2, 3);
+        AtomicLong requested = new AtomicLong(Long.MAX_VALUE);
+        AtomicLong wip = new AtomicLong(1);
+        AtomicReference<Subscription> upstream = new AtomicReference<Subscription>(new BooleanSubscription());
+
+        SubscriptionTools.drainSyncQueue(q, sub, requested, wip, upstream);
+
+        assertEquals(Arrays.<Object>asList(1, 2, 3, "OnComplete"), sub.events);
+    }
+
+    @Test
+    public void drainSyncQueueCancelled() {
+        BasicSubscriber sub = new BasicSubscriber();
+        SpscArrayQueue<Integer> q = queueOf(1, 2, 3);
+        AtomicLong requested = new AtomicLong(Long.MAX_VALUE);
+        AtomicLong wip = new AtomicLong(1);
+        AtomicReference<Subscription> upstream = new AtomicReference<Subscription>(new BooleanSubscription());
+
+        SubscriptionTools.cancel(upstream);
+
+        SubscriptionTools.drainSyncQueue(q, sub, requested, wip, upstream);
+
+        assertTrue(sub.events.isEmpty());
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void drainSyncQueuePollCrash() {
+        BasicSubscriber sub = new BasicSubscriber();
+        AtomicLong requested = new AtomicLong(1);
+        AtomicLong wip = new AtomicLong(1);
+        BooleanSubscription bs = new BooleanSubscription();
+        AtomicReference<Subscription> upstream = new AtomicReference<Subscription>(bs);
+
+        SubscriptionTools.drainSyncQueue(new CrashingQueue(), sub, requested, wip, upstream);
+
+        assertEquals(Arrays.<Object>asList("poll"), sub.events);
+        assertTrue(bs.isCancelled());
+    }
+
+    @Test
+    public void drainSyncQueueConditional() {
+        EvenSubscriber sub = new EvenSubscriber();
+        SpscArrayQueue<Integer> q = queueOf(1, 2, 3, 4, 5);
+        AtomicLong requested = new AtomicLong(Long.MAX_VALUE);
+        AtomicLong wip = new AtomicLong(1);
+        AtomicReference<Subscription> upstream = new AtomicReference<Subscription>(new BooleanSubscription());
+
+        SubscriptionTools.drainSyncQueue(q, sub, requested, wip, upstream);
+
+        assertEquals(Arrays.<Object>asList(2, 4, "OnComplete"), sub.events);
+    }
+
     // ------------------------------------------------------------
     // field updaters
     // ------------------------------------------------------------
@@ -1525,4 +1846,130 @@ public class SubscriptionToolsTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void drainQueueField() {
+        BasicSubscriber sub = new BasicSubscriber();
+        SpscArrayQueue<Integer> q = queueOf(1, 2, 3);
+        Fields fields = new Fields();
+        fields.requested = 2;
+        fields.wip = 1;
+        fields.upstream = new BooleanSubscription();
+
+        assertTrue(setComplete(fields, Fields.ERROR));
+        assertFalse(setError(fields, Fields.ERROR, new IOException()));
+
+        SubscriptionTools.drainQueue(q, sub.standard(), fields, Fields.REQUESTED, Fields.WIP, Fields.ERROR, Fields.UPSTREAM);
+
+        assertEquals(Arrays.<Object>asList(1, 2), sub.events);
+        assertEquals(0L, fields.requested);
+        assertEquals(0L, fields.wip);
+
+        fields.requested = 1;
+        fields.wip = 1;
+
+        SubscriptionTools.drainQueue(q, sub.standard(), fields, Fields.REQUESTED, Fields.WIP, Fields.ERROR, Fields.UPSTREAM);
+
+        assertEquals(Arrays.<Object>asList(1, 2, 3, "OnComplete"), sub.events);
+    }
+
+    @Test
+    public void drainQueueErrorField() {
+        BasicSubscriber sub = new BasicSubscriber();
+        SpscArrayQueue<Integer> q = queueOf(1, 2, 3);
+        Fields fields = new Fields();
+        fields.requested = Long.MAX_VALUE;
+        fields.wip = 1;
+        fields.upstream = new BooleanSubscription();
+
+        assertTrue(setError(fields, Fields.ERROR, new IOException("failure")));
+
+        SubscriptionTools.drainQueue(q, sub.standard(), fields, Fields.REQUESTED, Fields.WIP, Fields.ERROR, Fields.UPSTREAM);
+
+        assertEquals(Arrays.<Object>asList("failure"), sub.events);
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void drainQueueCancelledField() {
+        BasicSubscriber sub = new BasicSubscriber();
+        SpscArrayQueue<Integer> q = queueOf(1, 2, 3);
+        Fields fields = new Fields();
+        fields.requested = Long.MAX_VALUE;
+        fields.wip = 1;
+
+        SubscriptionTools.cancel(fields, Fields.UPSTREAM);
+
+        SubscriptionTools.drainQueue(q, sub, fields, Fields.REQUESTED, Fields.WIP, Fields.ERROR, Fields.UPSTREAM);
+
+        assertTrue(sub.events.isEmpty());
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void drainQueuePollCrashField() {
+        BasicSubscriber sub = new BasicSubscriber();
+        Fields fields = new Fields();
+        fields.requested = Long.MAX_VALUE;
+        fields.wip = 1;
+        BooleanSubscription bs = new BooleanSubscription();
+        fields.upstream = bs;
+
+        SubscriptionTools.drainQueue(new CrashingQueue(), sub, fields, Fields.REQUESTED, Fields.WIP, Fields.ERROR, Fields.UPSTREAM);
+
+        assertEquals(Arrays.<Object>asList("poll"), sub.events);
+        assertTrue(bs.isCancelled());
+    }
+
+    @Test
+    public void drainSyncQueueField() {
+        EvenSubscriber sub = new EvenSubscriber();
+        SpscArrayQueue<Integer> q = queueOf(1, 2, 3, 4, 5);
+        Fields fields = new Fields();
+        fields.requested = 1;
+        fields.wip = 1;
+        fields.upstream = new BooleanSubscription();
+
+        SubscriptionTools.drainSyncQueue(q, sub, fields, Fields.REQUESTED, Fields.WIP, Fields.UPSTREAM);
+
+        assertEquals(Arrays.<Object>asList(2), sub.events);
+        assertEquals(0L, fields.requested);
+
+        fields.requested = 2;
+        fields.wip = 1;
+
+        SubscriptionTools.drainSyncQueue(q, sub, fields, Fields.REQUESTED, Fields.WIP, Fields.UPSTREAM);
+
+        assertEquals(Arrays.<Object>asList(2, 4, "OnComplete"), sub.events);
+    }
+
+    @Test
+    public void drainSyncQueueCancelledField() {
+        BasicSubscriber sub = new BasicSubscriber();
+        SpscArrayQueue<Integer> q = queueOf(1, 2, 3);
+        Fields fields = new Fields();
+        fields.requested = Long.MAX_VALUE;
+        fields.wip = 1;
+
+        SubscriptionTools.cancel(fields, Fields.UPSTREAM);
+
+        SubscriptionTools.drainSyncQueue(q, sub, fields, Fields.REQUESTED, Fields.WIP, Fields.UPSTREAM);
+
+        assertTrue(sub.events.isEmpty());
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void drainSyncQueuePollCrashField() {
+        BasicSubscriber sub = new BasicSubscriber();
+        Fields fields = new Fields();
+        fields.requested = 1;
+        fields.wip = 1;
+        BooleanSubscription bs = new BooleanSubscription();
+        fields.upstream = bs;
+
+        SubscriptionTools.drainSyncQueue(new CrashingQueue(), sub, fields, Fields.REQUESTED, Fields.WIP, Fields.UPSTREAM);
+
+        assertEquals(Arrays.<Object>asList("poll"), sub.events);
+        assertTrue(bs.isCancelled());
+    }
+}
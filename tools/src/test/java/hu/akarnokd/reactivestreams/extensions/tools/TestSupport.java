@@ -18,7 +18,9 @@ package hu.akarnokd.reactivestreams.extensions.tools;
 
 import java.io.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.*;
+
+import hu.akarnokd.reactivestreams.extensions.FusedQueue;
 
 /**
  * Test support utility methods.
@@ -116,4 +118,187 @@ public final class TestSupport {
             throw new AssertionError(sw.toString());
         }
     }
+
+    /**
+     * Runs the given number of producer threads offering {@code count} items each
+     * (encoded as {@code producer * count + i}) into the queue while the current thread
+     * polls them and verifies that the items of each producer arrive in order.
+     * @param queue the queue to test, should be empty
+     * @param producers the number of producer threads
+     * @param count the number of items per producer
+     */
+    public static void producersConsumer(final FusedQueue<Integer> queue, int producers, final int count) {
+        final Throwable[] errors = new Throwable[producers];
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < count; i++) {
+                            while (!queue.offer(producer * count + i)) {
+                                Thread.yield();
+                            }
+                        }
+                    } catch (Throwable ex) {
+                        errors[producer] = ex;
+                    }
+                }
+            }, "TestSupportProducer-" + p);
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+
+        int[] expected = new int[producers];
+        long total = (long)producers * count;
+        long received = 0L;
+        long deadline = System.currentTimeMillis() + 10000L;
+
+        try {
+            while (received != total) {
+                Integer v;
+                try {
+                    v = queue.poll();
+                } catch (Throwable ex) {
+                    throw new AssertionError(ex);
+                }
+                if (v == null) {
+                    if (System.currentTimeMillis() > deadline) {
+                        throw new AssertionError("Timeout: received " + received + " of " + total);
+                    }
+                    Thread.yield();
+                    continue;
+                }
+                int p = v / count;
+                int i = v % count;
+                if (expected[p] != i) {
+                    throw new AssertionError("Producer " + p + " expected: " + expected[p] + ", actual: " + i);
+                }
+                expected[p]++;
+                received++;
+            }
+        } finally {
+            for (Thread t : threads) {
+                try {
+                    t.join(5000);
+                } catch (InterruptedException ex) {
+                    throw new AssertionError("join interrupted");
+                }
+            }
+        }
+
+        for (Throwable ex : errors) {
+            if (ex != null) {
+                AssertionError ae = new AssertionError("producer failed");
+                ae.initCause(ex);
+                throw ae;
+            }
+        }
+
+        if (!queue.isEmpty()) {
+            throw new AssertionError("Queue not empty");
+        }
+    }
+
+    /**
+     * Runs the given number of producer threads offering {@code count} items each
+     * (encoded as {@code producer * count + i}) into the queue and the given number of
+     * consumer threads polling them concurrently, then verifies that each item was received
+     * exactly once and that the items of each producer arrived in order at each consumer.
+     * @param queue the queue to test, should be empty
+     * @param producers the number of producer threads
+     * @param consumers the number of consumer threads
+     * @param count the number of items per producer
+     */
+    public static void producersConsumers(final FusedQueue<Integer> queue, final int producers,
+            int consumers, final int count) {
+        final int total = producers * count;
+        final AtomicIntegerArray seen = new AtomicIntegerArray(total);
+        final AtomicInteger received = new AtomicInteger();
+        final long deadline = System.currentTimeMillis() + 10000L;
+        final Throwable[] errors = new Throwable[producers + consumers];
+        Thread[] threads = new Thread[producers + consumers];
+
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < count; i++) {
+                            while (!queue.offer(producer * count + i)) {
+                                Thread.yield();
+                            }
+                        }
+                    } catch (Throwable ex) {
+                        errors[producer] = ex;
+                    }
+                }
+            }, "TestSupportProducer-" + p);
+        }
+
+        for (int c = 0; c < consumers; c++) {
+            final int consumer = producers + c;
+            threads[consumer] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int[] last = new int[producers];
+                        for (int p = 0; p < producers; p++) {
+                            last[p] = -1;
+                        }
+                        while (received.get() != total) {
+                            Integer v = queue.poll();
+                            if (v == null) {
+                                if (System.currentTimeMillis() > deadline) {
+                                    throw new AssertionError("Timeout: received " + received.get() + " of " + total);
+                                }
+                                Thread.yield();
+                                continue;
+                            }
+                            if (seen.getAndSet(v, 1) != 0) {
+                                throw new AssertionError("Item received twice: " + v);
+                            }
+                            int p = v / count;
+                            int i = v % count;
+                            if (last[p] >= i) {
+                                throw new AssertionError("Producer " + p + " out of order: " + last[p] + " before " + i);
+                            }
+                            last[p] = i;
+                            received.getAndIncrement();
+                        }
+                    } catch (Throwable ex) {
+                        errors[consumer] = ex;
+                        received.set(total);
+                    }
+                }
+            }, "TestSupportConsumer-" + c);
+        }
+
+        for (Thread t : threads) {
+            t.start();
+        }
+
+        for (Thread t : threads) {
+            try {
+                t.join(15000);
+            } catch (InterruptedException ex) {
+                throw new AssertionError("join interrupted");
+            }
+        }
+
+        for (Throwable ex : errors) {
+            if (ex != null) {
+                AssertionError ae = new AssertionError("producer or consumer failed");
+                ae.initCause(ex);
+                throw ae;
+            }
+        }
+
+        if (!queue.isEmpty()) {
+            throw new AssertionError("Queue not empty");
+        }
+    }
 }